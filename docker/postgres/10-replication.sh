@@ -0,0 +1,3 @@
+#!/bin/sh
+# Разрешает потоковой реплике (сервис postgres-replica) подключаться к основной БД по паролю.
+echo 'host replication all all scram-sha-256' >> "$PGDATA/pg_hba.conf"
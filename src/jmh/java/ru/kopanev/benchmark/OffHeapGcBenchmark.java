@@ -0,0 +1,73 @@
+package ru.kopanev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kopanev.utils.OffHeapProductStore;
+import ru.kopanev.utils.ProductCache;
+import ru.kopanev.utils.StringDictionary;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Длительность полной сборки мусора, когда каталог целиком хранится в куче (только основной кэш)
+ * и когда основной кэш мал, а каталог лежит во втором уровне вне кучи.
+ * Полная сборка останавливает приложение, и её длительность растёт с объёмом живых объектов.
+ *
+ * <p>Запуск: {@code ./gradlew jmh -PjmhInclude=OffHeapGcBenchmark}</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class OffHeapGcBenchmark {
+
+    private static final int PRODUCTS = 500_000;
+
+    @Param({"ON_HEAP", "OFF_HEAP"})
+    public String tier;
+
+    private ProductCache cache;
+
+    @Setup
+    public void setUp() {
+        if (tier.equals("ON_HEAP")) {
+            cache = new ProductCache(2L * 1024 * 1024 * 1024);
+        } else {
+            cache = new ProductCache(1024 * 1024);
+            cache.setSecondLevel(new OffHeapProductStore(1536L * 1024 * 1024, 1024 * 1024,
+                    new StringDictionary("categories"), new StringDictionary("brands")));
+        }
+        for (long id = 1; id <= PRODUCTS; id++) {
+            cache.put(OffHeapHitBenchmark.product(id));
+        }
+        System.gc();
+        System.out.printf("%n%s: %d products cached, live heap %d MB%n", tier, PRODUCTS,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+}
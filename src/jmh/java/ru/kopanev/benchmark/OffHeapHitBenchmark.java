@@ -0,0 +1,88 @@
+package ru.kopanev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.utils.OffHeapProductStore;
+import ru.kopanev.utils.ProductCache;
+import ru.kopanev.utils.StringDictionary;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка попадания в основной кэш товаров и во второй уровень вне кучи.
+ * Попадание во второй уровень включает разбор записи и создание снимка.
+ *
+ * <p>Запуск: {@code ./gradlew jmh -PjmhInclude=OffHeapHitBenchmark}</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class OffHeapHitBenchmark {
+
+    static final int PRODUCTS = 10_000;
+
+    private ProductCache cache;
+    private OffHeapProductStore store;
+    private long[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StringDictionary categories = new StringDictionary("categories");
+        StringDictionary brands = new StringDictionary("brands");
+        cache = new ProductCache(256L * 1024 * 1024);
+        store = new OffHeapProductStore(64L * 1024 * 1024, 1024 * 1024, categories, brands);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            ProductSnapshot product = product(id);
+            cache.put(product);
+            store.put(product, System.nanoTime());
+        }
+        Random random = new Random(42);
+        ids = new long[4096];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + random.nextInt(PRODUCTS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+        store.close();
+    }
+
+    @Benchmark
+    public ProductSnapshot l1Hit() {
+        return cache.getIfPresent(nextId());
+    }
+
+    @Benchmark
+    public ProductSnapshot l2Hit() {
+        return store.get(nextId()).orElseThrow().product();
+    }
+
+    private long nextId() {
+        return ids[next++ & (ids.length - 1)];
+    }
+
+    static ProductSnapshot product(long id) {
+        return new ProductSnapshot(id, "Товар " + id, "Категория " + id % 20, "Бренд " + id % 50,
+                100 * id, "Описание товара " + id + ": " + "характеристики и комплектация. ".repeat(5), 1);
+    }
+}
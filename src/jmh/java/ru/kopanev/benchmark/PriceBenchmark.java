@@ -0,0 +1,107 @@
+package ru.kopanev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.kopanev.model.FilterCriteria;
+import ru.kopanev.model.ProductSummary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение фильтра по диапазону цен и сортировки по цене для миллиона товаров
+ * с ценой в копейках ({@code long}) и с прежним представлением цены в {@link BigDecimal}.
+ *
+ * <p>Запуск: {@code ./gradlew jmh -PjmhInclude=PriceBenchmark}</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class PriceBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    private List<ProductSummary> minorUnits;
+    private List<DecimalPricedProduct> decimals;
+    private FilterCriteria range;
+    private BigDecimal minDecimal;
+    private BigDecimal maxDecimal;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        minorUnits = new ArrayList<>(PRODUCTS);
+        decimals = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            long price = random.nextInt(10_000_000);
+            String name = "Товар " + id;
+            minorUnits.add(new ProductSummary(id, name, "Электроника", "Бренд", price, 1));
+            decimals.add(new DecimalPricedProduct(id, name, "Электроника", "Бренд",
+                    BigDecimal.valueOf(price, 2), 1));
+        }
+        range = FilterCriteria.priceRange(1_000_000, 2_000_000);
+        minDecimal = BigDecimal.valueOf(1_000_000, 2);
+        maxDecimal = BigDecimal.valueOf(2_000_000, 2);
+    }
+
+    @Benchmark
+    public long rangeScanMinorUnits() {
+        long found = 0;
+        for (ProductSummary product : minorUnits) {
+            if (range.matches(product.getCategory(), product.getBrand(), product.getPrice())) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long rangeScanBigDecimal() {
+        long found = 0;
+        for (DecimalPricedProduct product : decimals) {
+            if (product.price().compareTo(minDecimal) >= 0 && product.price().compareTo(maxDecimal) <= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<ProductSummary> sortMinorUnits() {
+        List<ProductSummary> sorted = new ArrayList<>(minorUnits);
+        sorted.sort(Comparator.comparingLong(ProductSummary::getPrice));
+        return sorted;
+    }
+
+    @Benchmark
+    public List<DecimalPricedProduct> sortBigDecimal() {
+        List<DecimalPricedProduct> sorted = new ArrayList<>(decimals);
+        sorted.sort(Comparator.comparing(DecimalPricedProduct::price));
+        return sorted;
+    }
+
+    /**
+     * Краткое представление товара с ценой в {@link BigDecimal}, как до перехода на копейки.
+     */
+    public record DecimalPricedProduct(Long id, String name, String category, String brand, BigDecimal price,
+                                       long version) {
+    }
+}
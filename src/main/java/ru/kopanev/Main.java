@@ -2,6 +2,7 @@ package ru.kopanev;
 
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.config.DbConfig;
+import ru.kopanev.enums.PoolType;
 import ru.kopanev.factory.DataSourceFactory;
 import ru.kopanev.ui.MenuUi;
 import ru.kopanev.factory.ApplicationFactory;
@@ -16,22 +17,23 @@ public class Main {
             log.info("Start Marketplace application...");
 
             DbConfig dbConfig = new DbConfig();
-            DataSource dataSource = DataSourceFactory.getDataSource();
+            DataSource dataSource = DataSourceFactory.getDataSource(PoolType.CATALOG_WRITE);
 
             LiquibaseRunner liquibaseRunner = new LiquibaseRunner(dbConfig, dataSource);
             liquibaseRunner.runMigrations();
 
             ApplicationFactory factory = new ApplicationFactory();
             MenuUi ui = factory.createApplication();
-            ui.start();
-        } catch (Exception e) {
-            log.error("Failed to start application", e);
-            System.exit(1);
-        } finally {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                factory.close();
                 DataSourceFactory.close();
                 log.info("Application stopped");
             }));
+            ui.start();
+        } catch (Exception e) {
+            log.error("Failed to start application", e);
+            DataSourceFactory.close();
+            System.exit(1);
         }
     }
 }
\ No newline at end of file
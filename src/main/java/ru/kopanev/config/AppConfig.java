@@ -0,0 +1,329 @@
+package ru.kopanev.config;
+
+/**
+ * Конфигурация приложения, не относящаяся к подключению к БД.
+ * Загружает из файла application.properties настройки кэшей
+ * и прочих компонентов сервисного слоя.
+ *
+ * <p>При отсутствии или некорректных значениях свойств используются значения по умолчанию.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class AppConfig extends PropertiesConfig {
+
+    /**
+     * Возвращает бюджет памяти кэша описаний товаров.
+     * @return максимальный суммарный вес описаний в байтах (по умолчанию 4 МБ)
+     */
+    public long getDescriptionCacheMaxWeightBytes() {
+        return parseLongProperty("cache.description.max-weight-bytes", 4L * 1024 * 1024);
+    }
+
+    /**
+     * Возвращает бюджет памяти кэша товаров.
+     * @return максимальный суммарный вес снимков товаров в байтах (по умолчанию 1 МБ)
+     */
+    public long getProductCacheMaxWeightBytes() {
+        return parseLongProperty("cache.product.max-weight-bytes", 1024L * 1024);
+    }
+
+    /**
+     * Проверяет, включён ли второй уровень кэша товаров вне кучи.
+     * @return true, если второй уровень включён (по умолчанию true)
+     */
+    public boolean isProductCacheOffHeapEnabled() {
+        return parseBooleanProperty("cache.product.off-heap.enabled", true);
+    }
+
+    /**
+     * Возвращает объём памяти вне кучи для второго уровня кэша товаров.
+     * Должен помещаться в лимит {@code -XX:MaxDirectMemorySize}.
+     * @return объём в байтах (по умолчанию 64 МБ)
+     */
+    public long getProductCacheOffHeapCapacityBytes() {
+        return parseLongProperty("cache.product.off-heap.capacity-bytes", 64L * 1024 * 1024);
+    }
+
+    /**
+     * Возвращает размер слэба второго уровня кэша товаров.
+     * Товары, сериализованный размер которых больше слэба, во второй уровень не попадают.
+     * @return размер слэба в байтах (по умолчанию 1 МБ)
+     */
+    public int getProductCacheOffHeapSlabBytes() {
+        return parseIntProperty("cache.product.off-heap.slab-bytes", 1024 * 1024);
+    }
+
+    /**
+     * Возвращает время жизни товара в кэше после записи.
+     * @return время жизни в миллисекундах, 0 — без ограничения (по умолчанию 300000)
+     */
+    public long getProductCacheExpireAfterWriteMs() {
+        return parseLongProperty("cache.product.expire-after-write-ms", 300_000);
+    }
+
+    /**
+     * Возвращает время после записи, начиная с которого товар при обращении
+     * перечитывается в фоне. Должно быть меньше времени жизни.
+     * @return время в миллисекундах, 0 — без перечитывания (по умолчанию 60000)
+     */
+    public long getProductCacheRefreshAfterWriteMs() {
+        return parseLongProperty("cache.product.refresh-after-write-ms", 60_000);
+    }
+
+    /**
+     * Возвращает точность отслеживания сроков элементов кэша товаров.
+     * @return длительность тика колеса таймеров в миллисекундах (по умолчанию 1000)
+     */
+    public long getProductCacheTimerTickMs() {
+        return parseLongProperty("cache.product.timer-tick-ms", 1000);
+    }
+
+    /**
+     * Возвращает максимальное количество результатов фильтров в кэше.
+     * @return количество результатов (по умолчанию 256)
+     */
+    public int getFilterCacheMaxEntries() {
+        return parseIntProperty("cache.filter.max-entries", 256);
+    }
+
+    /**
+     * Возвращает время жизни результата фильтра в кэше.
+     * @return время жизни в миллисекундах, 0 — без ограничения (по умолчанию 60000)
+     */
+    public long getFilterCacheExpireAfterWriteMs() {
+        return parseLongProperty("cache.filter.expire-after-write-ms", 60_000);
+    }
+
+    /**
+     * Возвращает количество первых товаров списка или фильтра, подгружаемых в кэш товаров.
+     * @return количество товаров, 0 — без подгрузки (по умолчанию 20)
+     */
+    public int getFilterPrefetchLimit() {
+        return parseIntProperty("cache.filter.prefetch-limit", 20);
+    }
+
+    /**
+     * Возвращает время на выполнение одного вызова сервисного слоя.
+     * Оставшееся время используется как таймаут получения соединения и выполнения запросов.
+     * @return крайний срок в миллисекундах (по умолчанию 5000)
+     */
+    public long getRequestDeadlineMs() {
+        return parseLongProperty("request.deadline-ms", 5000);
+    }
+
+    /**
+     * Возвращает максимальное количество асинхронных запросов, ожидающих соединение
+     * в каждом пуле. Запросы сверх этого количества отклоняются сразу.
+     * @return размер очереди (по умолчанию 100)
+     */
+    public int getAsyncQueueCapacity() {
+        return parseIntProperty("async.queue-capacity", 100);
+    }
+
+    /**
+     * Возвращает время ожидания страницы, собираемой из нескольких параллельных запросов.
+     * @return таймаут в миллисекундах (по умолчанию 2000)
+     */
+    public long getPageTimeoutMs() {
+        return parseLongProperty("async.page-timeout-ms", 2000);
+    }
+
+    /**
+     * Возвращает начальное количество операций, одновременно допускаемых к БД.
+     * @return начальный лимит (по умолчанию 20)
+     */
+    public int getAdmissionInitialLimit() {
+        return parseIntProperty("admission.initial-limit", 20);
+    }
+
+    /**
+     * Возвращает минимальный лимит одновременных операций, до которого он снижается при перегрузке.
+     * @return минимальный лимит (по умолчанию 2)
+     */
+    public int getAdmissionMinLimit() {
+        return parseIntProperty("admission.min-limit", 2);
+    }
+
+    /**
+     * Возвращает максимальный лимит одновременных операций.
+     * @return максимальный лимит (по умолчанию 200)
+     */
+    public int getAdmissionMaxLimit() {
+        return parseIntProperty("admission.max-limit", 200);
+    }
+
+    /**
+     * Возвращает множитель, на который уменьшается лимит при признаках перегрузки.
+     * @return множитель от 0 до 1 (по умолчанию 0.9)
+     */
+    public double getAdmissionBackoffRatio() {
+        String value = properties.getProperty("admission.backoff-ratio");
+        try {
+            double ratio = value != null ? Double.parseDouble(value) : 0.9;
+            return ratio > 0 && ratio < 1 ? ratio : 0.9;
+        } catch (NumberFormatException e) {
+            return 0.9;
+        }
+    }
+
+    /**
+     * Возвращает время ожидания соединения в пуле, начиная с которого БД считается перегруженной.
+     * @return порог в миллисекундах (по умолчанию 20)
+     */
+    public long getAdmissionPoolWaitThresholdMs() {
+        return parseLongProperty("admission.pool-wait-threshold-ms", 20);
+    }
+
+    /**
+     * Проверяет, отслеживаются ли изменения товаров, сделанные другими экземплярами приложения.
+     * @return true, если инвалидация кэшей по уведомлениям БД включена (по умолчанию true)
+     */
+    public boolean isCacheInvalidationEnabled() {
+        return parseBooleanProperty("cache.invalidation.enabled", true);
+    }
+
+    /**
+     * Возвращает время накопления уведомлений об изменениях перед их обработкой.
+     * @return интервал в миллисекундах (по умолчанию 200)
+     */
+    public long getCacheInvalidationBatchIntervalMs() {
+        return parseLongProperty("cache.invalidation.batch-interval-ms", 200);
+    }
+
+    /**
+     * Возвращает паузу перед повторным подключением слушателя уведомлений после ошибки.
+     * @return пауза в миллисекундах (по умолчанию 2000)
+     */
+    public long getCacheInvalidationReconnectDelayMs() {
+        return parseLongProperty("cache.invalidation.reconnect-delay-ms", 2000);
+    }
+
+    /**
+     * Проверяет, сохраняется ли снимок каталога на диск для быстрого старта.
+     * @return true, если снимок включён (по умолчанию true)
+     */
+    public boolean isSnapshotEnabled() {
+        return parseBooleanProperty("snapshot.enabled", true);
+    }
+
+    /**
+     * Возвращает путь к файлу снимка каталога.
+     * @return путь к файлу (по умолчанию data/catalog.snapshot)
+     */
+    public String getSnapshotPath() {
+        return properties.getProperty("snapshot.path", "data/catalog.snapshot");
+    }
+
+    /**
+     * Возвращает интервал записи снимка каталога на диск.
+     * @return интервал в миллисекундах (по умолчанию 60000)
+     */
+    public long getSnapshotSaveIntervalMs() {
+        return parseLongProperty("snapshot.save-interval-ms", 60000);
+    }
+
+    /**
+     * Проверяет, прогревается ли кэш товаров при старте.
+     * @return true, если прогрев включён (по умолчанию true)
+     */
+    public boolean isWarmupEnabled() {
+        return parseBooleanProperty("warmup.enabled", true);
+    }
+
+    /**
+     * Возвращает количество самых востребованных товаров, загружаемых в кэш при старте.
+     * @return количество товаров (по умолчанию 100)
+     */
+    public int getWarmupMaxProducts() {
+        return parseIntProperty("warmup.max-products", 100);
+    }
+
+    /**
+     * Возвращает количество товаров, загружаемых при прогреве одним запросом.
+     * @return размер пакета (по умолчанию 25)
+     */
+    public int getWarmupBatchSize() {
+        return parseIntProperty("warmup.batch-size", 25);
+    }
+
+    /**
+     * Возвращает время, отведённое на прогрев кэша при старте.
+     * @return бюджет в миллисекундах (по умолчанию 3000)
+     */
+    public long getWarmupBudgetMs() {
+        return parseLongProperty("warmup.budget-ms", 3000);
+    }
+
+    /**
+     * Возвращает количество сбоев БД подряд, после которого обращения к ней приостанавливаются.
+     * @return порог сбоев (по умолчанию 5)
+     */
+    public int getCircuitFailureThreshold() {
+        return parseIntProperty("circuit-breaker.failure-threshold", 5);
+    }
+
+    /**
+     * Возвращает длительность операции с БД, начиная с которой она считается сбоем.
+     * @return порог в миллисекундах (по умолчанию 3000)
+     */
+    public long getCircuitSlowCallMs() {
+        return parseLongProperty("circuit-breaker.slow-call-ms", 3000);
+    }
+
+    /**
+     * Возвращает время, через которое после сбоев выполняется пробное обращение к БД.
+     * @return интервал в миллисекундах (по умолчанию 10000)
+     */
+    public long getCircuitOpenDurationMs() {
+        return parseLongProperty("circuit-breaker.open-duration-ms", 10000);
+    }
+
+    /**
+     * Возвращает максимальное количество событий аудита, отложенных при перегрузке.
+     * @return размер очереди (по умолчанию 10000)
+     */
+    public int getDeferredAuditCapacity() {
+        return parseIntProperty("audit.deferred.capacity", 10000);
+    }
+
+    /**
+     * Возвращает интервал фоновой записи отложенных событий аудита.
+     * @return интервал в миллисекундах (по умолчанию 1000)
+     */
+    public long getDeferredAuditFlushIntervalMs() {
+        return parseLongProperty("audit.deferred.flush-interval-ms", 1000);
+    }
+
+    /**
+     * Проверяет, включена ли отложенная запись изменений кэшированных товаров.
+     * @return true, если изменения объединяются в буфере и записываются пакетами (по умолчанию false)
+     */
+    public boolean isWriteBehindEnabled() {
+        return parseBooleanProperty("write-behind.enabled", false);
+    }
+
+    /**
+     * Возвращает интервал фоновой записи буфера изменений товаров.
+     * @return интервал в миллисекундах (по умолчанию 200)
+     */
+    public long getWriteBehindFlushIntervalMs() {
+        return parseLongProperty("write-behind.flush-interval-ms", 200);
+    }
+
+    /**
+     * Возвращает максимальное количество товаров в одном пакете записи буфера.
+     * @return размер пакета (по умолчанию 100)
+     */
+    public int getWriteBehindBatchSize() {
+        return parseIntProperty("write-behind.batch-size", 100);
+    }
+
+    /**
+     * Возвращает максимальное количество товаров с незаписанными изменениями.
+     * @return размер буфера (по умолчанию 10000)
+     */
+    public int getWriteBehindMaxPending() {
+        return parseIntProperty("write-behind.max-pending", 10000);
+    }
+}
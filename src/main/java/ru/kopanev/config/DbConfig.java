@@ -1,10 +1,11 @@
 package ru.kopanev.config;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.enums.ReplicaSelection;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Конфигурация подключения к базе данных.
@@ -17,37 +18,7 @@ import java.util.Properties;
  * @since 1.0
  */
 @Slf4j
-public class DbConfig {
-    private static final String CONFIG_FILE = "application.properties";
-    private final Properties properties;
-
-    /**
-     * Создаёт новый экземпляр конфигурации и загружает свойства из файла.
-     *
-     * @throws RuntimeException если файл не найден или не может быть загружен
-     */
-    public DbConfig() {
-        this.properties = loadProperties();
-    }
-
-    /**
-     * Загружает свойства из файла конфигурации.
-     *
-     * @return объект Properties с загруженными свойствами
-     * @throws RuntimeException если файл не найден или произошла ошибка чтения
-     */
-    private Properties loadProperties() {
-        Properties props = new Properties();
-        try (InputStream input = getClass().getClassLoader().getResourceAsStream(CONFIG_FILE)) {
-            if (input == null) {
-                throw new RuntimeException("Unable to find " + CONFIG_FILE);
-            }
-            props.load(input);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load configuration file", e);
-        }
-        return props;
-    }
+public class DbConfig extends PropertiesConfig {
 
     /**
      * Возвращает URL подключения к базе данных.
@@ -105,6 +76,33 @@ public class DbConfig {
         return parseLongProperty("database.pool.connection-timeout", 30000);
     }
 
+    /**
+     * Возвращает максимальный размер пула класса нагрузки.
+     * @param poolType класс нагрузки
+     * @return максимальное количество соединений (по умолчанию как у общего пула)
+     */
+    public int getPoolMaximumSize(PoolType poolType) {
+        return parseIntProperty("database.pool." + poolType.getKey() + ".maximum-pool-size", getMaximumPoolSize());
+    }
+
+    /**
+     * Возвращает таймаут получения соединения из пула класса нагрузки.
+     * @param poolType класс нагрузки
+     * @return таймаут в миллисекундах (по умолчанию как у общего пула)
+     */
+    public long getPoolConnectionTimeout(PoolType poolType) {
+        return parseLongProperty("database.pool." + poolType.getKey() + ".connection-timeout", getConnectionTimeout());
+    }
+
+    /**
+     * Возвращает {@code statement_timeout} соединений пула класса нагрузки.
+     * @param poolType класс нагрузки
+     * @return таймаут запроса в миллисекундах (по умолчанию 0 — без ограничения)
+     */
+    public long getPoolStatementTimeout(PoolType poolType) {
+        return parseLongProperty("database.pool." + poolType.getKey() + ".statement-timeout", 0);
+    }
+
     /**
      * Проверяет, включено ли кэширование prepared statements.
      * @return true, если кэширование включено (по умолчанию true)
@@ -130,106 +128,104 @@ public class DbConfig {
     }
 
     /**
-     * Возвращает путь к главному changelog файлу Liquibase.
-     * @return путь к файлу changelog
+     * Возвращает список JDBC URL реплик для чтения.
+     * @return URL реплик (пустой список, если реплики не настроены)
      */
-    public String getLiquibaseChangelog() {
-        return properties.getProperty("liquibase.changelog");
+    public List<String> getReplicaUrls() {
+        String urls = properties.getProperty("database.replica.urls", "");
+        return Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
     }
 
     /**
-     * Возвращает контексты Liquibase для выполнения.
-     * @return контексты (например, "dev", "prod")
+     * Возвращает имя пользователя для подключения к репликам.
+     * @return имя пользователя (по умолчанию совпадает с основной БД)
      */
-    public String getLiquibaseContexts() {
-        return properties.getProperty("liquibase.contexts");
+    public String getReplicaUsername() {
+        return properties.getProperty("database.replica.username", getDatabaseUsername());
     }
 
     /**
-     * Возвращает схему БД по умолчанию для миграций.
-     * @return имя схемы
+     * Возвращает пароль для подключения к репликам.
+     * @return пароль (по умолчанию совпадает с основной БД)
      */
-    public String getLiquibaseDefaultSchema() {
-        return properties.getProperty("liquibase.default-schema");
+    public String getReplicaPassword() {
+        return properties.getProperty("database.replica.password", getDatabasePassword());
     }
 
     /**
-     * Возвращает схему для служебных таблиц Liquibase.
-     * @return имя схемы для таблиц Liquibase
+     * Возвращает максимальный размер пула соединений каждой реплики.
+     * @return максимальное количество соединений (по умолчанию как у пула чтения каталога)
      */
-    public String getLiquibaseSchema() {
-        return properties.getProperty("liquibase.liquibase-schema");
+    public int getReplicaMaximumPoolSize() {
+        return parseIntProperty("database.replica.pool.maximum-pool-size", getPoolMaximumSize(PoolType.CATALOG_READ));
     }
 
     /**
-     * Парсит целочисленное свойство с обработкой исключений.
-     *
-     * @param key ключ свойства
-     * @param defaultValue значение по умолчанию
-     * @return значение из properties или defaultValue при ошибке
+     * Возвращает стратегию выбора реплики для запроса.
+     * @return стратегия выбора (по умолчанию {@link ReplicaSelection#ROUND_ROBIN})
      */
-    private int parseIntProperty(String key, int defaultValue) {
-        String value = properties.getProperty(key);
-
-        if (value == null || value.trim().isEmpty()) {
-            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
-            return defaultValue;
+    public ReplicaSelection getReplicaSelection() {
+        String value = properties.getProperty("database.replica.selection");
+        if (value == null) {
+            return ReplicaSelection.ROUND_ROBIN;
         }
-
         try {
-            return Integer.parseInt(value.trim());
-        } catch (NumberFormatException e) {
-            log.error("Invalid integer value for property '{}': '{}', using default value: {}",
-                    key, value, defaultValue, e);
-            return defaultValue;
+            return ReplicaSelection.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid value for database.replica.selection: '{}', using default: ROUND_ROBIN", value);
+            return ReplicaSelection.ROUND_ROBIN;
         }
     }
 
     /**
-     * Парсит long свойство с обработкой исключений.
-     *
-     * @param key ключ свойства
-     * @param defaultValue значение по умолчанию
-     * @return значение из properties или defaultValue при ошибке
+     * Возвращает допустимое отставание реплики от основной БД.
+     * Реплика с большим отставанием не используется до тех пор, пока не догонит основную БД.
+     * @return отставание в миллисекундах (по умолчанию 5000)
      */
-    private long parseLongProperty(String key, long defaultValue) {
-        String value = properties.getProperty(key);
+    public long getReplicaMaxLagMs() {
+        return parseLongProperty("database.replica.max-lag-ms", 5000);
+    }
 
-        if (value == null || value.trim().isEmpty()) {
-            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
-            return defaultValue;
-        }
+    /**
+     * Возвращает интервал проверки отставания реплик.
+     * @return интервал в миллисекундах (по умолчанию 1000)
+     */
+    public long getReplicaLagCheckIntervalMs() {
+        return parseLongProperty("database.replica.lag-check-interval-ms", 1000);
+    }
 
-        try {
-            return Long.parseLong(value.trim());
-        } catch (NumberFormatException e) {
-            log.error("Invalid long value for property '{}': '{}', using default value: {}",
-                    key, value, defaultValue, e);
-            return defaultValue;
-        }
+    /**
+     * Возвращает путь к главному changelog файлу Liquibase.
+     * @return путь к файлу changelog
+     */
+    public String getLiquibaseChangelog() {
+        return properties.getProperty("liquibase.changelog");
     }
 
     /**
-     * Парсит boolean свойство с обработкой исключений.
-     *
-     * @param key ключ свойства
-     * @param defaultValue значение по умолчанию
-     * @return значение из properties или defaultValue при ошибке
+     * Возвращает контексты Liquibase для выполнения.
+     * @return контексты (например, "dev", "prod")
      */
-    private boolean parseBooleanProperty(String key, boolean defaultValue) {
-        String value = properties.getProperty(key);
+    public String getLiquibaseContexts() {
+        return properties.getProperty("liquibase.contexts");
+    }
 
-        if (value == null || value.trim().isEmpty()) {
-            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
-            return defaultValue;
-        }
+    /**
+     * Возвращает схему БД по умолчанию для миграций.
+     * @return имя схемы
+     */
+    public String getLiquibaseDefaultSchema() {
+        return properties.getProperty("liquibase.default-schema");
+    }
 
-        try {
-            return Boolean.parseBoolean(value.trim());
-        } catch (Exception e) {
-            log.error("Invalid boolean value for property '{}': '{}', using default value: {}",
-                    key, value, defaultValue, e);
-            return defaultValue;
-        }
+    /**
+     * Возвращает схему для служебных таблиц Liquibase.
+     * @return имя схемы для таблиц Liquibase
+     */
+    public String getLiquibaseSchema() {
+        return properties.getProperty("liquibase.liquibase-schema");
     }
 }
@@ -0,0 +1,131 @@
+package ru.kopanev.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Базовый класс конфигураций, читающих файл application.properties.
+ * Загружает свойства и предоставляет наследникам методы разбора
+ * типизированных значений со значениями по умолчанию.
+ *
+ * <p>Значение из файла можно переопределить системным свойством JVM с тем же ключом
+ * ({@code -Ddatabase.url=...}), например чтобы подключиться к другой БД без пересборки.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public abstract class PropertiesConfig {
+    private static final String CONFIG_FILE = "application.properties";
+    protected final Properties properties;
+
+    /**
+     * Создаёт новый экземпляр конфигурации и загружает свойства из файла.
+     *
+     * @throws RuntimeException если файл не найден или не может быть загружен
+     */
+    protected PropertiesConfig() {
+        this.properties = loadProperties();
+    }
+
+    /**
+     * Загружает свойства из файла конфигурации и применяет переопределения
+     * из системных свойств JVM.
+     *
+     * @return объект Properties с загруженными свойствами
+     * @throws RuntimeException если файл не найден или произошла ошибка чтения
+     */
+    private Properties loadProperties() {
+        Properties props = new Properties();
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+            if (input == null) {
+                throw new RuntimeException("Unable to find " + CONFIG_FILE);
+            }
+            props.load(input);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load configuration file", e);
+        }
+        for (String key : props.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) {
+                props.setProperty(key, override);
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Парсит целочисленное свойство с обработкой исключений.
+     *
+     * @param key ключ свойства
+     * @param defaultValue значение по умолчанию
+     * @return значение из properties или defaultValue при ошибке
+     */
+    protected int parseIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+
+        if (value == null || value.trim().isEmpty()) {
+            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid integer value for property '{}': '{}', using default value: {}",
+                    key, value, defaultValue, e);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Парсит long свойство с обработкой исключений.
+     *
+     * @param key ключ свойства
+     * @param defaultValue значение по умолчанию
+     * @return значение из properties или defaultValue при ошибке
+     */
+    protected long parseLongProperty(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+
+        if (value == null || value.trim().isEmpty()) {
+            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid long value for property '{}': '{}', using default value: {}",
+                    key, value, defaultValue, e);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Парсит boolean свойство с обработкой исключений.
+     *
+     * @param key ключ свойства
+     * @param defaultValue значение по умолчанию
+     * @return значение из properties или defaultValue при ошибке
+     */
+    protected boolean parseBooleanProperty(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+
+        if (value == null || value.trim().isEmpty()) {
+            log.warn("Property '{}' is not set, using default value: {}", key, defaultValue);
+            return defaultValue;
+        }
+
+        try {
+            return Boolean.parseBoolean(value.trim());
+        } catch (Exception e) {
+            log.error("Invalid boolean value for property '{}': '{}', using default value: {}",
+                    key, value, defaultValue, e);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ru.kopanev.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.pool.HikariPool;
+import ru.kopanev.utils.Deadline;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Пул соединений, учитывающий крайний срок текущего запроса ({@link Deadline}).
+ *
+ * <ul>
+ *   <li>Если срок истёк, соединение не выдаётся: запрос завершается сразу,
+ *       не занимая место в очереди пула.</li>
+ *   <li>Соединение ожидается не дольше оставшегося времени (и не дольше
+ *       таймаута самого пула).</li>
+ *   <li>Каждому создаваемому запросу устанавливается {@code setQueryTimeout}
+ *       по оставшемуся времени.</li>
+ *   <li>Запросы, прерванные по таймауту, учитываются в {@link QueryTimeoutStats}.</li>
+ * </ul>
+ *
+ * <p>Без установленного срока пул ведёт себя как обычный HikariCP.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class DeadlineDataSource implements DataSource {
+
+    private final HikariDataSource pool;
+    private final QueryTimeoutStats timeoutStats;
+
+    public DeadlineDataSource(HikariDataSource pool, QueryTimeoutStats timeoutStats) {
+        this.pool = pool;
+        this.timeoutStats = timeoutStats;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Deadline deadline = Deadline.current();
+        Connection connection;
+        if (deadline == null) {
+            connection = pool.getConnection();
+        } else {
+            if (deadline.isExpired()) {
+                timeoutStats.recordAcquireTimeout(pool.getPoolName());
+                throw new SQLTimeoutException("Request deadline exceeded before acquiring a connection from "
+                        + pool.getPoolName());
+            }
+            connection = acquire(Math.min(deadline.remainingMillis(), pool.getConnectionTimeout()));
+        }
+        return wrapConnection(connection);
+    }
+
+    /**
+     * Получает соединение, ожидая его не дольше указанного времени.
+     */
+    private Connection acquire(long timeoutMs) throws SQLException {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean instanceof HikariPool hikariPool) {
+            try {
+                return hikariPool.getConnection(Math.max(1, timeoutMs));
+            } catch (SQLTimeoutException e) {
+                timeoutStats.recordAcquireTimeout(pool.getPoolName());
+                throw e;
+            }
+        }
+        return pool.getConnection();
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args, null);
+                    if (result instanceof Statement statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                        return wrapStatement(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrapStatement(Statement statement, Class<?> type, String sql) throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                statement.close();
+                timeoutStats.recordIfTimeout(sql, new SQLTimeoutException("Request deadline exceeded"));
+                throw new SQLTimeoutException("Request deadline exceeded before executing a query");
+            }
+            statement.setQueryTimeout(deadline.remainingSecondsCeil());
+        }
+
+        return Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String executedSql = sql;
+                    if (executedSql == null && args != null && args.length > 0 && args[0] instanceof String s) {
+                        executedSql = s;
+                    }
+                    return invoke(statement, method, args, executedSql);
+                });
+    }
+
+    private Object invoke(Object target, Method method, Object[] args, String sql) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException && method.getName().startsWith("execute")) {
+                timeoutStats.recordIfTimeout(sql, sqlException);
+            }
+            throw cause;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections are configured by the pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return pool.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return pool.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return pool.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || pool.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.kopanev.datasource;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограммы времени ожидания соединения по пулам.
+ * Регистрируется в HikariCP как {@link MetricsTrackerFactory}: пул сообщает
+ * время получения каждого соединения и каждый таймаут ожидания.
+ *
+ * <p>По гистограммам подбираются размеры пулов: если заметная доля запросов
+ * ждёт соединение дольше нескольких миллисекунд, пулу не хватает соединений.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class PoolWaitMetrics implements MetricsTrackerFactory {
+
+    /**
+     * Верхние границы корзин гистограммы в микросекундах. Последняя корзина не ограничена.
+     */
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000
+    };
+
+    private final Map<String, WaitHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return histograms.computeIfAbsent(poolName, WaitHistogram::new);
+    }
+
+    /**
+     * Возвращает гистограммы ожидания по названию пула.
+     *
+     * @return неизменяемое представление гистограмм
+     */
+    public Map<String, WaitHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Возвращает сглаженное время ожидания соединения в пуле за последние выдачи.
+     *
+     * @param poolName название пула
+     * @return время ожидания в микросекундах (0, если пул ещё не выдавал соединений)
+     */
+    public long recentWaitMicros(String poolName) {
+        WaitHistogram histogram = histograms.get(poolName);
+        return histogram == null ? 0 : histogram.getRecentWaitMicros();
+    }
+
+    /**
+     * Гистограмма времени ожидания соединения одного пула.
+     */
+    public static class WaitHistogram implements IMetricsTracker {
+        private final String poolName;
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+        private final LongAdder timeouts = new LongAdder();
+        private volatile long recentWaitMicros;
+
+        WaitHistogram(String poolName) {
+            this.poolName = poolName;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            // Экспоненциальное сглаживание с весом 1/8; гонки между потоками
+            // теряют отдельные измерения, что для оценки нагрузки допустимо.
+            recentWaitMicros += (micros - recentWaitMicros) >> 3;
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+            recentWaitMicros = Math.max(recentWaitMicros, BUCKET_BOUNDS_MICROS[BUCKET_BOUNDS_MICROS.length - 1]);
+        }
+
+        /**
+         * @return сглаженное время ожидания соединения в микросекундах
+         */
+        public long getRecentWaitMicros() {
+            return recentWaitMicros;
+        }
+
+        /**
+         * @return количество выданных соединений
+         */
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return количество запросов, не дождавшихся соединения
+         */
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        /**
+         * Оценивает перцентиль времени ожидания по верхней границе корзины.
+         *
+         * @param percentile перцентиль от 0 до 100
+         * @return верхняя граница корзины в микросекундах или {@code Long.MAX_VALUE}
+         *         для неограниченной корзины; 0, если данных нет
+         */
+        public long percentileMicros(double percentile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return BUCKET_BOUNDS_MICROS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(poolName)
+                    .append(": acquired=").append(getCount())
+                    .append(", timeouts=").append(getTimeouts())
+                    .append(", wait");
+            for (int i = 0; i < buckets.length; i++) {
+                sb.append(i < BUCKET_BOUNDS_MICROS.length ? " <=" + BUCKET_BOUNDS_MICROS[i] + "us:" : " >1s:")
+                        .append(buckets[i].sum());
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.kopanev.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.utils.SqlQueries;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики запросов, прерванных по таймауту, в разрезе SQL-запросов.
+ * Запросы из {@link SqlQueries} учитываются под именем константы
+ * (например, {@code FIND_ALL_EVENTS}), прочие — под текстом запроса.
+ * Отказы в выдаче соединения из-за истёкшего срока учитываются под именем
+ * {@code acquire:<пул>}.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class QueryTimeoutStats {
+
+    /**
+     * SQLSTATE PostgreSQL для запроса, отменённого по {@code statement_timeout} или {@code setQueryTimeout}.
+     */
+    private static final String QUERY_CANCELED = "57014";
+
+    private static final Map<String, String> STATEMENT_NAMES = statementNames();
+
+    private final Map<String, LongAdder> timeouts = new ConcurrentHashMap<>();
+
+    /**
+     * Учитывает ошибку выполнения запроса, если это таймаут.
+     *
+     * @param sql текст запроса
+     * @param e ошибка выполнения
+     */
+    void recordIfTimeout(String sql, SQLException e) {
+        if (e instanceof SQLTimeoutException || QUERY_CANCELED.equals(e.getSQLState())) {
+            String name = sql != null ? STATEMENT_NAMES.getOrDefault(sql, sql) : "statement";
+            increment(name);
+            log.warn("Query timed out: {}", name);
+        }
+    }
+
+    /**
+     * Учитывает отказ в выдаче соединения из-за истёкшего срока запроса.
+     *
+     * @param poolName название пула
+     */
+    void recordAcquireTimeout(String poolName) {
+        increment("acquire:" + poolName);
+    }
+
+    /**
+     * Возвращает количество таймаутов по запросам.
+     *
+     * @return неизменяемая копия счётчиков
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new HashMap<>();
+        timeouts.forEach((name, counter) -> result.put(name, counter.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private void increment(String name) {
+        timeouts.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    private static Map<String, String> statementNames() {
+        Map<String, String> names = new HashMap<>();
+        for (Field field : SqlQueries.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    names.put((String) field.get(null), field.getName());
+                } catch (IllegalAccessException e) {
+                    log.debug("Cannot read SqlQueries.{}", field.getName());
+                }
+            }
+        }
+        return names;
+    }
+}
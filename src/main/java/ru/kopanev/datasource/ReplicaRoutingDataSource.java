@@ -0,0 +1,257 @@
+package ru.kopanev.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.ReplicaSelection;
+import ru.kopanev.transaction.TransactionManager;
+import ru.kopanev.utils.SqlQueries;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * DataSource для запросов только на чтение, распределяющий их по репликам.
+ *
+ * <p>Реплика выбирается по кругу или по наименьшей загрузке пула
+ * (см. {@link ReplicaSelection}). Фоновая задача периодически измеряет отставание
+ * каждой реплики; реплика, отставшая больше допустимого или недоступная,
+ * исключается из выбора до следующей успешной проверки. БД, которая не находится
+ * в режиме восстановления (не реплицирует основную), не используется вовсе: это
+ * ошибка настройки, и её данные могут не совпадать с основной БД. Если подходящих реплик нет,
+ * запрос выполняется на основной БД.</p>
+ *
+ * <p>Внутри единицы работы {@link TransactionManager} чтение всегда идёт через
+ * соединение единицы работы на основной БД, чтобы операция видела собственные изменения.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class ReplicaRoutingDataSource implements DataSource, Closeable {
+
+    private final TransactionManager transactionManager;
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaSelection selection;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+
+    /**
+     * Создаёт маршрутизатор чтения и запускает проверку отставания реплик.
+     *
+     * @param transactionManager менеджер транзакций
+     * @param primary DataSource основной БД для чтения без реплик
+     * @param replicaPools пулы соединений реплик
+     * @param timeoutStats счётчики запросов, прерванных по таймауту
+     * @param selection стратегия выбора реплики
+     * @param maxLagMs допустимое отставание реплики в миллисекундах
+     * @param lagCheckIntervalMs интервал проверки отставания в миллисекундах
+     */
+    public ReplicaRoutingDataSource(TransactionManager transactionManager, DataSource primary,
+                                    List<HikariDataSource> replicaPools, QueryTimeoutStats timeoutStats,
+                                    ReplicaSelection selection, long maxLagMs, long lagCheckIntervalMs) {
+        this.transactionManager = transactionManager;
+        this.primary = primary;
+        this.selection = selection;
+        this.maxLagMs = maxLagMs;
+        this.replicas = new ArrayList<>();
+        for (HikariDataSource pool : replicaPools) {
+            replicas.add(new Replica(pool, new DeadlineDataSource(pool, timeoutStats)));
+        }
+
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, lagCheckIntervalMs, TimeUnit.MILLISECONDS);
+
+        log.info("Read routing initialized: replicas={}, selection={}, maxLagMs={}",
+                replicas.size(), selection, maxLagMs);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (transactionManager.isInTransaction()) {
+            return primary.getConnection();
+        }
+
+        Replica replica = select();
+        if (replica != null) {
+            try {
+                return replica.connections.getConnection();
+            } catch (SQLException e) {
+                replica.markUnavailable(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Выбирает реплику среди доступных по настроенной стратегии.
+     *
+     * @return реплика или {@code null}, если ни одна реплика не подходит
+     */
+    private Replica select() {
+        List<Replica> available = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.available) {
+                available.add(replica);
+            }
+        }
+        if (available.isEmpty()) {
+            return null;
+        }
+
+        if (selection == ReplicaSelection.LEAST_LOADED) {
+            return available.stream()
+                    .min(Comparator.comparingInt(Replica::load))
+                    .orElse(null);
+        }
+        return available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+    }
+
+    /**
+     * Измеряет отставание каждой реплики и обновляет её доступность.
+     */
+    private void checkLag() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(SqlQueries.REPLICA_LAG_MS);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                rs.next();
+                long lag = rs.getLong("lag_ms");
+                if (rs.wasNull()) {
+                    replica.markNotReplica();
+                } else {
+                    replica.updateLag(lag);
+                }
+            } catch (SQLException e) {
+                replica.markUnavailable(e);
+            } catch (RuntimeException e) {
+                log.error("Replica lag check failed: {}", replica.name, e);
+            }
+        }
+    }
+
+    /**
+     * Останавливает проверку отставания и закрывает пулы реплик.
+     */
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        log.info("Replica pools closed");
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections are configured by the pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Реплика с её пулом соединений и текущей доступностью для чтения.
+     */
+    private final class Replica {
+        private final HikariDataSource pool;
+        private final DataSource connections;
+        private final String name;
+        private volatile boolean available;
+        private boolean notReplicaReported;
+
+        private Replica(HikariDataSource pool, DataSource connections) {
+            this.pool = pool;
+            this.connections = connections;
+            this.name = pool.getPoolName();
+        }
+
+        private int load() {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            return bean == null ? 0 : bean.getActiveConnections() + bean.getThreadsAwaitingConnection();
+        }
+
+        private void updateLag(long lag) {
+            notReplicaReported = false;
+            boolean wasAvailable = available;
+            available = lag <= maxLagMs;
+            if (wasAvailable && !available) {
+                log.warn("Replica {} is {} ms behind, routing reads to primary", name, lag);
+            } else if (!wasAvailable && available) {
+                log.info("Replica {} is available for reads, lag {} ms", name, lag);
+            }
+        }
+
+        private void markNotReplica() {
+            available = false;
+            if (!notReplicaReported) {
+                notReplicaReported = true;
+                log.error("Replica {} is not in recovery mode and never serves reads, check database.replica.urls",
+                        name);
+            }
+        }
+
+        private void markUnavailable(SQLException e) {
+            if (available) {
+                log.warn("Replica {} is unavailable, routing reads elsewhere: {}", name, e.getMessage());
+            }
+            available = false;
+        }
+    }
+}
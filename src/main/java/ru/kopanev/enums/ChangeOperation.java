@@ -0,0 +1,7 @@
+package ru.kopanev.enums;
+
+public enum ChangeOperation {
+    INSERT,
+    UPDATE,
+    DELETE
+}
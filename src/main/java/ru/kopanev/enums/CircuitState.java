@@ -0,0 +1,7 @@
+package ru.kopanev.enums;
+
+public enum CircuitState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+}
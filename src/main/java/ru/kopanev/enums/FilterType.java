@@ -0,0 +1,7 @@
+package ru.kopanev.enums;
+
+public enum FilterType {
+    CATEGORY,
+    BRAND,
+    PRICE_RANGE
+}
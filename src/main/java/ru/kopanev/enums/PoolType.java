@@ -0,0 +1,30 @@
+package ru.kopanev.enums;
+
+/**
+ * Класс нагрузки, для которого выделяется отдельный пул соединений.
+ * Пулы изолированы друг от друга: всплеск записи аудита или медленный импорт
+ * не отнимает соединения у чтения каталога.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public enum PoolType {
+    CATALOG_READ("catalog-read"),
+    CATALOG_WRITE("catalog-write"),
+    AUTH("auth"),
+    AUDIT("audit");
+
+    private final String key;
+
+    PoolType(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Возвращает ключ пула в настройках и название пула в метриках.
+     * @return ключ вида {@code catalog-read}
+     */
+    public String getKey() {
+        return key;
+    }
+}
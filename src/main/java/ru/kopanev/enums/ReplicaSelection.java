@@ -0,0 +1,6 @@
+package ru.kopanev.enums;
+
+public enum ReplicaSelection {
+    ROUND_ROBIN,
+    LEAST_LOADED
+}
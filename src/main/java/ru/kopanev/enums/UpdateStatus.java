@@ -0,0 +1,7 @@
+package ru.kopanev.enums;
+
+public enum UpdateStatus {
+    UPDATED,
+    CONFLICT,
+    NOT_FOUND
+}
@@ -0,0 +1,10 @@
+package ru.kopanev.exception;
+
+public class OverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -1,16 +1,44 @@
 package ru.kopanev.factory;
 
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.config.AppConfig;
+import ru.kopanev.config.DbConfig;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.exception.ServiceUnavailableException;
 import ru.kopanev.repository.*;
+import ru.kopanev.repository.async.AsyncEventRepository;
+import ru.kopanev.repository.async.AsyncProductRepository;
+import ru.kopanev.repository.async.RepositoryExecutor;
 import ru.kopanev.repository.impl.EventRepositoryImpl;
 import ru.kopanev.repository.impl.ProductRepositoryImpl;
 import ru.kopanev.repository.impl.UserRepositoryImpl;
+import ru.kopanev.resilience.AdmissionController;
+import ru.kopanev.resilience.CircuitBreaker;
+import ru.kopanev.resilience.DeferredAuditQueue;
 import ru.kopanev.service.*;
 import ru.kopanev.service.impl.AuditServiceImpl;
 import ru.kopanev.service.impl.AuthServiceImpl;
 import ru.kopanev.service.impl.ProductServiceImpl;
+import ru.kopanev.transaction.TransactionManager;
 import ru.kopanev.ui.MenuUi;
+import ru.kopanev.utils.CacheWarmer;
+import ru.kopanev.utils.CatalogSnapshot;
+import ru.kopanev.utils.CatalogSnapshotStore;
+import ru.kopanev.utils.DeadlineProxy;
+import ru.kopanev.utils.DescriptionCache;
+import ru.kopanev.utils.FilterResultCache;
+import ru.kopanev.utils.OffHeapProductStore;
+import ru.kopanev.utils.ProductChangeListener;
 import ru.kopanev.utils.ProductCache;
+import ru.kopanev.utils.StringDictionary;
 import ru.kopanev.utils.UserSession;
+import ru.kopanev.utils.WriteBehindBuffer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Фабрика для создания и настройки всех компонентов приложения.
@@ -19,16 +47,35 @@ import ru.kopanev.utils.UserSession;
  *
  * <p>Порядок инициализации:</p>
  * <ol>
- *   <li>Вспомогательные компоненты (UserSession, ProductCache)</li>
- *   <li>Репозитории (ProductRepository, UserRepository, EventRepository)</li>
+ *   <li>Вспомогательные компоненты (UserSession, ProductCache, DescriptionCache, словари категорий и брендов)</li>
+ *   <li>Репозитории (ProductRepository, UserRepository, EventRepository) и их асинхронные варианты</li>
+ *   <li>Восстановление кэша и снимка каталога из файла (CatalogSnapshotStore)
+ *       и прогрев кэша самыми востребованными товарами (CacheWarmer)</li>
+ *   <li>Слушатель изменений товаров в других экземплярах приложения (ProductChangeListener)</li>
+ *   <li>Контроль допуска к БД (AdmissionController), выключатель обращений к БД (CircuitBreaker)
+ *       и очередь отложенного аудита</li>
+ *   <li>Буфер отложенной записи изменений товаров (WriteBehindBuffer), если он включён</li>
  *   <li>Сервисы (AuditService, AuthService, ProductService)</li>
- *   <li>UI (MenuUi)</li>
+ *   <li>UI (MenuUi), получающий сервисы с ограничением времени вызова</li>
  * </ol>
  *
  * @author Artem Kopanev
  * @since 1.0
  */
-public class ApplicationFactory {
+@Slf4j
+public class ApplicationFactory implements AutoCloseable {
+    private final AppConfig config = new AppConfig();
+    private final StringDictionary categories = new StringDictionary("categories");
+    private final StringDictionary brands = new StringDictionary("brands");
+    private final TransactionManager transactionManager = DataSourceFactory.getTransactionManager();
+    private final AdmissionController admissionController = createAdmissionController();
+    private final CircuitBreaker circuitBreaker = createCircuitBreaker();
+    private ProductCache productCache;
+    private RepositoryExecutor repositoryExecutor;
+    private DeferredAuditQueue deferredAuditQueue;
+    private CatalogSnapshotStore snapshotStore;
+    private ProductChangeListener changeListener;
+    private WriteBehindBuffer writeBehind;
 
     /**
      * Создаёт и настраивает все компоненты приложения.
@@ -40,16 +87,82 @@ public class ApplicationFactory {
     public MenuUi createApplication() {
         UserSession session = createUserSession();
         ProductCache cache = createProductCache();
+        productCache = cache;
+        DescriptionCache descriptionCache = createDescriptionCache();
+        FilterResultCache filterResults = createFilterResultCache();
+        CatalogSnapshot catalogSnapshot = new CatalogSnapshot();
 
         ProductRepository productRepository = createProductRepository();
+        snapshotStore = createSnapshotStore(catalogSnapshot, cache, createPrimaryProductRepository());
         UserRepository userRepository = createUserRepository();
         EventRepository eventRepository = createEventRepository();
+        repositoryExecutor = createRepositoryExecutor();
+        AsyncProductRepository asyncProductRepository = new AsyncProductRepository(productRepository, repositoryExecutor);
+        cache.setRefreshLoader(id -> circuitBreaker.isOpen()
+                ? CompletableFuture.failedFuture(new ServiceUnavailableException("Database unavailable"))
+                : asyncProductRepository.findById(id));
+        warmUpCache(cache, asyncProductRepository);
+        changeListener = createChangeListener(cache, descriptionCache, filterResults, createPrimaryProductRepository());
+        deferredAuditQueue = createDeferredAuditQueue(eventRepository);
+        writeBehind = createWriteBehindBuffer(productRepository, cache, descriptionCache, filterResults);
 
-        AuditService auditService = createAuditService(eventRepository);
+        AuditService auditService = createAuditService(eventRepository, repositoryExecutor);
         AuthService authService = createAuthService(auditService, userRepository, session);
-        ProductService productService = createProductService(productRepository, auditService, cache);
+        ProductService productService = createProductService(productRepository, asyncProductRepository, auditService,
+                cache, descriptionCache, catalogSnapshot, filterResults, writeBehind);
+
+        return createMenuUi(
+                withDeadline(AuthService.class, authService),
+                withDeadline(ProductService.class, productService),
+                withDeadline(AuditService.class, auditService),
+                session);
+    }
+
+    /**
+     * Возвращает контроль допуска к БД, например для просмотра счётчиков отказов.
+     * @return экземпляр AdmissionController
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Записывает отложенные изменения товаров, события аудита и снимок каталога, останавливает фоновые потоки
+     * (в том числе отслеживание сроков элементов кэша) и выводит в журнал итоговые метрики кэша товаров.
+     * Пулы соединений закрываются отдельно через {@link DataSourceFactory#close()}.
+     */
+    @Override
+    public void close() {
+        if (changeListener != null) {
+            changeListener.close();
+        }
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (deferredAuditQueue != null) {
+            deferredAuditQueue.close();
+        }
+        if (repositoryExecutor != null) {
+            repositoryExecutor.close();
+        }
+        if (snapshotStore != null) {
+            snapshotStore.close();
+        }
+        if (productCache != null) {
+            productCache.toMetrics().forEach((name, value) -> log.info("Metric {} = {}", name, value));
+            productCache.close();
+        }
+    }
 
-        return createMenuUi(authService, productService, auditService, session);
+    /**
+     * Ограничивает каждый вызов сервиса крайним сроком из конфигурации.
+     * Срок действует и для вложенных вызовов других сервисов и репозиториев.
+     * @param serviceInterface интерфейс сервиса
+     * @param service реализация сервиса
+     * @return сервис, вызовы которого ограничены сроком
+     */
+    private <T> T withDeadline(Class<T> serviceInterface, T service) {
+        return DeadlineProxy.wrap(serviceInterface, service, Duration.ofMillis(config.getRequestDeadlineMs()));
     }
 
     /**
@@ -68,13 +181,64 @@ public class ApplicationFactory {
         return new EventRepositoryImpl();
     }
 
+    /**
+     * Создаёт исполнитель асинхронных запросов.
+     * Количество потоков для каждого пула равно размеру этого пула.
+     * @return экземпляр RepositoryExecutor
+     */
+    private RepositoryExecutor createRepositoryExecutor() {
+        DbConfig dbConfig = new DbConfig();
+        Map<PoolType, Integer> capacities = new EnumMap<>(PoolType.class);
+        for (PoolType type : PoolType.values()) {
+            capacities.put(type, dbConfig.getPoolMaximumSize(type));
+        }
+        return new RepositoryExecutor(capacities, config.getAsyncQueueCapacity());
+    }
+
+    /**
+     * Создаёт контроль допуска к БД.
+     * Признаком перегрузки служит время ожидания соединения в пуле чтения каталога.
+     * @return экземпляр AdmissionController
+     */
+    private AdmissionController createAdmissionController() {
+        String poolName = PoolType.CATALOG_READ.getKey();
+        return new AdmissionController(
+                config.getAdmissionInitialLimit(),
+                config.getAdmissionMinLimit(),
+                config.getAdmissionMaxLimit(),
+                config.getAdmissionBackoffRatio(),
+                config.getAdmissionPoolWaitThresholdMs(),
+                () -> DataSourceFactory.getPoolWaitMetrics().recentWaitMicros(poolName));
+    }
+
+    /**
+     * Создаёт выключатель, приостанавливающий обращения к БД после серии сбоев.
+     * @return экземпляр CircuitBreaker
+     */
+    private CircuitBreaker createCircuitBreaker() {
+        return new CircuitBreaker(config.getCircuitFailureThreshold(), config.getCircuitSlowCallMs(),
+                config.getCircuitOpenDurationMs());
+    }
+
+    /**
+     * Создаёт очередь событий аудита, откладываемых при перегрузке БД.
+     * @param eventRepository репозиторий событий
+     * @return экземпляр DeferredAuditQueue
+     */
+    private DeferredAuditQueue createDeferredAuditQueue(EventRepository eventRepository) {
+        return new DeferredAuditQueue(config.getDeferredAuditCapacity(), config.getDeferredAuditFlushIntervalMs(),
+                eventRepository, admissionController, circuitBreaker);
+    }
+
     /**
      * Создаёт сервис аудита с внедрённым репозиторием событий.
      * @param eventRepository репозиторий событий
+     * @param repositoryExecutor исполнитель асинхронных запросов
      * @return экземпляр AuditService
      */
-    private AuditService createAuditService(EventRepository eventRepository) {
-        return new AuditServiceImpl(eventRepository);
+    private AuditService createAuditService(EventRepository eventRepository, RepositoryExecutor repositoryExecutor) {
+        return new AuditServiceImpl(eventRepository, new AsyncEventRepository(eventRepository, repositoryExecutor),
+                admissionController, deferredAuditQueue, circuitBreaker, transactionManager);
     }
 
     /**
@@ -82,29 +246,128 @@ public class ApplicationFactory {
      * @param auditService сервис аудита
      * @param userRepository репозиторий пользователей
      * @param session сессия пользователя
-     * @return экземпляр AuthService
+     * @return экземпляр AuthService, выполняющий каждую операцию на одном соединении
      */
     private AuthService createAuthService(AuditService auditService, UserRepository userRepository, UserSession session) {
-        return new AuthServiceImpl(auditService, userRepository, session);
+        return new AuthServiceImpl(auditService, userRepository, session, transactionManager);
     }
 
     /**
      * Создаёт репозиторий для работы с товарами.
+     * Категории и бренды при чтении из БД приводятся к экземплярам из общих словарей.
      * @return экземпляр ProductRepository
      */
     private ProductRepository createProductRepository() {
-        return new ProductRepositoryImpl();
+        return new ProductRepositoryImpl(categories, brands);
+    }
+
+    /**
+     * Создаёт репозиторий товаров, читающий с основной БД, а не с реплик.
+     * Нужен компонентам, сверяющим кэш с журналом изменений: реплика может отставать
+     * от журнала, и перечитанный с неё товар оказался бы старше изменения.
+     * @return экземпляр ProductRepository
+     */
+    private ProductRepository createPrimaryProductRepository() {
+        return new ProductRepositoryImpl(categories, brands, PoolType.CATALOG_WRITE);
     }
 
     /**
      * Создаёт сервис товаров с внедрёнными зависимостями.
      * @param repository репозиторий товаров
+     * @param asyncRepository асинхронный репозиторий товаров
      * @param auditService сервис аудита
      * @param cache кэш товаров
+     * @param descriptionCache кэш описаний товаров
+     * @param catalogSnapshot последний загруженный список товаров
+     * @param filterResults кэш результатов фильтров
+     * @param writeBehind буфер отложенной записи изменений или null, если он отключён
      * @return экземпляр ProductService
      */
-    private ProductService createProductService(ProductRepository repository, AuditService auditService, ProductCache cache) {
-        return new ProductServiceImpl(repository, auditService, cache);
+    private ProductService createProductService(ProductRepository repository, AsyncProductRepository asyncRepository,
+                                                AuditService auditService, ProductCache cache,
+                                                DescriptionCache descriptionCache, CatalogSnapshot catalogSnapshot,
+                                                FilterResultCache filterResults, WriteBehindBuffer writeBehind) {
+        return new ProductServiceImpl(repository, asyncRepository,
+                auditService, cache, descriptionCache, Duration.ofMillis(config.getPageTimeoutMs()),
+                admissionController, circuitBreaker, catalogSnapshot, filterResults, config.getFilterPrefetchLimit(),
+                writeBehind);
+    }
+
+    /**
+     * Создаёт буфер отложенной записи изменений товаров. Если изменения товара отброшены
+     * из-за расхождения с БД, товар убирается из кэшей, чтобы следующее чтение взяло его из БД.
+     * Кэшированная версия с отброшенными изменениями в БД не попала, поэтому граница версий
+     * ставится по версии, на которую были рассчитаны изменения.
+     * @param repository репозиторий товаров
+     * @param cache кэш товаров
+     * @param descriptionCache кэш описаний товаров
+     * @param filterResults кэш результатов фильтров
+     * @return экземпляр WriteBehindBuffer или null, если отложенная запись отключена
+     */
+    private WriteBehindBuffer createWriteBehindBuffer(ProductRepository repository, ProductCache cache,
+                                                      DescriptionCache descriptionCache,
+                                                      FilterResultCache filterResults) {
+        if (!config.isWriteBehindEnabled()) {
+            return null;
+        }
+        return new WriteBehindBuffer(repository, admissionController, circuitBreaker, (id, expectedVersion) -> {
+            cache.invalidateUnwritten(id, expectedVersion + 1);
+            descriptionCache.invalidate(id);
+            filterResults.clear();
+        }, config.getWriteBehindFlushIntervalMs(), config.getWriteBehindBatchSize(),
+                config.getWriteBehindMaxPending());
+    }
+
+    /**
+     * Создаёт хранилище снимка каталога, восстанавливает из него кэш и запускает периодическую запись.
+     * @param catalogSnapshot последний загруженный список товаров
+     * @param cache кэш товаров
+     * @param repository репозиторий товаров, читающий журнал изменений с основной БД
+     * @return экземпляр CatalogSnapshotStore или null, если снимок отключён
+     */
+    private CatalogSnapshotStore createSnapshotStore(CatalogSnapshot catalogSnapshot, ProductCache cache,
+                                                     ProductRepository repository) {
+        if (!config.isSnapshotEnabled()) {
+            return null;
+        }
+        CatalogSnapshotStore store = new CatalogSnapshotStore(Path.of(config.getSnapshotPath()), catalogSnapshot,
+                cache, repository, categories, brands);
+        store.restore();
+        store.start(config.getSnapshotSaveIntervalMs());
+        return store;
+    }
+
+    /**
+     * Загружает в кэш самые востребованные товары до запуска UI.
+     * @param cache кэш товаров
+     * @param asyncRepository асинхронный репозиторий товаров
+     */
+    private void warmUpCache(ProductCache cache, AsyncProductRepository asyncRepository) {
+        if (config.isWarmupEnabled()) {
+            new CacheWarmer(cache, asyncRepository, config.getWarmupBatchSize())
+                    .warmUp(config.getWarmupMaxProducts(), Duration.ofMillis(config.getWarmupBudgetMs()));
+        }
+    }
+
+    /**
+     * Создаёт и запускает слушателя изменений товаров, сделанных другими экземплярами приложения.
+     * @param cache кэш товаров
+     * @param descriptionCache кэш описаний товаров
+     * @param filterResults кэш результатов фильтров
+     * @param repository репозиторий товаров, читающий с основной БД
+     * @return экземпляр ProductChangeListener или null, если инвалидация отключена
+     */
+    private ProductChangeListener createChangeListener(ProductCache cache, DescriptionCache descriptionCache,
+                                                       FilterResultCache filterResults, ProductRepository repository) {
+        if (!config.isCacheInvalidationEnabled()) {
+            return null;
+        }
+        DbConfig dbConfig = new DbConfig();
+        ProductChangeListener listener = new ProductChangeListener(dbConfig.getDatabaseUrl(),
+                dbConfig.getDatabaseUsername(), dbConfig.getDatabasePassword(), cache, descriptionCache, filterResults,
+                repository, config.getCacheInvalidationBatchIntervalMs(), config.getCacheInvalidationReconnectDelayMs());
+        listener.start();
+        return listener;
     }
 
     /**
@@ -116,11 +379,37 @@ public class ApplicationFactory {
     }
 
     /**
-     * Создаёт кэш товаров для оптимизации чтения.
+     * Создаёт кэш товаров для оптимизации чтения с бюджетом памяти, сроком жизни
+     * элементов и вторым уровнем вне кучи из конфигурации.
      * @return экземпляр ProductCache
      */
     private ProductCache createProductCache() {
-        return new ProductCache();
+        ProductCache cache = new ProductCache(config.getProductCacheMaxWeightBytes(),
+                Duration.ofMillis(config.getProductCacheExpireAfterWriteMs()),
+                Duration.ofMillis(config.getProductCacheRefreshAfterWriteMs()),
+                Duration.ofMillis(config.getProductCacheTimerTickMs()));
+        if (config.isProductCacheOffHeapEnabled()) {
+            cache.setSecondLevel(new OffHeapProductStore(config.getProductCacheOffHeapCapacityBytes(),
+                    config.getProductCacheOffHeapSlabBytes(), categories, brands));
+        }
+        return cache;
+    }
+
+    /**
+     * Создаёт кэш результатов фильтров товаров.
+     * @return экземпляр FilterResultCache
+     */
+    private FilterResultCache createFilterResultCache() {
+        return new FilterResultCache(config.getFilterCacheMaxEntries(),
+                Duration.ofMillis(config.getFilterCacheExpireAfterWriteMs()));
+    }
+
+    /**
+     * Создаёт кэш описаний товаров с бюджетом памяти из конфигурации.
+     * @return экземпляр DescriptionCache
+     */
+    private DescriptionCache createDescriptionCache() {
+        return new DescriptionCache(config.getDescriptionCacheMaxWeightBytes());
     }
 
     /**
@@ -4,18 +4,44 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.config.DbConfig;
+import ru.kopanev.datasource.DeadlineDataSource;
+import ru.kopanev.datasource.PoolWaitMetrics;
+import ru.kopanev.datasource.QueryTimeoutStats;
+import ru.kopanev.datasource.ReplicaRoutingDataSource;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.transaction.TransactionManager;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Фабрика для создания и управления пулом соединений с базой данных.
+ * Фабрика для создания и управления пулами соединений с базой данных.
  * Использует HikariCP для эффективного управления соединениями.
  *
- * <p>Реализует паттерн Singleton — DataSource создаётся один раз
- * и переиспользуется во всём приложении.</p>
+ * <p>Реализует паттерн Singleton — пулы создаются один раз
+ * и переиспользуются во всём приложении.</p>
+ *
+ * <p>Для каждого класса нагрузки ({@link PoolType}) создаётся отдельный пул со своим
+ * размером, таймаутом ожидания соединения и {@code statement_timeout}. Репозитории
+ * объявляют, каким пулом они пользуются, поэтому всплеск записи аудита или медленный
+ * импорт не отнимает соединения у чтения каталога. Время ожидания соединения
+ * в каждом пуле собирается в {@link PoolWaitMetrics}.</p>
+ *
+ * <p>Соединения выдаются с учётом крайнего срока запроса пользователя
+ * (см. {@link DeadlineDataSource}).</p>
  *
  * <p>Настройки загружаются из {@link DbConfig}, включая:
- * параметры подключения, размер пула, кэширование PreparedStatements.</p>
+ * параметры подключения, размеры пулов, кэширование PreparedStatements.</p>
+ *
+ * <p>Пулы оборачиваются {@link TransactionManager}: возвращаемые DataSource
+ * выдают соединение текущей единицы работы, если она открыта.</p>
+ *
+ * <p>Если в настройках указаны реплики ({@code database.replica.urls}), для чтения
+ * каталога создаётся отдельный пул на каждую реплику, и
+ * {@code getDataSource(PoolType.CATALOG_READ)} распределяет чтение между ними.</p>
  *
  * @author Artem Kopanev
  * @since 1.0
@@ -23,35 +49,170 @@ import javax.sql.DataSource;
 @Slf4j
 public class DataSourceFactory {
 
-    private static DataSource dataSource;
+    private static final Map<PoolType, HikariDataSource> pools = new EnumMap<>(PoolType.class);
+    private static final PoolWaitMetrics poolWaitMetrics = new PoolWaitMetrics();
+    private static final QueryTimeoutStats queryTimeoutStats = new QueryTimeoutStats();
+    private static TransactionManager transactionManager;
+    private static DataSource catalogReadDataSource;
 
     /**
-     * Возвращает экземпляр DataSource (Singleton).
-     * При первом вызове создаёт и настраивает HikariCP пул соединений.
-     * Последующие вызовы возвращают уже созданный экземпляр.
+     * Возвращает DataSource класса нагрузки (Singleton).
+     * При первом вызове создаёт и настраивает пулы соединений HikariCP.
+     * Последующие вызовы возвращают уже созданные экземпляры.
      *
-     * @return настроенный DataSource с пулом соединений HikariCP
+     * @param poolType класс нагрузки
+     * @return DataSource пула, учитывающий единицу работы
      */
-    public static DataSource getDataSource() {
-        if (dataSource == null) {
-            DbConfig config = new DbConfig();
+    public static synchronized DataSource getDataSource(PoolType poolType) {
+        TransactionManager manager = getTransactionManager();
+        if (poolType != PoolType.CATALOG_READ) {
+            return manager.getDataSource(poolType);
+        }
+
+        if (catalogReadDataSource == null) {
+            catalogReadDataSource = createCatalogReadDataSource(new DbConfig(), manager);
+        }
+        return catalogReadDataSource;
+    }
 
-            HikariConfig hikariConfig = getHikariConfig(config);
+    /**
+     * Возвращает менеджер транзакций поверх пулов соединений (Singleton).
+     *
+     * @return менеджер транзакций
+     */
+    public static synchronized TransactionManager getTransactionManager() {
+        if (transactionManager == null) {
+            DbConfig config = new DbConfig();
 
-            if (config.isCachePrepStmts()) {
-                addCacheProperties(hikariConfig, config);
+            for (PoolType type : PoolType.values()) {
+                pools.put(type, createPool(config, type));
             }
 
-            dataSource = new HikariDataSource(hikariConfig);
-
-            log.info("HikariCP DataSource initialized");
+            log.info("HikariCP pools initialized: {}", pools.keySet());
             log.debug("Database URL: {}", config.getDatabaseUrl());
-            log.debug("Maximum pool size: {}", config.getMaximumPoolSize());
-            log.debug("Minimum idle connections: {}", config.getMinimumIdle());
             log.debug("PreparedStatement cache enabled: {}", config.isCachePrepStmts());
+
+            Map<PoolType, DataSource> deadlineAware = new EnumMap<>(PoolType.class);
+            pools.forEach((type, pool) -> deadlineAware.put(type, new DeadlineDataSource(pool, queryTimeoutStats)));
+            transactionManager = new TransactionManager(deadlineAware);
         }
 
-        return dataSource;
+        return transactionManager;
+    }
+
+    /**
+     * Возвращает гистограммы времени ожидания соединения по пулам.
+     *
+     * @return метрики ожидания соединений
+     */
+    public static PoolWaitMetrics getPoolWaitMetrics() {
+        return poolWaitMetrics;
+    }
+
+    /**
+     * Возвращает счётчики запросов, прерванных по таймауту.
+     *
+     * @return счётчики таймаутов по запросам
+     */
+    public static QueryTimeoutStats getQueryTimeoutStats() {
+        return queryTimeoutStats;
+    }
+
+    /**
+     * Создаёт пул соединений для класса нагрузки.
+     *
+     * @param config конфигурация базы данных
+     * @param poolType класс нагрузки
+     * @return пул соединений
+     */
+    private static HikariDataSource createPool(DbConfig config, PoolType poolType) {
+        HikariConfig hikariConfig = getHikariConfig(config);
+
+        int maximumPoolSize = config.getPoolMaximumSize(poolType);
+        hikariConfig.setPoolName(poolType.getKey());
+        hikariConfig.setMaximumPoolSize(maximumPoolSize);
+        hikariConfig.setMinimumIdle(Math.min(config.getMinimumIdle(), maximumPoolSize));
+        hikariConfig.setConnectionTimeout(config.getPoolConnectionTimeout(poolType));
+        applyStatementTimeout(hikariConfig, config.getPoolStatementTimeout(poolType));
+
+        if (config.isCachePrepStmts()) {
+            addCacheProperties(hikariConfig, config);
+        }
+
+        log.debug("Pool {}: maximumPoolSize={}, connectionTimeout={} ms, statementTimeout={} ms",
+                poolType.getKey(), maximumPoolSize, config.getPoolConnectionTimeout(poolType),
+                config.getPoolStatementTimeout(poolType));
+        return new HikariDataSource(hikariConfig);
+    }
+
+    /**
+     * Создаёт DataSource чтения каталога.
+     * Если реплики не настроены, возвращает DataSource пула {@link PoolType#CATALOG_READ}.
+     *
+     * @param config конфигурация базы данных
+     * @param manager менеджер транзакций
+     * @return DataSource для чтения каталога
+     */
+    private static DataSource createCatalogReadDataSource(DbConfig config, TransactionManager manager) {
+        DataSource primary = manager.getDataSource(PoolType.CATALOG_READ);
+        List<String> replicaUrls = config.getReplicaUrls();
+
+        if (replicaUrls.isEmpty()) {
+            log.info("No read replicas configured, reads use the primary pool");
+            return primary;
+        }
+
+        List<HikariDataSource> replicaPools = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicaPools.add(createReplicaPool(config, "replica-" + (i + 1), replicaUrls.get(i)));
+        }
+        return new ReplicaRoutingDataSource(manager, primary, replicaPools, queryTimeoutStats,
+                config.getReplicaSelection(), config.getReplicaMaxLagMs(),
+                config.getReplicaLagCheckIntervalMs());
+    }
+
+    /**
+     * Создаёт пул соединений только для чтения к реплике.
+     * Таймауты берутся из настроек пула {@link PoolType#CATALOG_READ}.
+     *
+     * @param config конфигурация базы данных
+     * @param poolName название пула
+     * @param url JDBC URL реплики
+     * @return пул соединений реплики
+     */
+    private static HikariDataSource createReplicaPool(DbConfig config, String poolName, String url) {
+        HikariConfig hikariConfig = getHikariConfig(config);
+
+        int maximumPoolSize = config.getReplicaMaximumPoolSize();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setJdbcUrl(url);
+        hikariConfig.setUsername(config.getReplicaUsername());
+        hikariConfig.setPassword(config.getReplicaPassword());
+        hikariConfig.setMaximumPoolSize(maximumPoolSize);
+        hikariConfig.setMinimumIdle(Math.min(config.getMinimumIdle(), maximumPoolSize));
+        hikariConfig.setConnectionTimeout(config.getPoolConnectionTimeout(PoolType.CATALOG_READ));
+        hikariConfig.setReadOnly(true);
+        applyStatementTimeout(hikariConfig, config.getPoolStatementTimeout(PoolType.CATALOG_READ));
+
+        if (config.isCachePrepStmts()) {
+            addCacheProperties(hikariConfig, config);
+        }
+
+        log.info("Replica pool {} initialized", poolName);
+        log.debug("Replica URL: {}", url);
+        return new HikariDataSource(hikariConfig);
+    }
+
+    /**
+     * Устанавливает {@code statement_timeout} для каждого нового соединения пула.
+     *
+     * @param hikariConfig конфигурация HikariCP для модификации
+     * @param statementTimeoutMs таймаут запроса в миллисекундах (0 — без ограничения)
+     */
+    private static void applyStatementTimeout(HikariConfig hikariConfig, long statementTimeoutMs) {
+        if (statementTimeoutMs > 0) {
+            hikariConfig.setConnectionInitSql("SET statement_timeout = " + statementTimeoutMs);
+        }
     }
 
     /**
@@ -72,6 +233,7 @@ public class DataSourceFactory {
         hikariConfig.setMaximumPoolSize(config.getMaximumPoolSize());
         hikariConfig.setMinimumIdle(config.getMinimumIdle());
         hikariConfig.setConnectionTimeout(config.getConnectionTimeout());
+        hikariConfig.setMetricsTrackerFactory(poolWaitMetrics);
 
         return hikariConfig;
     }
@@ -94,14 +256,23 @@ public class DataSourceFactory {
     }
 
     /**
-     * Закрывает пул соединений HikariCP.
+     * Закрывает пулы соединений HikariCP.
      * Освобождает все ресурсы, связанные с подключением к БД.
      * Вызывается при завершении работы приложения.
      */
-    public static void close() {
-        if (dataSource instanceof HikariDataSource) {
-            ((HikariDataSource) dataSource).close();
-            log.info("HikariCP DataSource closed");
+    public static synchronized void close() {
+        if (catalogReadDataSource instanceof ReplicaRoutingDataSource replicas) {
+            replicas.close();
+        }
+        if (transactionManager != null) {
+            transactionManager.getStats().values()
+                    .forEach(stats -> log.info("Connection checkouts {}", stats));
+            poolWaitMetrics.getHistograms().values()
+                    .forEach(histogram -> log.info("Connection wait {}", histogram));
+            queryTimeoutStats.snapshot()
+                    .forEach((statement, count) -> log.info("Query timeouts {}: {}", statement, count));
+            pools.values().forEach(HikariDataSource::close);
+            log.info("HikariCP pools closed");
         }
     }
 }
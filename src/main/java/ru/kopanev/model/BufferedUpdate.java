@@ -0,0 +1,21 @@
+package ru.kopanev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Отложенное изменение товара, записываемое в БД буфером записи.
+ * Содержит итоговое состояние товара после всех объединённых изменений
+ * и версию строки в БД, на которую эти изменения рассчитаны.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class BufferedUpdate {
+
+    private final ProductSnapshot product;
+    private final long expectedVersion;
+    private final Event auditEvent;
+}
@@ -0,0 +1,95 @@
+package ru.kopanev.model;
+
+import lombok.Getter;
+import ru.kopanev.enums.FilterType;
+
+import java.util.Objects;
+
+/**
+ * Нормализованные условия фильтрации товаров.
+ * Служит ключом кэша результатов фильтров и позволяет проверить,
+ * попадает ли товар в результат фильтра, без обращения к БД.
+ *
+ * <p>Строковые значения обрезаются по краям, границы диапазона цен хранятся в копейках.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+public final class FilterCriteria {
+
+    private final FilterType type;
+    private final String value;
+    private final long minPrice;
+    private final long maxPrice;
+
+    private FilterCriteria(FilterType type, String value, long minPrice, long maxPrice) {
+        this.type = type;
+        this.value = value;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * @param category категория
+     * @return условие отбора по категории
+     */
+    public static FilterCriteria category(String category) {
+        return new FilterCriteria(FilterType.CATEGORY, category.trim(), 0, 0);
+    }
+
+    /**
+     * @param brand бренд
+     * @return условие отбора по бренду
+     */
+    public static FilterCriteria brand(String brand) {
+        return new FilterCriteria(FilterType.BRAND, brand.trim(), 0, 0);
+    }
+
+    /**
+     * @param minPrice нижняя граница цены в копейках
+     * @param maxPrice верхняя граница цены в копейках
+     * @return условие отбора по диапазону цен
+     */
+    public static FilterCriteria priceRange(long minPrice, long maxPrice) {
+        return new FilterCriteria(FilterType.PRICE_RANGE, null, minPrice, maxPrice);
+    }
+
+    /**
+     * Проверяет, попадает ли товар с указанными свойствами под условие.
+     *
+     * @param category категория товара
+     * @param brand бренд товара
+     * @param price цена товара в копейках
+     * @return true, если товар входит в результат фильтра
+     */
+    public boolean matches(String category, String brand, long price) {
+        return switch (type) {
+            case CATEGORY -> value.equals(category);
+            case BRAND -> value.equals(brand);
+            case PRICE_RANGE -> price >= minPrice && price <= maxPrice;
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FilterCriteria other)) return false;
+        return type == other.type
+                && minPrice == other.minPrice
+                && maxPrice == other.maxPrice
+                && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, value, minPrice, maxPrice);
+    }
+
+    @Override
+    public String toString() {
+        return type == FilterType.PRICE_RANGE
+                ? type + "[" + minPrice + ", " + maxPrice + "]"
+                : type + "[" + value + "]";
+    }
+}
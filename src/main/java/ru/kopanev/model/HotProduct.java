@@ -0,0 +1,24 @@
+package ru.kopanev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Часто запрашиваемый товар с оценкой количества обращений.
+ * Оценка приближённая и может быть завышена, но не занижена.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class HotProduct {
+
+    private final long productId;
+    private final long estimatedAccesses;
+
+    @Override
+    public String toString() {
+        return "#" + productId + ": ~" + estimatedAccesses + " обращений";
+    }
+}
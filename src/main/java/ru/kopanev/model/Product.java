@@ -5,12 +5,11 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-import java.util.concurrent.atomic.AtomicLong;
-
 /**
  * Представляет товар в системе маркетплейса.
  * Содержит информацию о названии, категории, бренде, цене и описании товара.
+ * Цена хранится в копейках (см. {@link ru.kopanev.utils.Prices}).
+ * Версия строки увеличивается в БД при каждом обновлении товара.
  *
  * @author Artem Kopanev
  * @since 1.0
@@ -25,10 +24,11 @@ public class Product {
     private String name;
     private String category;
     private String brand;
-    private BigDecimal price;
+    private long price;
     private String description;
+    private long version;
 
-    public Product(String name, String category, String brand, BigDecimal price, String description) {
+    public Product(String name, String category, String brand, long price, String description) {
         this.name = name;
         this.category = category;
         this.brand = brand;
@@ -0,0 +1,30 @@
+package ru.kopanev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.kopanev.enums.ChangeOperation;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись журнала изменений товаров.
+ * Номера {@code seq} возрастают в порядке фиксации изменений, поэтому потребитель
+ * может запоминать номер последнего обработанного изменения и продолжать с него.
+ *
+ * <p>{@code product} содержит текущее состояние товара на момент чтения журнала,
+ * которое может быть новее версии изменения, и равен null, если товар уже удалён.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChange {
+
+    private final long seq;
+    private final long productId;
+    private final ChangeOperation operation;
+    private final long version;
+    private final LocalDateTime changedAt;
+    private final ProductSnapshot product;
+}
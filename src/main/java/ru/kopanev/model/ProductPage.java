@@ -0,0 +1,23 @@
+package ru.kopanev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Данные страницы товара: сам товар и последние действия пользователя.
+ * Части страницы загружаются параллельно. Если БД недоступна, страница
+ * собирается из кэша без последних действий и помечается как устаревшая.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class ProductPage {
+
+    private final ProductSnapshot product;
+    private final List<Event> recentEvents;
+    private final boolean stale;
+}
@@ -0,0 +1,93 @@
+package ru.kopanev.model;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import ru.kopanev.utils.Prices;
+
+import java.util.Objects;
+
+/**
+ * Неизменяемый снимок товара.
+ * Именно снимки хранятся в кэше и возвращаются из него: один экземпляр
+ * можно без копирования отдавать любому количеству вызывающих и потоков.
+ *
+ * <p>Хэш-код вычисляется один раз при создании. Для получения изменённой
+ * копии используется {@link #toBuilder()}.</p>
+ *
+ * <p>Версия снимка соответствует версии строки в БД и позволяет кэшу
+ * отбрасывать устаревшие данные.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+public final class ProductSnapshot {
+
+    private final long id;
+    private final String name;
+    private final String category;
+    private final String brand;
+    private final long price;
+    private final String description;
+    private final long version;
+
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    @Builder(toBuilder = true)
+    public ProductSnapshot(long id, String name, String category, String brand, long price, String description,
+                           long version) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.brand = brand;
+        this.price = price;
+        this.description = description;
+        this.version = version;
+        this.hash = Objects.hash(id, name, category, brand, price, description, version);
+    }
+
+    /**
+     * Создаёт снимок изменяемого товара.
+     *
+     * @param product товар с установленным идентификатором
+     * @return неизменяемый снимок товара
+     */
+    public static ProductSnapshot from(Product product) {
+        return new ProductSnapshot(
+                product.getId(),
+                product.getName(),
+                product.getCategory(),
+                product.getBrand(),
+                product.getPrice(),
+                product.getDescription(),
+                product.getVersion()
+        );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProductSnapshot other)) return false;
+        return hash == other.hash
+                && id == other.id
+                && price == other.price
+                && version == other.version
+                && Objects.equals(name, other.name)
+                && Objects.equals(category, other.category)
+                && Objects.equals(brand, other.brand)
+                && Objects.equals(description, other.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + name + " (" + category + ", " + brand + ") - " + Prices.format(price)
+                + (description != null ? "\n" + description : "");
+    }
+}
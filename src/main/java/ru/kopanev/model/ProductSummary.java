@@ -0,0 +1,30 @@
+package ru.kopanev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.kopanev.utils.Prices;
+
+/**
+ * Краткое представление товара для списков и фильтров.
+ * Не содержит описания товара — оно загружается отдельно по запросу.
+ * Цена хранится в копейках, версия соответствует версии строки в БД.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+@AllArgsConstructor
+public class ProductSummary {
+
+    private final Long id;
+    private final String name;
+    private final String category;
+    private final String brand;
+    private final long price;
+    private final long version;
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + name + " (" + category + ", " + brand + ") - " + Prices.format(price);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.kopanev.model;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Результат чтения с признаком устаревших данных.
+ * Пока БД недоступна, данные читаются из памяти приложения и могут не
+ * содержать последних изменений; {@code asOf} указывает, когда они были загружены.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+public class ReadResult<T> {
+
+    private final T value;
+    private final boolean stale;
+    private final LocalDateTime asOf;
+
+    private ReadResult(T value, boolean stale, LocalDateTime asOf) {
+        this.value = value;
+        this.stale = stale;
+        this.asOf = asOf;
+    }
+
+    public static <T> ReadResult<T> fresh(T value) {
+        return new ReadResult<>(value, false, null);
+    }
+
+    public static <T> ReadResult<T> stale(T value, LocalDateTime asOf) {
+        return new ReadResult<>(value, true, asOf);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.kopanev.model;
+
+import lombok.Getter;
+import ru.kopanev.enums.UpdateStatus;
+
+/**
+ * Результат условного обновления товара с проверкой версии.
+ *
+ * <ul>
+ *   <li>{@link UpdateStatus#UPDATED} — товар обновлён, {@code version} содержит новую версию</li>
+ *   <li>{@link UpdateStatus#CONFLICT} — товар был изменён другим пользователем,
+ *       {@code version} содержит текущую версию в БД; можно перечитать товар и повторить</li>
+ *   <li>{@link UpdateStatus#NOT_FOUND} — товара с таким идентификатором нет</li>
+ * </ul>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Getter
+public class UpdateResult {
+
+    private final UpdateStatus status;
+    private final long version;
+
+    private UpdateResult(UpdateStatus status, long version) {
+        this.status = status;
+        this.version = version;
+    }
+
+    public static UpdateResult updated(long newVersion) {
+        return new UpdateResult(UpdateStatus.UPDATED, newVersion);
+    }
+
+    public static UpdateResult conflict(long currentVersion) {
+        return new UpdateResult(UpdateStatus.CONFLICT, currentVersion);
+    }
+
+    public static UpdateResult notFound() {
+        return new UpdateResult(UpdateStatus.NOT_FOUND, 0);
+    }
+
+    public boolean isUpdated() {
+        return status == UpdateStatus.UPDATED;
+    }
+}
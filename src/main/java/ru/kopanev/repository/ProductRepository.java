@@ -1,9 +1,15 @@
 package ru.kopanev.repository;
 
+import ru.kopanev.model.BufferedUpdate;
+import ru.kopanev.model.Event;
 import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.UpdateResult;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,89 +28,160 @@ import java.util.Optional;
 public interface ProductRepository {
 
     /**
-     * Сохраняет новый товар в базу данных.
-     * После успешного сохранения товару присваивается уникальный идентификатор,
-     * который устанавливается в поле {@code id} объекта.
+     * Сохраняет новый товар в базу данных и записывает событие аудита одним запросом.
+     * После успешного сохранения товару присваивается уникальный идентификатор
+     * и начальная версия, которые устанавливаются в поля {@code id} и {@code version} объекта.
      *
      * @param product товар для сохранения (не должен быть {@code null})
+     * @param auditEvent событие аудита, записываемое вместе с товаром
      * @throws IllegalArgumentException если product равен {@code null}
      * @throws RuntimeException если произошла ошибка при сохранении в БД
      */
-    void save(Product product);
+    void save(Product product, Event auditEvent);
 
     /**
-     * Обновляет существующий товар в базе данных.
-     * Обновляются все поля товара на основе его идентификатора.
+     * Обновляет существующий товар в базе данных с оптимистичной блокировкой.
+     * Обновление выполняется одним запросом и только если версия строки в БД
+     * совпадает с {@code version} объекта. При успехе версия строки увеличивается
+     * и записывается в поле {@code version} объекта, а в том же запросе
+     * записывается событие аудита.
      *
      * @param product товар с обновлёнными данными (не должен быть {@code null},
-     *                должен иметь существующий {@code id})
+     *                должен иметь {@code id} и ожидаемую {@code version})
+     * @param auditEvent событие аудита, записываемое только при успешном обновлении
+     * @return результат обновления: новая версия, конфликт версий или отсутствие товара
      * @throws IllegalArgumentException если product равен {@code null} или id не установлен
-     * @throws RuntimeException если товар с указанным id не найден или произошла ошибка БД
+     * @throws RuntimeException если произошла ошибка БД
      */
-    void update(Product product);
+    UpdateResult update(Product product, Event auditEvent);
 
     /**
-     * Удаляет товар из базы данных по его идентификатору.
+     * Записывает отложенные изменения товаров пакетом в одной транзакции.
+     * Каждое изменение применяется, только если версия строки в БД совпадает
+     * с {@link BufferedUpdate#getExpectedVersion()}; строке присваивается версия
+     * снимка изменения. Вместе с успешным изменением записываются событие аудита
+     * и запись журнала изменений.
+     *
+     * @param updates изменения, не более одного на товар (не должны быть {@code null})
+     * @return для каждого изменения по порядку — true, если товар обновлён; false,
+     *         если версия не совпала или товар удалён
+     * @throws RuntimeException если произошла ошибка БД; в этом случае ни одно изменение не применено
+     */
+    boolean[] updateBatch(List<BufferedUpdate> updates);
+
+    /**
+     * Удаляет товар из базы данных по его идентификатору и записывает событие аудита
+     * одним запросом. К деталям события добавляется название удалённого товара.
      *
      * @param id уникальный идентификатор товара (должен быть положительным числом)
+     * @param auditEvent событие аудита, записываемое только если товар был удалён
+     * @return {@link Optional} со снимком удалённого товара, или пустой {@code Optional},
+     *         если товар с указанным id не найден
      * @throws IllegalArgumentException если id равен {@code null} или меньше 1
      * @throws RuntimeException если произошла ошибка при удалении из БД
      */
-    void delete(Long id);
+    Optional<ProductSnapshot> delete(Long id, Event auditEvent);
 
     /**
      * Находит товар по его уникальному идентификатору.
      *
      * @param id уникальный идентификатор товара (должен быть положительным числом)
-     * @return {@link Optional} содержащий найденный товар, или пустой {@code Optional},
+     * @return {@link Optional} содержащий снимок найденного товара, или пустой {@code Optional},
      *         если товар с указанным id не найден
      * @throws IllegalArgumentException если id равен {@code null} или меньше 1
      * @throws RuntimeException если произошла ошибка при обращении к БД
      */
-    Optional<Product> findById(Long id);
+    Optional<ProductSnapshot> findById(Long id);
+
+    /**
+     * Загружает несколько товаров одним запросом.
+     * Несуществующие идентификаторы в результат не попадают.
+     *
+     * @param ids идентификаторы товаров (не должны быть {@code null})
+     * @return снимки найденных товаров в произвольном порядке; может быть пустым
+     * @throws RuntimeException если произошла ошибка при обращении к БД
+     */
+    List<ProductSnapshot> findByIds(Collection<Long> ids);
+
+    /**
+     * Загружает описание товара по его идентификатору.
+     *
+     * @param id уникальный идентификатор товара (должен быть положительным числом)
+     * @return {@link Optional} с описанием, или пустой {@code Optional}, если товар
+     *         не найден или у него нет описания
+     * @throws RuntimeException если произошла ошибка при обращении к БД
+     */
+    Optional<String> findDescriptionById(Long id);
 
     /**
-     * Возвращает все товары из базы данных.
-     * Товары не отсортированы в определённом порядке.
+     * Загружает описания нескольких товаров одним запросом.
+     * Товары без описания и несуществующие идентификаторы в результат не попадают.
+     *
+     * @param ids идентификаторы товаров (не должны быть {@code null})
+     * @return отображение идентификатора товара в его описание; может быть пустым
+     * @throws RuntimeException если произошла ошибка при обращении к БД
+     */
+    Map<Long, String> findDescriptionsByIds(Collection<Long> ids);
+
+    /**
+     * Возвращает краткие представления всех товаров, отсортированные по id.
+     * Описания товаров не загружаются.
      *
      * @return список всех товаров; может быть пустым, но никогда не {@code null}
      * @throws RuntimeException если произошла ошибка при обращении к БД
      */
-    List<Product> findAll();
+    List<ProductSummary> findAll();
 
     /**
      * Находит все товары в указанной категории.
      * Поиск выполняется с учётом регистра символов.
      *
      * @param category название категории для поиска (не должно быть {@code null} или пустым)
-     * @return список товаров в указанной категории; может быть пустым, но никогда не {@code null}
+     * @return краткие представления товаров в указанной категории; может быть пустым, но никогда не {@code null}
      * @throws IllegalArgumentException если category равен {@code null} или пуст
      * @throws RuntimeException если произошла ошибка при обращении к БД
      */
-    List<Product> findByCategory(String category);
+    List<ProductSummary> findByCategory(String category);
 
     /**
      * Находит все товары указанного бренда.
      * Поиск выполняется с учётом регистра символов.
      *
      * @param brand название бренда для поиска (не должно быть {@code null} или пустым)
-     * @return список товаров указанного бренда; может быть пустым, но никогда не {@code null}
+     * @return краткие представления товаров указанного бренда; может быть пустым, но никогда не {@code null}
      * @throws IllegalArgumentException если brand равен {@code null} или пуст
      * @throws RuntimeException если произошла ошибка при обращении к БД
      */
-    List<Product> findByBrand(String brand);
+    List<ProductSummary> findByBrand(String brand);
 
     /**
      * Находит все товары в указанном диапазоне цен (включительно).
      * Возвращаются товары, цена которых больше или равна {@code minPrice}
-     * и меньше или равна {@code maxPrice}.
+     * и меньше или равна {@code maxPrice}. Цены передаются в копейках.
+     *
+     * @param minPrice минимальная цена в копейках (должна быть неотрицательной)
+     * @param maxPrice максимальная цена в копейках (должна быть больше или равна minPrice)
+     * @return краткие представления товаров в указанном ценовом диапазоне; может быть пустым, но никогда не {@code null}
+     * @throws IllegalArgumentException если minPrice отрицательна или больше maxPrice
+     * @throws RuntimeException если произошла ошибка при обращении к БД
+     */
+    List<ProductSummary> findByPriceRange(long minPrice, long maxPrice);
+
+    /**
+     * Возвращает изменения товаров из журнала, следующие за указанным номером.
+     *
+     * @param afterSeq номер последнего обработанного изменения (0 — с начала журнала)
+     * @param limit максимальное количество изменений
+     * @return изменения по возрастанию номера; может быть пустым
+     * @throws RuntimeException если произошла ошибка при обращении к БД
+     */
+    List<ProductChange> findChangesSince(long afterSeq, int limit);
+
+    /**
+     * Возвращает номер последнего изменения в журнале.
      *
-     * @param minPrice минимальная цена (должна быть неотрицательной и не {@code null})
-     * @param maxPrice максимальная цена (должна быть больше или равна minPrice и не {@code null})
-     * @return список товаров в указанном ценовом диапазоне; может быть пустым, но никогда не {@code null}
-     * @throws IllegalArgumentException если minPrice или maxPrice равны {@code null},
-     *                                  minPrice отрицательна, или minPrice больше maxPrice
+     * @return номер изменения или 0, если журнал пуст
      * @throws RuntimeException если произошла ошибка при обращении к БД
      */
-    List<Product> findByPriceRange(BigDecimal minPrice, BigDecimal maxPrice);
+    long findLatestChangeSeq();
 }
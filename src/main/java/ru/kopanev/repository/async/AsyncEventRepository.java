@@ -0,0 +1,43 @@
+package ru.kopanev.repository.async;
+
+import lombok.RequiredArgsConstructor;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.model.Event;
+import ru.kopanev.repository.EventRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронные варианты операций {@link EventRepository}.
+ * Выполняются на исполнителе пула {@link PoolType#AUDIT}.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+public class AsyncEventRepository {
+
+    private final EventRepository repository;
+    private final RepositoryExecutor executor;
+
+    public CompletableFuture<Void> save(Event event) {
+        return executor.submit(PoolType.AUDIT, () -> {
+            repository.save(event);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Optional<Event>> findById(Long id) {
+        return executor.submit(PoolType.AUDIT, () -> repository.findById(id));
+    }
+
+    public CompletableFuture<List<Event>> findAll() {
+        return executor.submit(PoolType.AUDIT, repository::findAll);
+    }
+
+    public CompletableFuture<List<Event>> findByUsername(String username) {
+        return executor.submit(PoolType.AUDIT, () -> repository.findByUsername(username));
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kopanev.repository.async;
+
+import lombok.RequiredArgsConstructor;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.UpdateResult;
+import ru.kopanev.repository.ProductRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронные варианты операций {@link ProductRepository}.
+ * Чтение выполняется на исполнителе пула {@link PoolType#CATALOG_READ},
+ * запись — на исполнителе пула {@link PoolType#CATALOG_WRITE}.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+public class AsyncProductRepository {
+
+    private final ProductRepository repository;
+    private final RepositoryExecutor executor;
+
+    public CompletableFuture<Void> save(Product product, Event auditEvent) {
+        return executor.submit(PoolType.CATALOG_WRITE, () -> {
+            repository.save(product, auditEvent);
+            return null;
+        });
+    }
+
+    public CompletableFuture<UpdateResult> update(Product product, Event auditEvent) {
+        return executor.submit(PoolType.CATALOG_WRITE, () -> repository.update(product, auditEvent));
+    }
+
+    public CompletableFuture<Optional<ProductSnapshot>> delete(Long id, Event auditEvent) {
+        return executor.submit(PoolType.CATALOG_WRITE, () -> repository.delete(id, auditEvent));
+    }
+
+    public CompletableFuture<Optional<ProductSnapshot>> findById(Long id) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findById(id));
+    }
+
+    public CompletableFuture<List<ProductSnapshot>> findByIds(Collection<Long> ids) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findByIds(ids));
+    }
+
+    public CompletableFuture<Optional<String>> findDescriptionById(Long id) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findDescriptionById(id));
+    }
+
+    public CompletableFuture<Map<Long, String>> findDescriptionsByIds(Collection<Long> ids) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findDescriptionsByIds(ids));
+    }
+
+    public CompletableFuture<List<ProductSummary>> findAll() {
+        return executor.submit(PoolType.CATALOG_READ, repository::findAll);
+    }
+
+    public CompletableFuture<List<ProductSummary>> findByCategory(String category) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findByCategory(category));
+    }
+
+    public CompletableFuture<List<ProductSummary>> findByBrand(String brand) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findByBrand(brand));
+    }
+
+    public CompletableFuture<List<ProductSummary>> findByPriceRange(long minPrice, long maxPrice) {
+        return executor.submit(PoolType.CATALOG_READ, () -> repository.findByPriceRange(minPrice, maxPrice));
+    }
+}
@@ -0,0 +1,50 @@
+package ru.kopanev.repository.async;
+
+import lombok.RequiredArgsConstructor;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.model.User;
+import ru.kopanev.repository.UserRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронные варианты операций {@link UserRepository}.
+ * Выполняются на исполнителе пула {@link PoolType#AUTH}.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+public class AsyncUserRepository {
+
+    private final UserRepository repository;
+    private final RepositoryExecutor executor;
+
+    public CompletableFuture<Void> save(User user) {
+        return executor.submit(PoolType.AUTH, () -> {
+            repository.save(user);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> update(User user) {
+        return executor.submit(PoolType.AUTH, () -> {
+            repository.update(user);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Optional<User>> findById(Long id) {
+        return executor.submit(PoolType.AUTH, () -> repository.findById(id));
+    }
+
+    public CompletableFuture<Optional<User>> findByUsername(String username) {
+        return executor.submit(PoolType.AUTH, () -> repository.findByUsername(username));
+    }
+
+    public CompletableFuture<List<User>> findAll() {
+        return executor.submit(PoolType.AUTH, repository::findAll);
+    }
+}
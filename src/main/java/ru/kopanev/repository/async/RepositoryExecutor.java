@@ -0,0 +1,111 @@
+package ru.kopanev.repository.async;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.utils.Deadline;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Исполнитель асинхронных запросов к БД.
+ * Для каждого пула соединений создаётся свой исполнитель, число потоков которого
+ * равно размеру пула: больше запросов одновременно пул всё равно не обслужит,
+ * а лишние потоки только ждали бы соединение. Запросы сверх очереди отклоняются
+ * сразу — future завершается с {@link RejectedExecutionException}.
+ *
+ * <p>Отмена future (в том числе по таймауту через {@link CompletableFuture#orTimeout})
+ * снимает ещё не начатый запрос с очереди и прерывает поток выполняемого.
+ * Уже отправленный в БД запрос ограничен {@code statement_timeout} своего пула.</p>
+ *
+ * <p>Запросы выполняются вне единицы работы вызывающего потока, но с его
+ * крайним сроком ({@link Deadline}), если он установлен.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class RepositoryExecutor implements AutoCloseable {
+
+    private final Map<PoolType, ThreadPoolExecutor> executors = new EnumMap<>(PoolType.class);
+
+    /**
+     * Создаёт исполнители для всех пулов.
+     *
+     * @param capacities количество соединений каждого пула
+     * @param queueCapacity максимальное количество ожидающих запросов на пул
+     */
+    public RepositoryExecutor(Map<PoolType, Integer> capacities, int queueCapacity) {
+        for (PoolType type : PoolType.values()) {
+            int threads = Math.max(1, capacities.getOrDefault(type, 1));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), daemonThreads(type));
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(type, executor);
+        }
+        log.info("RepositoryExecutor initialized: capacities={}, queueCapacity={}", capacities, queueCapacity);
+    }
+
+    /**
+     * Выполняет запрос асинхронно на исполнителе указанного пула.
+     *
+     * @param poolType пул, соединение которого использует запрос
+     * @param query блокирующий вызов репозитория
+     * @param <T> тип результата
+     * @return future с результатом запроса
+     */
+    public <T> CompletableFuture<T> submit(PoolType poolType, Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Deadline deadline = Deadline.current();
+        Future<?> task;
+        try {
+            task = executors.get(poolType).submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(deadline != null ? deadline.run(query) : query.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Async query rejected: pool {} queue is full", poolType.getKey());
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Останавливает исполнители, прерывая выполняемые запросы.
+     */
+    @Override
+    public void close() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    private static ThreadFactory daemonThreads(PoolType type) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "db-" + type.getKey() + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
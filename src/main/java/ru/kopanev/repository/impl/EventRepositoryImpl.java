@@ -2,6 +2,7 @@ package ru.kopanev.repository.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.enums.Action;
+import ru.kopanev.enums.PoolType;
 import ru.kopanev.model.Event;
 import ru.kopanev.factory.DataSourceFactory;
 import ru.kopanev.repository.EventRepository;
@@ -18,7 +19,7 @@ public class EventRepositoryImpl implements EventRepository {
     private final DataSource dataSource;
 
     public EventRepositoryImpl() {
-        this.dataSource = DataSourceFactory.getDataSource();
+        this.dataSource = DataSourceFactory.getDataSource(PoolType.AUDIT);
     }
 
     @Override
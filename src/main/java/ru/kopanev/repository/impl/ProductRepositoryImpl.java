@@ -1,39 +1,69 @@
 package ru.kopanev.repository.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.ChangeOperation;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.model.BufferedUpdate;
+import ru.kopanev.model.Event;
 import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.UpdateResult;
 import ru.kopanev.factory.DataSourceFactory;
 import ru.kopanev.repository.ProductRepository;
+import ru.kopanev.transaction.TransactionManager;
+import ru.kopanev.utils.Prices;
 import ru.kopanev.utils.SqlQueries;
+import ru.kopanev.utils.StringDictionary;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
 
 @Slf4j
 public class ProductRepositoryImpl implements ProductRepository {
     private final DataSource dataSource;
+    private final DataSource readDataSource;
+    private final TransactionManager transactionManager;
+    private final StringDictionary categories;
+    private final StringDictionary brands;
 
-    public ProductRepositoryImpl() {
-        this.dataSource = DataSourceFactory.getDataSource();
+    public ProductRepositoryImpl(StringDictionary categories, StringDictionary brands) {
+        this(categories, brands, PoolType.CATALOG_READ);
     }
 
-    public void save(Product product) {
+    /**
+     * Создаёт репозиторий, читающий через указанный пул. С {@link PoolType#CATALOG_WRITE}
+     * чтение идёт с основной БД, а не с реплик, и не отстаёт от записей.
+     *
+     * @param categories словарь категорий
+     * @param brands словарь брендов
+     * @param readPool пул для чтения
+     */
+    public ProductRepositoryImpl(StringDictionary categories, StringDictionary brands, PoolType readPool) {
+        this.dataSource = DataSourceFactory.getDataSource(PoolType.CATALOG_WRITE);
+        this.readDataSource = DataSourceFactory.getDataSource(readPool);
+        this.transactionManager = DataSourceFactory.getTransactionManager();
+        this.categories = categories;
+        this.brands = brands;
+    }
+
+    public void save(Product product, Event auditEvent) {
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SqlQueries.SAVE_PRODUCT, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.SAVE_PRODUCT_WITH_AUDIT)) {
 
             stmt.setString(1, product.getName());
             stmt.setString(2, product.getCategory());
             stmt.setString(3, product.getBrand());
-            stmt.setBigDecimal(4, product.getPrice());
+            stmt.setBigDecimal(4, Prices.toDecimal(product.getPrice()));
             stmt.setString(5, product.getDescription());
+            setAuditParameters(stmt, 6, auditEvent);
 
-            stmt.executeUpdate();
-
-            try (ResultSet keys = stmt.getGeneratedKeys()) {
+            try (ResultSet keys = stmt.executeQuery()) {
                 if (keys.next()) {
-                    product.setId(keys.getLong(1));
+                    product.setId(keys.getLong("id"));
+                    product.setVersion(keys.getLong("version"));
                 }
             }
             log.info("Product сохранён, id={}", product.getId());
@@ -43,132 +73,343 @@ public class ProductRepositoryImpl implements ProductRepository {
         }
     }
 
-    public void update(Product product) {
+    public UpdateResult update(Product product, Event auditEvent) {
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SqlQueries.UPDATE_PRODUCT)) {
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.UPDATE_PRODUCT_WITH_AUDIT)) {
 
-            stmt.setString(1, product.getName());
-            stmt.setString(2, product.getCategory());
-            stmt.setString(3, product.getBrand());
-            stmt.setBigDecimal(4, product.getPrice());
-            stmt.setString(5, product.getDescription());
-            stmt.setLong(6, product.getId());
+            stmt.setLong(1, product.getId());
+            stmt.setString(2, product.getName());
+            stmt.setString(3, product.getCategory());
+            stmt.setString(4, product.getBrand());
+            stmt.setBigDecimal(5, Prices.toDecimal(product.getPrice()));
+            stmt.setString(6, product.getDescription());
+            stmt.setLong(7, product.getVersion());
+            setAuditParameters(stmt, 8, auditEvent);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long newVersion = rs.getLong("new_version");
+                if (!rs.wasNull()) {
+                    product.setVersion(newVersion);
+                    log.info("Product обновлён, id={}, version={}", product.getId(), newVersion);
+                    return UpdateResult.updated(newVersion);
+                }
 
-            int rows = stmt.executeUpdate();
-            if (rows == 0) throw new RuntimeException("Product not found: " + product.getId());
-            log.info("Product обновлён, id={}", product.getId());
+                long currentVersion = rs.getLong("current_version");
+                if (rs.wasNull()) {
+                    return UpdateResult.notFound();
+                }
+                log.info("Конфликт версий продукта, id={}, ожидалась version={}, в БД version={}",
+                        product.getId(), product.getVersion(), currentVersion);
+                return UpdateResult.conflict(currentVersion);
+            }
         } catch (SQLException e) {
             log.error("Ошибка обновления продукта: {}", product, e);
             throw new RuntimeException("Failed to update product", e);
         }
     }
 
-    public void delete(Long id) {
+    public boolean[] updateBatch(List<BufferedUpdate> updates) {
+        if (updates.isEmpty()) {
+            return new boolean[0];
+        }
+        // Транзакцией пакета управляет единица работы: внутри операции сервиса пакет присоединяется
+        // к её транзакции, а не фиксирует и не откатывает её соединение посреди операции.
+        return transactionManager.inTransaction(PoolType.CATALOG_WRITE, "product.write-behind",
+                () -> executeBatch(updates));
+    }
+
+    private boolean[] executeBatch(List<BufferedUpdate> updates) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.UPDATE_PRODUCT_BUFFERED_WITH_AUDIT)) {
+
+            for (BufferedUpdate update : updates) {
+                ProductSnapshot product = update.getProduct();
+                stmt.setString(1, product.getName());
+                stmt.setString(2, product.getCategory());
+                stmt.setString(3, product.getBrand());
+                stmt.setBigDecimal(4, Prices.toDecimal(product.getPrice()));
+                stmt.setString(5, product.getDescription());
+                stmt.setLong(6, product.getVersion());
+                stmt.setLong(7, product.getId());
+                stmt.setLong(8, update.getExpectedVersion());
+                setAuditParameters(stmt, 9, update.getAuditEvent());
+                stmt.addBatch();
+            }
+
+            int[] counts = stmt.executeBatch();
+            boolean[] applied = new boolean[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                applied[i] = counts[i] > 0;
+            }
+            log.info("Пакет отложенных обновлений продуктов записан, количество={}", updates.size());
+            return applied;
+        } catch (SQLException e) {
+            log.error("Ошибка пакетного обновления продуктов, количество={}", updates.size(), e);
+            throw new RuntimeException("Failed to update products in batch", e);
+        }
+    }
+
+    public Optional<ProductSnapshot> delete(Long id, Event auditEvent) {
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SqlQueries.DELETE_PRODUCT)) {
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.DELETE_PRODUCT_WITH_AUDIT)) {
 
             stmt.setLong(1, id);
-            int rows = stmt.executeUpdate();
-            if (rows == 0) throw new RuntimeException("Product not found: " + id);
-            log.info("Product удалён, id={}", id);
+            setAuditParameters(stmt, 2, auditEvent);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    log.info("Product удалён, id={}", id);
+                    return Optional.of(mapRowToSnapshot(rs));
+                }
+            }
+            return Optional.empty();
         } catch (SQLException e) {
             log.error("Ошибка удаления продукта, id={}", id, e);
             throw new RuntimeException("Failed to delete product", e);
         }
     }
 
-    public Optional<Product> findById(Long id) {
-        try (Connection conn = dataSource.getConnection();
+    public Optional<ProductSnapshot> findById(Long id) {
+        try (Connection conn = readDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_BY_ID)) {
 
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapRowToProduct(rs));
+                    return Optional.of(mapRowToSnapshot(rs));
                 }
             }
         } catch (SQLException e) {
             log.error("Ошибка поиска продукта, id={}", id, e);
+            throw new RuntimeException("Failed to find product", e);
         }
         return Optional.empty();
     }
 
-    public List<Product> findAll() {
-        List<Product> result = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
+    public List<ProductSnapshot> findByIds(Collection<Long> ids) {
+        List<ProductSnapshot> result = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        try (Connection conn = readDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCTS_BY_IDS)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapRowToSnapshot(rs));
+                }
+            }
+            log.debug("Loaded {} of {} products by ids", result.size(), ids.size());
+        } catch (SQLException e) {
+            log.error("Failed to load products: {}", ids, e);
+            throw new RuntimeException("Failed to load products", e);
+        }
+        return result;
+    }
+
+    public Optional<String> findDescriptionById(Long id) {
+        try (Connection conn = readDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_DESCRIPTION_BY_ID)) {
+
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.ofNullable(rs.getString("description"));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка загрузки описания продукта, id={}", id, e);
+            throw new RuntimeException("Failed to load product description", e);
+        }
+        return Optional.empty();
+    }
+
+    public Map<Long, String> findDescriptionsByIds(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        try (Connection conn = readDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_DESCRIPTIONS_BY_IDS)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String description = rs.getString("description");
+                    if (description != null) {
+                        result.put(rs.getLong("id"), description);
+                    }
+                }
+            }
+            log.debug("Loaded {} descriptions for {} products", result.size(), ids.size());
+        } catch (SQLException e) {
+            log.error("Failed to load descriptions for products: {}", ids, e);
+            throw new RuntimeException("Failed to load product descriptions", e);
+        }
+        return result;
+    }
+
+    public List<ProductSummary> findAll() {
+        List<ProductSummary> result = new ArrayList<>();
+        try (Connection conn = readDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_ALL_PRODUCTS);
              ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) result.add(mapRowToProduct(rs));
+            while (rs.next()) result.add(mapRowToSummary(rs));
+            log.debug("Loaded {} products, dictionary savings: categories={} bytes, brands={} bytes",
+                    result.size(), categories.savedBytes(), brands.savedBytes());
         } catch (SQLException e) {
             log.error("Ошибка получения всех продуктов", e);
+            throw new RuntimeException("Failed to find products", e);
         }
         return result;
     }
 
-    public List<Product> findByCategory(String category) {
-        List<Product> result = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
+    public List<ProductSummary> findByCategory(String category) {
+        List<ProductSummary> result = new ArrayList<>();
+        try (Connection conn = readDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_BY_CATEGORY)) {
 
             stmt.setString(1, category);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    result.add(mapRowToProduct(rs));
+                    result.add(mapRowToSummary(rs));
                 }
             }
             log.debug("Found {} products in category '{}'", result.size(), category);
         } catch (SQLException e) {
             log.error("Failed to find products by category: {}", category, e);
+            throw new RuntimeException("Failed to find products by category", e);
         }
         return result;
     }
 
-    public List<Product> findByBrand(String brand) {
-        List<Product> result = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
+    public List<ProductSummary> findByBrand(String brand) {
+        List<ProductSummary> result = new ArrayList<>();
+        try (Connection conn = readDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_BY_BRAND)) {
 
             stmt.setString(1, brand);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    result.add(mapRowToProduct(rs));
+                    result.add(mapRowToSummary(rs));
                 }
             }
             log.debug("Found {} products of brand '{}'", result.size(), brand);
         } catch (SQLException e) {
             log.error("Failed to find products by brand: {}", brand, e);
+            throw new RuntimeException("Failed to find products by brand", e);
         }
         return result;
     }
 
-    public List<Product> findByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        List<Product> result = new ArrayList<>();
-        try (Connection conn = dataSource.getConnection();
+    public List<ProductSummary> findByPriceRange(long minPrice, long maxPrice) {
+        List<ProductSummary> result = new ArrayList<>();
+        try (Connection conn = readDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_BY_PRICE_RANGE)) {
 
-            stmt.setBigDecimal(1, minPrice);
-            stmt.setBigDecimal(2, maxPrice);
+            stmt.setBigDecimal(1, Prices.toDecimal(minPrice));
+            stmt.setBigDecimal(2, Prices.toDecimal(maxPrice));
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    result.add(mapRowToProduct(rs));
+                    result.add(mapRowToSummary(rs));
                 }
             }
             log.debug("Found {} products in price range [{}, {}]", result.size(), minPrice, maxPrice);
         } catch (SQLException e) {
             log.error("Failed to find products by price range: [{}, {}]", minPrice, maxPrice, e);
+            throw new RuntimeException("Failed to find products by price range", e);
         }
         return result;
     }
 
-    private Product mapRowToProduct(ResultSet rs) throws SQLException {
-        return new Product(
+    public List<ProductChange> findChangesSince(long afterSeq, int limit) {
+        List<ProductChange> result = new ArrayList<>();
+        try (Connection conn = readDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_PRODUCT_CHANGES_SINCE)) {
+
+            stmt.setLong(1, afterSeq);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapRowToChange(rs));
+                }
+            }
+            log.debug("Loaded {} product changes after seq={}", result.size(), afterSeq);
+        } catch (SQLException e) {
+            log.error("Failed to load product changes after seq={}", afterSeq, e);
+            throw new RuntimeException("Failed to load product changes", e);
+        }
+        return result;
+    }
+
+    public long findLatestChangeSeq() {
+        try (Connection conn = readDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SqlQueries.FIND_LATEST_PRODUCT_CHANGE_SEQ);
+             ResultSet rs = stmt.executeQuery()) {
+
+            rs.next();
+            return rs.getLong("seq");
+        } catch (SQLException e) {
+            log.error("Failed to load latest product change seq", e);
+            throw new RuntimeException("Failed to load latest product change seq", e);
+        }
+    }
+
+    private void setAuditParameters(PreparedStatement stmt, int startIndex, Event event) throws SQLException {
+        stmt.setString(startIndex, event.getUsername());
+        stmt.setString(startIndex + 1, event.getAction().name());
+        stmt.setString(startIndex + 2, event.getDetails());
+        stmt.setTimestamp(startIndex + 3, Timestamp.valueOf(event.getTimestamp()));
+    }
+
+    private ProductSnapshot mapRowToSnapshot(ResultSet rs) throws SQLException {
+        return new ProductSnapshot(
+                rs.getLong("id"),
+                rs.getString("name"),
+                categories.intern(rs.getString("category")),
+                brands.intern(rs.getString("brand")),
+                rs.getLong("price_minor"),
+                rs.getString("description"),
+                rs.getLong("version")
+        );
+    }
+
+    private ProductChange mapRowToChange(ResultSet rs) throws SQLException {
+        ProductSnapshot product = null;
+        rs.getLong("id");
+        if (!rs.wasNull()) {
+            product = new ProductSnapshot(
+                    rs.getLong("id"),
+                    rs.getString("name"),
+                    categories.intern(rs.getString("category")),
+                    brands.intern(rs.getString("brand")),
+                    rs.getLong("price_minor"),
+                    rs.getString("description"),
+                    rs.getLong("current_version")
+            );
+        }
+        return new ProductChange(
+                rs.getLong("seq"),
+                rs.getLong("product_id"),
+                ChangeOperation.valueOf(rs.getString("operation")),
+                rs.getLong("version"),
+                rs.getTimestamp("changed_at").toLocalDateTime(),
+                product
+        );
+    }
+
+    private ProductSummary mapRowToSummary(ResultSet rs) throws SQLException {
+        return new ProductSummary(
                 rs.getLong("id"),
                 rs.getString("name"),
-                rs.getString("category"),
-                rs.getString("brand"),
-                rs.getBigDecimal("price"),
-                rs.getString("description")
+                categories.intern(rs.getString("category")),
+                brands.intern(rs.getString("brand")),
+                rs.getLong("price_minor"),
+                rs.getLong("version")
         );
     }
 }
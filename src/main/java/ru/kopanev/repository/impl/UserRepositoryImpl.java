@@ -1,6 +1,7 @@
 package ru.kopanev.repository.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.PoolType;
 import ru.kopanev.model.User;
 import ru.kopanev.factory.DataSourceFactory;
 import ru.kopanev.repository.UserRepository;
@@ -17,7 +18,7 @@ public class UserRepositoryImpl implements UserRepository {
     private final DataSource dataSource;
 
     public UserRepositoryImpl() {
-        this.dataSource = DataSourceFactory.getDataSource();
+        this.dataSource = DataSourceFactory.getDataSource(PoolType.AUTH);
     }
 
     @Override
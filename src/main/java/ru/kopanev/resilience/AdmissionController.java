@@ -0,0 +1,192 @@
+package ru.kopanev.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.exception.DeadlineExceededException;
+import ru.kopanev.utils.Deadline;
+
+import java.sql.SQLTimeoutException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Контроль допуска запросов к БД с адаптивным ограничением параллелизма (AIMD).
+ *
+ * <p>Одновременно к БД допускается не больше {@code limit} операций. Операции сверх
+ * лимита не ждут в очереди пула, а сразу обслуживаются деградированно: чтение —
+ * только из кэша, запись аудита — откладывается, остальное отклоняется.</p>
+ *
+ * <p>Лимит подстраивается после каждой операции:</p>
+ * <ul>
+ *   <li>если сглаженное время ожидания соединения в пуле превышает порог или операция
+ *       не уложилась в срок ({@link #isOverload(Throwable)}) — лимит уменьшается
+ *       умножением на {@code backoffRatio};</li>
+ *   <li>иначе лимит увеличивается на {@code 1 / limit}, то есть примерно на единицу
+ *       за каждые {@code limit} успешных операций.</li>
+ * </ul>
+ *
+ * <p>Лимит хранится в {@link AtomicLong} и меняется через compareAndSet, поэтому
+ * завершение операций не сериализуется на общей блокировке.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class AdmissionController {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long waitThresholdMicros;
+    private final LongSupplier poolWaitMicros;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, LongAdder> shed = new ConcurrentHashMap<>();
+    private final AtomicLong limitBits = new AtomicLong();
+
+    /**
+     * Создаёт контроллер допуска.
+     *
+     * @param initialLimit начальный лимит параллелизма
+     * @param minLimit минимальный лимит
+     * @param maxLimit максимальный лимит
+     * @param backoffRatio множитель уменьшения лимита при перегрузке (от 0 до 1)
+     * @param waitThresholdMs порог времени ожидания соединения, означающий перегрузку
+     * @param poolWaitMicros источник сглаженного времени ожидания соединения в микросекундах
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                               long waitThresholdMs, LongSupplier poolWaitMicros) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.waitThresholdMicros = TimeUnit.MILLISECONDS.toMicros(waitThresholdMs);
+        this.poolWaitMicros = poolWaitMicros;
+        this.limitBits.set(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+        log.info("AdmissionController initialized: limit={}, min={}, max={}", getLimit(), minLimit, maxLimit);
+    }
+
+    /**
+     * Выполняет операцию, если лимит позволяет, иначе — её деградированный вариант.
+     *
+     * @param operation название операции для счётчиков отказов
+     * @param work операция с обращением к БД
+     * @param fallback деградированный вариант без обращения к БД
+     * @return результат операции или её деградированного варианта
+     */
+    public <T> T execute(String operation, Supplier<T> work, Supplier<T> fallback) {
+        if (!tryAcquire()) {
+            shed.computeIfAbsent(operation, key -> new LongAdder()).increment();
+            log.debug("Operation '{}' shed: inFlight={}, limit={}", operation, inFlight.get(), getLimit());
+            return fallback.get();
+        }
+
+        boolean overloaded = false;
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            overloaded = isOverload(e);
+            throw e;
+        } finally {
+            release(overloaded);
+        }
+    }
+
+    /**
+     * Пытается занять место для операции.
+     *
+     * @return true, если операция допущена; вызывающий обязан вызвать {@link #release(boolean)}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место операции и корректирует лимит.
+     *
+     * @param overloaded true, если операция завершилась признаком перегрузки
+     */
+    public void release(boolean overloaded) {
+        inFlight.decrementAndGet();
+        adjustLimit(overloaded || poolWaitMicros.getAsLong() > waitThresholdMicros);
+    }
+
+    /**
+     * Признаёт ошибку операции признаком перегрузки БД: истёк срок запроса
+     * или в цепочке причин есть таймаут JDBC (ожидания соединения или выполнения запроса).
+     *
+     * @param error ошибка операции
+     * @return true, если ошибка означает перегрузку
+     */
+    public static boolean isOverload(Throwable error) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void adjustLimit(boolean overloaded) {
+        while (true) {
+            long bits = limitBits.get();
+            double previous = Double.longBitsToDouble(bits);
+            double next = overloaded
+                    ? Math.max(minLimit, previous * backoffRatio)
+                    : Math.min(maxLimit, previous + 1.0 / previous);
+            if (next == previous) {
+                return;
+            }
+            if (limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                if ((int) next != (int) previous) {
+                    log.debug("Admission limit changed: {} -> {}", (int) previous, (int) next);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return текущий лимит параллелизма
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    /**
+     * @return количество выполняемых операций
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Возвращает количество операций, обслуженных деградированно, по названию операции.
+     *
+     * @return неизменяемая копия счётчиков
+     */
+    public Map<String, Long> getShedCounts() {
+        Map<String, Long> result = new HashMap<>();
+        shed.forEach((operation, counter) -> result.put(operation, counter.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -0,0 +1,205 @@
+package ru.kopanev.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.CircuitState;
+import ru.kopanev.exception.DeadlineExceededException;
+import ru.kopanev.exception.EntityNotFoundException;
+import ru.kopanev.exception.OverloadedException;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Автоматический выключатель обращений к БД.
+ *
+ * <ul>
+ *   <li>{@link CircuitState#CLOSED} — операции выполняются. Сбой БД или операция дольше
+ *       {@code slowCallMs} считается сбоем; после {@code failureThreshold} сбоев подряд
+ *       выключатель размыкается.</li>
+ *   <li>{@link CircuitState#OPEN} — операции к БД не выполняются, вместо них сразу
+ *       вызывается деградированный вариант. Через {@code openDurationMs} выключатель
+ *       переходит в пробный режим.</li>
+ *   <li>{@link CircuitState#HALF_OPEN} — к БД допускается одна пробная операция,
+ *       остальные обслуживаются деградированно. Успешная проба замыкает выключатель,
+ *       неуспешная — снова размыкает.</li>
+ * </ul>
+ *
+ * <p>Сбоем БД считаются только ошибки соединения и таймауты ({@link #isDatabaseFailure(Throwable)}).
+ * Прочие ошибки SQL и отсутствие сущности ({@link EntityNotFoundException}) означают,
+ * что БД ответила. Отказ контроля допуска ({@link OverloadedException}) и ошибки без
+ * обращения к БД состояние не меняют; пробная операция при этом лишь освобождает место
+ * для следующей пробы.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openDurationNanos;
+
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private volatile CircuitState state = CircuitState.CLOSED;
+    private volatile long openedAt;
+    private int consecutiveFailures;
+
+    /**
+     * Создаёт замкнутый выключатель.
+     *
+     * @param failureThreshold количество сбоев подряд, после которого выключатель размыкается
+     * @param slowCallMs длительность операции, начиная с которой она считается сбоем
+     * @param openDurationMs время до пробной операции после размыкания
+     */
+    public CircuitBreaker(int failureThreshold, long slowCallMs, long openDurationMs) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        log.info("CircuitBreaker initialized: failureThreshold={}, slowCallMs={}, openDurationMs={}",
+                failureThreshold, slowCallMs, openDurationMs);
+    }
+
+    /**
+     * Выполняет операцию к БД или, если выключатель разомкнут, её деградированный вариант.
+     *
+     * @param operation название операции для журнала
+     * @param work операция с обращением к БД
+     * @param fallback деградированный вариант без обращения к БД
+     * @return результат операции или её деградированного варианта
+     */
+    public <T> T execute(String operation, Supplier<T> work, Supplier<T> fallback) {
+        boolean probe = false;
+        if (state != CircuitState.CLOSED) {
+            probe = tryStartProbe();
+            if (!probe) {
+                log.debug("Circuit open, operation '{}' served without database", operation);
+                return fallback.get();
+            }
+            log.info("Circuit half-open, probing database with '{}'", operation);
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = work.get();
+        } catch (EntityNotFoundException e) {
+            onSuccess(probe);
+            throw e;
+        } catch (OverloadedException e) {
+            onNeutral(probe);
+            throw e;
+        } catch (RuntimeException e) {
+            if (isDatabaseFailure(e)) {
+                onFailure(operation, probe);
+            } else if (hasSqlCause(e)) {
+                onSuccess(probe);
+            } else {
+                onNeutral(probe);
+            }
+            throw e;
+        }
+
+        if (System.nanoTime() - start > slowCallNanos) {
+            log.warn("Slow database operation '{}': {} ms", operation,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            onFailure(operation, probe);
+        } else {
+            onSuccess(probe);
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, обслуживаются ли операции сейчас без обращения к БД.
+     *
+     * @return true, если выключатель разомкнут или ожидает результата пробы
+     */
+    public boolean isOpen() {
+        return state != CircuitState.CLOSED;
+    }
+
+    /**
+     * @return текущее состояние выключателя
+     */
+    public CircuitState getState() {
+        return state;
+    }
+
+    /**
+     * Признаёт ошибку сбоем БД: в цепочке причин есть ошибка соединения, таймаут JDBC,
+     * истечение срока запроса или ошибка SQL класса 08 (connection exception)
+     * либо 57P (БД останавливается или перезапускается).
+     *
+     * @param error ошибка операции
+     * @return true, если ошибка означает недоступность или перегрузку БД
+     */
+    public static boolean isDatabaseFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLTimeoutException
+                    || cause instanceof DeadlineExceededException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && (sqlException.getSQLState().startsWith("08") || sqlException.getSQLState().startsWith("57P"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSqlCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryStartProbe() {
+        if (state == CircuitState.OPEN && System.nanoTime() - openedAt < openDurationNanos) {
+            return false;
+        }
+        if (!probeInFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        state = CircuitState.HALF_OPEN;
+        return true;
+    }
+
+    private synchronized void onSuccess(boolean probe) {
+        consecutiveFailures = 0;
+        if (probe) {
+            state = CircuitState.CLOSED;
+            probeInFlight.set(false);
+            log.info("Circuit closed: database is available again");
+        }
+    }
+
+    /**
+     * Освобождает место пробы, не меняя состояние: операция ничего не сказала о доступности БД.
+     */
+    private void onNeutral(boolean probe) {
+        if (probe) {
+            probeInFlight.set(false);
+        }
+    }
+
+    private synchronized void onFailure(String operation, boolean probe) {
+        consecutiveFailures++;
+        if (probe || (state == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = System.nanoTime();
+            state = CircuitState.OPEN;
+            probeInFlight.set(false);
+            log.warn("Circuit opened after '{}' failed: consecutiveFailures={}", operation, consecutiveFailures);
+        }
+    }
+}
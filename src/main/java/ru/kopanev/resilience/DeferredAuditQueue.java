@@ -0,0 +1,130 @@
+package ru.kopanev.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.Event;
+import ru.kopanev.repository.EventRepository;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Очередь событий аудита, отложенных при перегрузке.
+ * Фоновая задача периодически записывает их в БД, пока {@link AdmissionController}
+ * допускает операции. Записи идут через {@link CircuitBreaker}, поэтому при недоступной
+ * БД фоновая задача служит пробой её восстановления, а не повторяет ошибки каждый интервал.
+ * При переполнении очереди отбрасываются самые старые события.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class DeferredAuditQueue implements AutoCloseable {
+
+    private final BlockingQueue<Event> events;
+    private final EventRepository eventRepository;
+    private final AdmissionController admission;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService flusher;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Создаёт очередь и запускает её фоновую запись.
+     *
+     * @param capacity максимальное количество отложенных событий
+     * @param flushIntervalMs интервал фоновой записи в миллисекундах
+     * @param eventRepository репозиторий событий
+     * @param admission контроль допуска запросов к БД
+     * @param circuitBreaker выключатель обращений к БД
+     */
+    public DeferredAuditQueue(int capacity, long flushIntervalMs, EventRepository eventRepository,
+                              AdmissionController admission, CircuitBreaker circuitBreaker) {
+        this.events = new ArrayBlockingQueue<>(capacity);
+        this.eventRepository = eventRepository;
+        this.admission = admission;
+        this.circuitBreaker = circuitBreaker;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "deferred-audit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Откладывает событие до снижения нагрузки.
+     *
+     * @param event событие аудита
+     */
+    public void defer(Event event) {
+        while (!events.offer(event)) {
+            if (events.poll() != null) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Записывает отложенные события, пока контроль допуска это разрешает.
+     */
+    void flush() {
+        Event event;
+        while ((event = events.peek()) != null) {
+            if (!admission.tryAcquire()) {
+                return;
+            }
+            boolean overloaded = false;
+            try {
+                Event pending = event;
+                boolean saved = circuitBreaker.execute("audit.flush", () -> {
+                    eventRepository.save(pending);
+                    return true;
+                }, () -> false);
+                if (!saved) {
+                    return;
+                }
+                events.remove(event);
+            } catch (RuntimeException e) {
+                overloaded = AdmissionController.isOverload(e);
+                log.warn("Failed to flush deferred audit event, will retry: {}", e.getMessage());
+                return;
+            } finally {
+                admission.release(overloaded);
+            }
+        }
+    }
+
+    /**
+     * @return количество ожидающих записи событий
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * @return количество событий, отброшенных из-за переполнения очереди
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Останавливает фоновую запись и пытается записать оставшиеся события.
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        Event event;
+        while ((event = events.poll()) != null) {
+            try {
+                eventRepository.save(event);
+            } catch (RuntimeException e) {
+                log.warn("Deferred audit events lost on shutdown: {}", events.size() + 1);
+                return;
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ru.kopanev.enums.Action;
 import ru.kopanev.model.Event;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис для управления аудитом действий пользователей.
@@ -16,6 +17,9 @@ public interface AuditService {
 
     /**
      * Записывает действие пользователя в систему аудита.
+     * При перегрузке БД запись откладывается и выполняется в фоне.
+     * Внутри единицы работы запись не откладывается: событие записывается в её транзакции,
+     * а ошибка пробрасывается, чтобы операция откатилась вместе с событием.
      *
      * @param username имя пользователя
      * @param action тип действия
@@ -41,4 +45,13 @@ public interface AuditService {
      * @throws IllegalArgumentException если username равен null
      */
     List<Event> getEventsByUsername(String username);
+
+    /**
+     * Асинхронно возвращает историю действий пользователя.
+     * Запрос выполняется на исполнителе пула аудита.
+     *
+     * @param username имя пользователя
+     * @return future со списком событий пользователя, отсортированным по времени (новые первыми)
+     */
+    CompletableFuture<List<Event>> getEventsByUsernameAsync(String username);
 }
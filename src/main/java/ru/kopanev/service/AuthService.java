@@ -3,6 +3,7 @@ package ru.kopanev.service;
 /**
  * Сервис для управления аутентификацией и авторизацией пользователей.
  * Обеспечивает регистрацию, вход и выход пользователей из системы.
+ * Каждая операция выполняется в одной транзакции на одном соединении из пула.
  *
  * @author Artem Kopanev
  * @since 1.0
@@ -1,10 +1,22 @@
 package ru.kopanev.service;
 
+import ru.kopanev.exception.DeadlineExceededException;
 import ru.kopanev.exception.EntityNotFoundException;
+import ru.kopanev.exception.ServiceUnavailableException;
+import ru.kopanev.model.HotProduct;
 import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductPage;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.ReadResult;
+import ru.kopanev.model.UpdateResult;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис для управления товарами.
@@ -18,16 +30,69 @@ public interface ProductService {
 
     /**
      * Возвращает товар по ID.
+     * Возвращаемый снимок неизменяем и может разделяться с кэшем.
      *
      * @param id идентификатор товара
-     * @return найденный товар
+     * @return снимок найденного товара
      * @throws EntityNotFoundException если товар не найден
+     * @throws ServiceUnavailableException если БД недоступна и товара нет в кэше
      */
-    Product getProduct(Long id);
+    ProductSnapshot getProduct(Long id);
+
+    /**
+     * Возвращает описание товара.
+     * Описание загружается по запросу и кэшируется отдельно от товаров.
+     *
+     * @param id идентификатор товара
+     * @return описание товара или {@code null}, если у товара нет описания
+     */
+    String getDescription(Long id);
+
+    /**
+     * Возвращает описания нескольких товаров.
+     * Отсутствующие в кэше описания загружаются одним запросом.
+     *
+     * @param ids идентификаторы товаров
+     * @return отображение идентификатора товара в его описание
+     */
+    Map<Long, String> getDescriptions(Collection<Long> ids);
+
+    /**
+     * Асинхронно возвращает товар по ID.
+     * При попадании в кэш future уже завершена.
+     *
+     * @param id идентификатор товара
+     * @return future со снимком товара; завершается с {@link EntityNotFoundException},
+     *         если товар не найден
+     */
+    CompletableFuture<ProductSnapshot> getProductAsync(Long id);
+
+    /**
+     * Асинхронно возвращает описания нескольких товаров.
+     * Отсутствующие в кэшах описания загружаются одним запросом.
+     *
+     * @param ids идентификаторы товаров
+     * @return future с описаниями по ID товара
+     */
+    CompletableFuture<Map<Long, String>> getDescriptionsAsync(Collection<Long> ids);
+
+    /**
+     * Возвращает данные страницы товара.
+     * Товар и последние действия пользователя загружаются параллельно;
+     * при ошибке или истечении времени ожидания одного запроса другой отменяется.
+     * Пока БД недоступна, товар берётся из кэша, а страница помечается как устаревшая.
+     *
+     * @param username имя пользователя
+     * @param id идентификатор товара
+     * @return товар и последние действия пользователя
+     * @throws EntityNotFoundException если товар не найден
+     * @throws DeadlineExceededException если страница не собрана за отведённое время
+     */
+    ProductPage getProductPage(String username, Long id);
 
     /**
      * Добавляет новый товар в систему.
-     * Логирует действие в аудит.
+     * Товар и событие аудита записываются одним запросом.
      *
      * @param username имя пользователя, добавляющего товар
      * @param product товар для добавления
@@ -35,18 +100,26 @@ public interface ProductService {
     void addProduct(String username, Product product);
 
     /**
-     * Обновляет существующий товар.
-     * Логирует действие в аудит.
+     * Обновляет существующий товар с проверкой версии.
+     * Товар обновляется, только если его версия в БД совпадает с {@code product.getVersion()}.
+     * При конфликте версий вызывающий может перечитать товар и повторить попытку.
+     * Событие аудита записывается тем же запросом, что и обновление.
+     *
+     * <p>При включённой отложенной записи ({@code write-behind.enabled}) изменение
+     * кэшированного товара сначала попадает в буфер, версия сверяется с кэшем, а в БД
+     * изменение записывается позже пакетом; при расхождении с БД в момент записи
+     * изменение отбрасывается (см. {@link ru.kopanev.utils.WriteBehindBuffer}).</p>
      *
      * @param username имя пользователя, обновляющего товар
-     * @param product товар с обновлёнными данными
+     * @param product товар с обновлёнными данными и ожидаемой версией
+     * @return результат обновления ({@code UPDATED} или {@code CONFLICT})
      * @throws EntityNotFoundException если товар не найден
      */
-    void updateProduct(String username, Product product);
+    UpdateResult updateProduct(String username, Product product);
 
     /**
      * Удаляет товар по ID.
-     * Логирует действие в аудит.
+     * Удаление и событие аудита выполняются одним запросом.
      *
      * @param username имя пользователя, удаляющего товар
      * @param id идентификатор товара для удаления
@@ -55,11 +128,13 @@ public interface ProductService {
     void deleteProduct(String username, Long id);
 
     /**
-     * Возвращает все товары из системы.
+     * Возвращает все товары из системы без описаний.
+     * Пока БД недоступна, список берётся из последнего загруженного снимка каталога.
      *
-     * @return список всех товаров
+     * @return краткие представления всех товаров с признаком устаревших данных
+     * @throws ServiceUnavailableException если БД недоступна и снимок каталога ещё не загружался
      */
-    List<Product> getAllProducts();
+    ReadResult<List<ProductSummary>> getAllProducts();
 
     /**
      * Находит товары по категории.
@@ -67,9 +142,9 @@ public interface ProductService {
      *
      * @param username имя пользователя, выполняющего поиск
      * @param category название категории
-     * @return список товаров указанной категории
+     * @return краткие представления товаров указанной категории с признаком устаревших данных
      */
-    List<Product> findByCategory(String username, String category);
+    ReadResult<List<ProductSummary>> findByCategory(String username, String category);
 
     /**
      * Находит товары по бренду.
@@ -77,18 +152,46 @@ public interface ProductService {
      *
      * @param username имя пользователя, выполняющего поиск
      * @param brand название бренда
-     * @return список товаров указанного бренда
+     * @return краткие представления товаров указанного бренда с признаком устаревших данных
      */
-    List<Product> findByBrand(String username, String brand);
+    ReadResult<List<ProductSummary>> findByBrand(String username, String brand);
 
     /**
      * Находит товары в диапазоне цен.
-     * Логирует действие в аудит.
+     * Цены округляются до копеек. Логирует действие в аудит.
      *
      * @param username имя пользователя, выполняющего поиск
      * @param minPrice минимальная цена
      * @param maxPrice максимальная цена
-     * @return список товаров в указанном ценовом диапазоне
+     * @return краткие представления товаров в указанном ценовом диапазоне с признаком устаревших данных
+     */
+    ReadResult<List<ProductSummary>> findByPriceRange(String username, BigDecimal minPrice, BigDecimal maxPrice);
+
+    /**
+     * Возвращает изменения товаров, следующие за указанным номером.
+     * Потребитель запоминает номер последнего полученного изменения и запрашивает
+     * следующие порции, пока результат не станет пустым.
+     *
+     * @param seq номер последнего обработанного изменения (0 — с начала журнала)
+     * @param limit максимальное количество изменений в порции
+     * @return изменения по возрастанию номера; может быть пустым
+     * @throws ServiceUnavailableException если БД недоступна
+     */
+    List<ProductChange> changesSince(long seq, int limit);
+
+    /**
+     * Возвращает показатели кэша товаров: попадания, промахи, загрузки,
+     * вытеснения по причинам, размер и второй уровень.
+     *
+     * @return метрики с именами вида {@code cache.product.hits}
+     */
+    Map<String, Number> getCacheMetrics();
+
+    /**
+     * Возвращает самые запрашиваемые товары по текущей нагрузке.
+     *
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию оценки обращений
      */
-    List<Product> findByPriceRange(String username, BigDecimal minPrice, BigDecimal maxPrice);
-}
\ No newline at end of file
+    List<HotProduct> getHotProducts(int limit);
+}
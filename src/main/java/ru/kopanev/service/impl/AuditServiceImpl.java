@@ -3,31 +3,74 @@ package ru.kopanev.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.enums.Action;
+import ru.kopanev.exception.ServiceUnavailableException;
 import ru.kopanev.model.Event;
 import ru.kopanev.repository.EventRepository;
+import ru.kopanev.repository.async.AsyncEventRepository;
+import ru.kopanev.resilience.AdmissionController;
+import ru.kopanev.resilience.CircuitBreaker;
+import ru.kopanev.resilience.DeferredAuditQueue;
 import ru.kopanev.service.AuditService;
+import ru.kopanev.transaction.TransactionManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RequiredArgsConstructor
 public class AuditServiceImpl implements AuditService {
 
     private final EventRepository eventRepository;
+    private final AsyncEventRepository asyncEventRepository;
+    private final AdmissionController admission;
+    private final DeferredAuditQueue deferredEvents;
+    private final CircuitBreaker circuitBreaker;
+    private final TransactionManager transactionManager;
 
     public void logAction(String username, Action action, String details) {
         Event event = new Event(username, action, details);
         event.setTimestamp(LocalDateTime.now());
-        eventRepository.save(event);
+        if (transactionManager.isInTransaction()) {
+            // Отложенное событие записалось бы и при откате операции, поэтому ошибка пробрасывается.
+            eventRepository.save(event);
+            log.debug("Audit event logged in transaction: user={}, action={}, details={}", username, action, details);
+            return;
+        }
+        try {
+            circuitBreaker.execute("audit.log", () -> admission.execute("audit.log", () -> {
+                eventRepository.save(event);
+                return null;
+            }, () -> defer(event)), () -> defer(event));
+        } catch (RuntimeException e) {
+            log.warn("Failed to save audit event, deferring: {}", e.getMessage());
+            defer(event);
+        }
         log.debug("Audit event logged: user={}, action={}, details={}", username, action, details);
     }
 
     public List<Event> getAllEvents() {
-        return eventRepository.findAll();
+        return circuitBreaker.execute("audit.list", eventRepository::findAll, () -> {
+            throw unavailable();
+        });
     }
 
     public List<Event> getEventsByUsername(String username) {
-        return eventRepository.findByUsername(username);
+        return circuitBreaker.execute("audit.list", () -> eventRepository.findByUsername(username), () -> {
+            throw unavailable();
+        });
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<List<Event>> getEventsByUsernameAsync(String username) {
+        return asyncEventRepository.findByUsername(username);
+    }
+
+    private Void defer(Event event) {
+        deferredEvents.defer(event);
+        return null;
+    }
+
+    private static ServiceUnavailableException unavailable() {
+        return new ServiceUnavailableException("База данных недоступна, аудит временно не просматривается");
+    }
+}
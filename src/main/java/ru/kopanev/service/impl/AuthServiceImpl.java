@@ -3,11 +3,13 @@ package ru.kopanev.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.enums.Action;
+import ru.kopanev.enums.PoolType;
 import ru.kopanev.exception.EntityNotFoundException;
 import ru.kopanev.model.User;
 import ru.kopanev.repository.UserRepository;
 import ru.kopanev.service.AuditService;
 import ru.kopanev.service.AuthService;
+import ru.kopanev.transaction.TransactionManager;
 import ru.kopanev.utils.PasswordEncoder;
 import ru.kopanev.utils.UserSession;
 
@@ -18,8 +20,32 @@ public class AuthServiceImpl implements AuthService {
     private final AuditService auditService;
     private final UserRepository userRepository;
     private final UserSession session;
+    private final TransactionManager transactionManager;
 
     public boolean register(String username, String password) {
+        return transactionManager.inTransaction(PoolType.AUTH, "auth.register", () -> doRegister(username, password));
+    }
+
+    public boolean login(String username, String password) {
+        boolean authenticated = transactionManager.inTransaction(PoolType.AUTH, "auth.login",
+                () -> doLogin(username, password));
+        // Сессия меняется только после фиксации: при откате вход не должен состояться.
+        if (authenticated) {
+            session.login(username);
+            log.info("User logged in successfully: {}", username);
+        }
+        return authenticated;
+    }
+
+    public void logout() {
+        String username = transactionManager.inTransaction(PoolType.AUTH, "auth.logout", this::doLogout);
+        if (username != null) {
+            session.logout();
+            log.info("User logged out: {}", username);
+        }
+    }
+
+    private boolean doRegister(String username, String password) {
         log.info("Registration attempt: {}", username);
 
         if (userRepository.findByUsername(username).isPresent()) {
@@ -41,7 +67,7 @@ public class AuthServiceImpl implements AuthService {
         return true;
     }
 
-    public boolean login(String username, String password) {
+    private boolean doLogin(String username, String password) {
         log.info("Login attempt: {}", username);
 
         User user = userRepository.findByUsername(username)
@@ -55,19 +81,16 @@ public class AuthServiceImpl implements AuthService {
         user.setActive(true);
         userRepository.update(user);
 
-        session.login(username);
-
         auditService.logAction(username, Action.LOGIN, "Пользователь " + username + " авторизован!");
-        log.info("User logged in successfully: {}", username);
         return true;
     }
 
-    public void logout() {
+    private String doLogout() {
         String username = session.getCurrentUser();
 
         if (username == null) {
             log.warn("Logout attempt with no active session");
-            return;
+            return null;
         }
 
         log.info("Logout: {}", username);
@@ -78,10 +101,8 @@ public class AuthServiceImpl implements AuthService {
         user.setActive(false);
         userRepository.update(user);
 
-        session.logout();
-
         auditService.logAction(username, Action.LOGOUT, "User logged out");
-        log.info("User logged out: {}", username);
+        return username;
     }
 
     public boolean isLoggedIn() {
@@ -3,93 +3,444 @@ package ru.kopanev.service.impl;
 import lombok.extern.slf4j.Slf4j;
 import ru.kopanev.enums.Action;
 import ru.kopanev.exception.EntityNotFoundException;
+import ru.kopanev.exception.OverloadedException;
+import ru.kopanev.exception.ServiceUnavailableException;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.FilterCriteria;
+import ru.kopanev.model.HotProduct;
 import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductPage;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.ReadResult;
+import ru.kopanev.model.UpdateResult;
 import ru.kopanev.repository.ProductRepository;
+import ru.kopanev.repository.async.AsyncProductRepository;
+import ru.kopanev.resilience.AdmissionController;
+import ru.kopanev.resilience.CircuitBreaker;
 import ru.kopanev.service.AuditService;
 import ru.kopanev.service.ProductService;
+import ru.kopanev.utils.CatalogSnapshot;
+import ru.kopanev.utils.DescriptionCache;
+import ru.kopanev.utils.FilterResultCache;
+import ru.kopanev.utils.Futures;
+import ru.kopanev.utils.Prices;
 import ru.kopanev.utils.ProductCache;
+import ru.kopanev.utils.WriteBehindBuffer;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 public class ProductServiceImpl implements ProductService {
+    private static final int RECENT_EVENTS_LIMIT = 5;
+
     private final ProductRepository productRepository;
+    private final AsyncProductRepository asyncProductRepository;
     private final AuditService auditService;
     private final ProductCache productCache;
+    private final DescriptionCache descriptionCache;
+    private final Duration pageTimeout;
+    private final AdmissionController admission;
+    private final CircuitBreaker circuitBreaker;
+    private final CatalogSnapshot catalogSnapshot;
+    private final FilterResultCache filterResults;
+    private final int prefetchLimit;
+    private final WriteBehindBuffer writeBehind;
 
-    public ProductServiceImpl(ProductRepository productRepository, AuditService auditService, ProductCache productCache) {
+    public ProductServiceImpl(ProductRepository productRepository, AsyncProductRepository asyncProductRepository,
+                              AuditService auditService, ProductCache productCache,
+                              DescriptionCache descriptionCache, Duration pageTimeout,
+                              AdmissionController admission, CircuitBreaker circuitBreaker,
+                              CatalogSnapshot catalogSnapshot, FilterResultCache filterResults, int prefetchLimit,
+                              WriteBehindBuffer writeBehind) {
         this.productRepository = productRepository;
+        this.asyncProductRepository = asyncProductRepository;
         this.auditService = auditService;
         this.productCache = productCache;
+        this.descriptionCache = descriptionCache;
+        this.pageTimeout = pageTimeout;
+        this.admission = admission;
+        this.circuitBreaker = circuitBreaker;
+        this.catalogSnapshot = catalogSnapshot;
+        this.filterResults = filterResults;
+        this.prefetchLimit = prefetchLimit;
+        this.writeBehind = writeBehind;
     }
 
-    public Product getProduct(Long id) {
-        Optional<Product> cachedProduct = productCache.get(id);
-        if (cachedProduct.isPresent()) {
-            return cachedProduct.get();
+    public ProductSnapshot getProduct(Long id) {
+        ProductSnapshot cachedProduct = cached(id);
+        if (cachedProduct != null) {
+            return cachedProduct;
         }
 
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Товар с ID " + id + " не найден"));
+        long start = System.nanoTime();
+        ProductSnapshot product;
+        try {
+            product = read("product.get", () -> productRepository.findById(id), () -> {
+                        throw unavailable();
+                    })
+                    .orElseThrow(() -> new EntityNotFoundException("Товар с ID " + id + " не найден"));
+        } catch (RuntimeException e) {
+            productCache.stats().recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        productCache.stats().recordLoadSuccess(System.nanoTime() - start);
         productCache.put(product);
 
         return product;
     }
 
-    public void addProduct(String username, Product product) {
-        log.info("Adding product: {}", product.getName());
+    public String getDescription(Long id) {
+        ProductSnapshot cachedProduct = cached(id);
+        if (cachedProduct != null) {
+            return cachedProduct.getDescription();
+        }
 
-        productRepository.save(product);
-        productCache.put(product);
+        String description = descriptionCache.get(id);
+        if (description != null) {
+            return description == DescriptionCache.NO_DESCRIPTION ? null : description;
+        }
+
+        description = read("product.description", () -> productRepository.findDescriptionById(id), () -> {
+            throw unavailable();
+        }).orElse(null);
+        descriptionCache.put(id, description);
+        return description;
+    }
+
+    public Map<Long, String> getDescriptions(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        collectCachedDescriptions(ids, result, missing);
+
+        if (!missing.isEmpty()) {
+            Map<Long, String> loaded = circuitBreaker.execute("product.descriptions",
+                    () -> admission.execute("product.descriptions", () -> productRepository.findDescriptionsByIds(missing),
+                            () -> null),
+                    () -> null);
+            if (loaded != null) {
+                cacheDescriptions(missing, loaded);
+                result.putAll(loaded);
+            }
+        }
+
+        return result;
+    }
+
+    public CompletableFuture<ProductSnapshot> getProductAsync(Long id) {
+        ProductSnapshot cachedProduct = cached(id);
+        if (cachedProduct != null) {
+            return CompletableFuture.completedFuture(cachedProduct);
+        }
+
+        long start = System.nanoTime();
+        return asyncProductRepository.findById(id).whenComplete((found, error) -> {
+            if (error != null || found.isEmpty()) {
+                productCache.stats().recordLoadFailure(System.nanoTime() - start);
+            } else {
+                productCache.stats().recordLoadSuccess(System.nanoTime() - start);
+            }
+        }).thenApply(found -> {
+            ProductSnapshot product = found
+                    .orElseThrow(() -> new EntityNotFoundException("Товар с ID " + id + " не найден"));
+            productCache.put(product);
+            return product;
+        });
+    }
 
-        auditService.logAction(username, Action.ADD_PRODUCT, "Добавлен товар: " + product.getName());
+    public CompletableFuture<Map<Long, String>> getDescriptionsAsync(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        collectCachedDescriptions(ids, result, missing);
+
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return asyncProductRepository.findDescriptionsByIds(missing).thenApply(loaded -> {
+            cacheDescriptions(missing, loaded);
+            result.putAll(loaded);
+            return result;
+        });
     }
 
-    public void updateProduct(String username, Product product) {
-        log.info("Updating product: id={}", product.getId());
+    public ProductPage getProductPage(String username, Long id) {
+        if (circuitBreaker.isOpen()) {
+            return new ProductPage(getProduct(id), List.of(), true);
+        }
+
+        CompletableFuture<ProductPage> page = Futures.both(
+                getProductAsync(id),
+                auditService.getEventsByUsernameAsync(username),
+                (product, events) -> new ProductPage(product,
+                        events.subList(0, Math.min(RECENT_EVENTS_LIMIT, events.size())), false));
+        return Futures.await(page, pageTimeout);
+    }
 
-        productRepository.findById(product.getId())
-                .orElseThrow(() -> new EntityNotFoundException("Товар с ID " + product.getId() + " не найден"));
+    public void addProduct(String username, Product product) {
+        log.info("Adding product: {}", product.getName());
+
+        write("product.add", () -> {
+            productRepository.save(product, new Event(username, Action.ADD_PRODUCT, "Добавлен товар: " + product.getName()));
+            return null;
+        });
+        ProductSnapshot snapshot = ProductSnapshot.from(product);
+        productCache.put(snapshot);
+        filterResults.onProductChanged(snapshot.getId(), snapshot);
+    }
 
-        productRepository.update(product);
-        productCache.update(product);
+    public UpdateResult updateProduct(String username, Product product) {
+        log.info("Updating product: id={}, version={}", product.getId(), product.getVersion());
 
-        auditService.logAction(username, Action.UPDATE_PRODUCT, "Обновлен товар: " + product.getName());
+        Event event = new Event(username, Action.UPDATE_PRODUCT, "Обновлен товар: " + product.getName());
+        UpdateResult result = buffer(product, event);
+        boolean buffered = result != null;
+        if (!buffered) {
+            result = write("product.update", () -> productRepository.update(product, event));
+        }
+        switch (result.getStatus()) {
+            case NOT_FOUND -> {
+                productCache.invalidateDeleted(product.getId());
+                throw new EntityNotFoundException("Товар с ID " + product.getId() + " не найден");
+            }
+            case CONFLICT -> {
+                // Версия из буфера в БД ещё не записана, а кэш уже содержит состояние буфера.
+                if (!buffered) {
+                    productCache.invalidate(product.getId(), result.getVersion());
+                }
+                return result;
+            }
+            case UPDATED -> {
+                ProductSnapshot snapshot = ProductSnapshot.from(product);
+                productCache.update(snapshot);
+                descriptionCache.invalidate(product.getId());
+                filterResults.onProductChanged(snapshot.getId(), snapshot);
+            }
+        }
+        return result;
     }
 
     public void deleteProduct(String username, Long id) {
         log.info("Deleting product: id={}", id);
 
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Товар с ID " + id + " не найден"));
-
-        productRepository.delete(id);
-        productCache.invalidate(id);
+        Optional<ProductSnapshot> deleted = write("product.delete",
+                () -> productRepository.delete(id, new Event(username, Action.REMOVE_PRODUCT, "Удален товар: ")));
+        if (writeBehind != null) {
+            writeBehind.discard(id);
+        }
+        productCache.invalidateDeleted(id);
+        descriptionCache.invalidate(id);
+        filterResults.onProductChanged(id, null);
 
-        auditService.logAction(username, Action.REMOVE_PRODUCT, "Удален товар: " + product.getName());
+        if (deleted.isEmpty()) {
+            throw new EntityNotFoundException("Товар с ID " + id + " не найден");
+        }
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public ReadResult<List<ProductSummary>> getAllProducts() {
+        ReadResult<List<ProductSummary>> result = readList("product.list", () -> {
+            List<ProductSummary> products = productRepository.findAll();
+            catalogSnapshot.update(products);
+            return products;
+        }, product -> true);
+        if (!result.isStale()) {
+            prefetch(result.getValue());
+        }
+        return result;
     }
 
-    public List<Product> findByCategory(String username, String category) {
+    public ReadResult<List<ProductSummary>> findByCategory(String username, String category) {
         log.info("Filtering products by category: {}", category);
         auditService.logAction(username, Action.FILTERED_BY_CATEGORY, "Отсортированы предметы по категории " + category);
-        return productRepository.findByCategory(category);
+        FilterCriteria criteria = FilterCriteria.category(category);
+        return readFiltered(criteria, () -> productRepository.findByCategory(criteria.getValue()));
     }
 
-    public List<Product> findByBrand(String username, String brand) {
+    public ReadResult<List<ProductSummary>> findByBrand(String username, String brand) {
         log.info("Filtering products by brand: {}", brand);
         auditService.logAction(username, Action.FILTERED_BY_BRAND, "Отсортированы предметы по бренду " + brand);
-        return productRepository.findByBrand(brand);
+        FilterCriteria criteria = FilterCriteria.brand(brand);
+        return readFiltered(criteria, () -> productRepository.findByBrand(criteria.getValue()));
     }
 
-    public List<Product> findByPriceRange(String username, BigDecimal minPrice, BigDecimal maxPrice) {
+    public ReadResult<List<ProductSummary>> findByPriceRange(String username, BigDecimal minPrice, BigDecimal maxPrice) {
         log.info("Filtering products by price range: [{}, {}]", minPrice, maxPrice);
         auditService.logAction(username, Action.FILTERED_BY_PRICE_RANGE, "Отсортированы предметы по цене от " + minPrice + " до " + maxPrice);
-        return productRepository.findByPriceRange(minPrice, maxPrice);
+        FilterCriteria criteria = FilterCriteria.priceRange(Prices.toMinorUnits(minPrice), Prices.toMinorUnits(maxPrice));
+        return readFiltered(criteria,
+                () -> productRepository.findByPriceRange(criteria.getMinPrice(), criteria.getMaxPrice()));
+    }
+
+    public List<ProductChange> changesSince(long seq, int limit) {
+        return read("product.changes", () -> productRepository.findChangesSince(seq, limit), () -> {
+            throw unavailable();
+        });
+    }
+
+    public Map<String, Number> getCacheMetrics() {
+        Map<String, Number> metrics = productCache.toMetrics();
+        metrics.putAll(filterResults.toMetrics());
+        if (writeBehind != null) {
+            metrics.putAll(writeBehind.toMetrics());
+        }
+        return metrics;
+    }
+
+    public List<HotProduct> getHotProducts(int limit) {
+        return productCache.hotProducts(limit);
+    }
+
+    /**
+     * Принимает изменение в буфер отложенной записи, если он включён, БД доступна
+     * и товар есть в буфере или в кэше.
+     *
+     * @return результат изменения или null, если изменение нужно записать в БД сразу
+     */
+    private UpdateResult buffer(Product product, Event event) {
+        if (writeBehind == null || circuitBreaker.isOpen()) {
+            return null;
+        }
+        return writeBehind.offer(product, event, productCache.peek(product.getId()).orElse(null));
+    }
+
+    /**
+     * Возвращает товар из буфера отложенной записи или из кэша. Буфер проверяется первым:
+     * кэш может содержать прочитанное из БД состояние без ещё не записанных изменений.
+     */
+    private ProductSnapshot cached(long id) {
+        if (writeBehind != null) {
+            ProductSnapshot pending = writeBehind.get(id);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        return productCache.getIfPresent(id);
+    }
+
+    /**
+     * Выполняет чтение из БД. Если выключатель разомкнут, вызывается {@code whenUnavailable};
+     * если операция не допущена из-за перегрузки — выбрасывается {@link OverloadedException}.
+     */
+    private <T> T read(String operation, Supplier<T> query, Supplier<T> whenUnavailable) {
+        return circuitBreaker.execute(operation,
+                () -> admission.execute(operation, query, () -> {
+                    throw overloaded();
+                }),
+                whenUnavailable);
+    }
+
+    /**
+     * Выполняет изменение в БД. Пока БД недоступна, изменения сразу отклоняются.
+     */
+    private <T> T write(String operation, Supplier<T> command) {
+        return read(operation, command, () -> {
+            throw new ServiceUnavailableException("База данных недоступна, изменения временно не принимаются");
+        });
+    }
+
+    /**
+     * Выполняет чтение списка товаров. Если БД недоступна или перегружена, список
+     * отбирается из последнего снимка каталога и помечается как устаревший.
+     */
+    private ReadResult<List<ProductSummary>> readList(String operation, Supplier<List<ProductSummary>> query,
+                                                      Predicate<ProductSummary> filter) {
+        return circuitBreaker.execute(operation,
+                () -> admission.execute(operation, () -> ReadResult.fresh(query.get()),
+                        () -> catalogSnapshot.find(filter).orElseThrow(ProductServiceImpl::overloaded)),
+                () -> catalogSnapshot.find(filter).orElseThrow(ProductServiceImpl::unavailable));
+    }
+
+    /**
+     * Выполняет фильтр товаров с учётом кэша результатов. Свежий результат сохраняется
+     * в кэш результатов, а его первые товары подгружаются в кэш товаров.
+     */
+    private ReadResult<List<ProductSummary>> readFiltered(FilterCriteria criteria,
+                                                          Supplier<List<ProductSummary>> query) {
+        List<ProductSummary> cached = filterResults.get(criteria);
+        if (cached != null) {
+            return ReadResult.fresh(cached);
+        }
+
+        long generation = filterResults.generation();
+        ReadResult<List<ProductSummary>> result = readList("product.filter", query,
+                product -> criteria.matches(product.getCategory(), product.getBrand(), product.getPrice()));
+        if (!result.isStale()) {
+            filterResults.put(criteria, result.getValue(), generation);
+            prefetch(result.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Загружает в кэш товаров первые товары списка, чтобы открытие товара из списка
+     * не требовало обращения к БД. Список содержит только краткие представления,
+     * поэтому товары загружаются одним пакетным запросом в фоне. Загружаются только
+     * товары, допущенные политикой кэша ({@link ProductCache#admits(long)}); при разомкнутом
+     * выключателе или исчерпанном лимите допуска подгрузка пропускается.
+     */
+    private void prefetch(List<ProductSummary> products) {
+        if (prefetchLimit <= 0 || circuitBreaker.isOpen()) {
+            return;
+        }
+        List<Long> ids = products.stream()
+                .limit(prefetchLimit)
+                .map(ProductSummary::getId)
+                .filter(productCache::admits)
+                .toList();
+        if (ids.isEmpty() || !admission.tryAcquire()) {
+            return;
+        }
+
+        asyncProductRepository.findByIds(ids).whenComplete((loaded, error) -> {
+            admission.release(error != null && AdmissionController.isOverload(error));
+            if (error != null) {
+                log.debug("Failed to prefetch {} products: {}", ids.size(), error.getMessage());
+                return;
+            }
+            loaded.forEach(productCache::put);
+            log.debug("Prefetched {} products into cache", loaded.size());
+        });
+    }
+
+    /**
+     * Раскладывает ID на описания, найденные в кэшах, и ID, которые нужно загрузить из БД.
+     */
+    private void collectCachedDescriptions(Collection<Long> ids, Map<Long, String> found, List<Long> missing) {
+        for (Long id : ids) {
+            ProductSnapshot cachedProduct = cached(id);
+            String description = cachedProduct != null ? cachedProduct.getDescription() : descriptionCache.get(id);
+            if (cachedProduct == null && description == null) {
+                missing.add(id);
+            } else if (description != null && description != DescriptionCache.NO_DESCRIPTION) {
+                found.put(id, description);
+            }
+        }
+    }
+
+    /**
+     * Кэширует загруженные из БД описания, в том числе отсутствие описания у запрошенных товаров.
+     */
+    private void cacheDescriptions(List<Long> requested, Map<Long, String> loaded) {
+        for (Long id : requested) {
+            descriptionCache.put(id, loaded.get(id));
+        }
+    }
+
+    private static OverloadedException overloaded() {
+        return new OverloadedException("Сервис перегружен, попробуйте позже");
+    }
+
+    private static ServiceUnavailableException unavailable() {
+        return new ServiceUnavailableException("База данных недоступна, а в памяти приложения нет нужных данных");
     }
 }
@@ -0,0 +1,69 @@
+package ru.kopanev.transaction;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики выдачи соединений для одной операции сервиса.
+ * Позволяет убедиться, что операция берёт из пула одно соединение,
+ * сколько бы репозиториев она ни вызывала.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class OperationStats {
+
+    @Getter
+    private final String operation;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder connectionRequests = new LongAdder();
+
+    OperationStats(String operation) {
+        this.operation = operation;
+    }
+
+    void record(int checkouts, int connectionRequests) {
+        this.invocations.increment();
+        this.checkouts.add(checkouts);
+        this.connectionRequests.add(connectionRequests);
+    }
+
+    /**
+     * @return количество выполненных операций
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    /**
+     * @return количество соединений, взятых из пула
+     */
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    /**
+     * @return количество обращений репозиториев за соединением
+     */
+    public long getConnectionRequests() {
+        return connectionRequests.sum();
+    }
+
+    /**
+     * @return среднее количество соединений из пула на одну операцию
+     */
+    public double getCheckoutsPerOperation() {
+        long count = getInvocations();
+        return count == 0 ? 0 : (double) getCheckouts() / count;
+    }
+
+    @Override
+    public String toString() {
+        return operation + ": operations=" + getInvocations()
+                + ", checkouts=" + getCheckouts()
+                + ", requests=" + getConnectionRequests()
+                + String.format(", checkouts/op=%.2f", getCheckoutsPerOperation());
+    }
+}
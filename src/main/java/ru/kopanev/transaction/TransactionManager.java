@@ -0,0 +1,232 @@
+package ru.kopanev.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.enums.PoolType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Единица работы (unit of work), привязанная к текущему потоку.
+ * На время операции сервиса все репозитории получают одно и то же соединение
+ * из пула, а все их запросы выполняются в одной транзакции.
+ *
+ * <p>Репозитории участвуют в единице работы прозрачно: они по-прежнему вызывают
+ * {@code dataSource.getConnection()} и закрывают соединение в try-with-resources,
+ * но получают его из {@link #getDataSource(PoolType)}, который внутри операции возвращает
+ * привязанное соединение, а вне операции — обычное соединение из пула своего класса нагрузки.</p>
+ *
+ * <p>Соединение единицы работы берётся из пула, указанного при её открытии; все
+ * репозитории внутри операции используют его независимо от своего пула, иначе
+ * операция не была бы атомарной.</p>
+ *
+ * <p>Соединение берётся из пула лениво, при первом обращении к БД, поэтому
+ * операции, обслуженные из кэша, не занимают соединение. Вложенные вызовы
+ * {@link #inTransaction(PoolType, String, Supplier)} присоединяются к внешней операции.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class TransactionManager {
+
+    private static final String UNTRACKED_OPERATION = "untracked";
+
+    private final Map<PoolType, DataSource> pools;
+    private final Map<PoolType, DataSource> dataSources = new EnumMap<>(PoolType.class);
+    private final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Создаёт менеджер транзакций поверх пулов соединений.
+     *
+     * @param pools пулы соединений по классам нагрузки (должны быть заданы для всех классов)
+     */
+    public TransactionManager(Map<PoolType, DataSource> pools) {
+        this.pools = new EnumMap<>(pools);
+        for (PoolType type : PoolType.values()) {
+            DataSource pool = this.pools.get(type);
+            if (pool == null) {
+                throw new IllegalArgumentException("No connection pool for " + type);
+            }
+            dataSources.put(type, new TransactionalDataSource(type, pool, this));
+        }
+    }
+
+    /**
+     * Возвращает DataSource класса нагрузки, учитывающий текущую единицу работы.
+     * Именно его следует передавать репозиториям.
+     *
+     * @param poolType класс нагрузки репозитория
+     * @return DataSource для репозиториев
+     */
+    public DataSource getDataSource(PoolType poolType) {
+        return dataSources.get(poolType);
+    }
+
+    /**
+     * Выполняет операцию в единице работы.
+     * При успешном завершении транзакция фиксируется, при исключении — откатывается.
+     *
+     * @param poolType пул, из которого берётся соединение операции
+     * @param operation название операции для метрик
+     * @param work выполняемая операция
+     * @param <T> тип результата
+     * @return результат операции
+     */
+    public <T> T inTransaction(PoolType poolType, String operation, Supplier<T> work) {
+        UnitOfWork outer = current.get();
+        if (outer != null) {
+            return work.get();
+        }
+
+        UnitOfWork unitOfWork = new UnitOfWork(operation, pools.get(poolType));
+        current.set(unitOfWork);
+        try {
+            T result = work.get();
+            unitOfWork.commit();
+            return result;
+        } catch (RuntimeException | Error e) {
+            unitOfWork.rollback();
+            throw e;
+        } finally {
+            current.remove();
+            unitOfWork.release();
+            statsFor(operation).record(unitOfWork.checkouts, unitOfWork.requests);
+            log.debug("Operation '{}' finished: checkouts={}, connection requests={}",
+                    operation, unitOfWork.checkouts, unitOfWork.requests);
+        }
+    }
+
+    /**
+     * Выполняет операцию без результата в единице работы.
+     *
+     * @param poolType пул, из которого берётся соединение операции
+     * @param operation название операции для метрик
+     * @param work выполняемая операция
+     */
+    public void inTransaction(PoolType poolType, String operation, Runnable work) {
+        inTransaction(poolType, operation, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Проверяет, открыта ли единица работы в текущем потоке.
+     *
+     * @return true, если текущий поток выполняет операцию в единице работы
+     */
+    public boolean isInTransaction() {
+        return current.get() != null;
+    }
+
+    /**
+     * Возвращает метрики выдачи соединений по операциям.
+     * Запросы к БД вне единицы работы учитываются под операцией {@code untracked.<пул>}.
+     *
+     * @return неизменяемое представление метрик по названию операции
+     */
+    public Map<String, OperationStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Выдаёт соединение для репозитория.
+     * Внутри единицы работы возвращается привязанное соединение, закрытие которого
+     * не возвращает его в пул; вне её — новое соединение из пула.
+     */
+    Connection getConnection(PoolType poolType) throws SQLException {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            statsFor(UNTRACKED_OPERATION + "." + poolType.getKey()).record(1, 1);
+            return pools.get(poolType).getConnection();
+        }
+        return unitOfWork.connection();
+    }
+
+    private OperationStats statsFor(String operation) {
+        return stats.computeIfAbsent(operation, OperationStats::new);
+    }
+
+    /**
+     * Состояние одной единицы работы. Используется только потоком, который её открыл.
+     */
+    private final class UnitOfWork {
+        private final String operation;
+        private final DataSource target;
+        private Connection connection;
+        private Connection handle;
+        private int checkouts;
+        private int requests;
+
+        private UnitOfWork(String operation, DataSource target) {
+            this.operation = operation;
+            this.target = target;
+        }
+
+        private Connection connection() throws SQLException {
+            requests++;
+            if (connection == null) {
+                Connection physical = target.getConnection();
+                checkouts++;
+                try {
+                    physical.setAutoCommit(false);
+                } catch (SQLException e) {
+                    physical.close();
+                    throw e;
+                }
+                connection = physical;
+                handle = TransactionalDataSource.unclosable(physical);
+            }
+            return handle;
+        }
+
+        private void commit() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                log.error("Failed to commit operation '{}'", operation, e);
+                throw new RuntimeException("Failed to commit transaction", e);
+            }
+        }
+
+        private void rollback() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                log.error("Failed to rollback operation '{}'", operation, e);
+            }
+        }
+
+        private void release() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.warn("Failed to restore auto-commit after operation '{}'", operation, e);
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to return connection after operation '{}'", operation, e);
+            }
+            connection = null;
+            handle = null;
+        }
+    }
+}
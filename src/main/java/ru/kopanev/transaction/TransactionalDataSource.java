@@ -0,0 +1,111 @@
+package ru.kopanev.transaction;
+
+import ru.kopanev.enums.PoolType;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * DataSource, выдающий соединение текущей единицы работы {@link TransactionManager}.
+ * Вне единицы работы делегирует своему пулу соединений.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class TransactionalDataSource implements DataSource {
+
+    private final PoolType poolType;
+    private final DataSource target;
+    private final TransactionManager transactionManager;
+
+    TransactionalDataSource(PoolType poolType, DataSource target, TransactionManager transactionManager) {
+        this.poolType = poolType;
+        this.target = target;
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Оборачивает соединение так, что {@code close()} не возвращает его в пул.
+     * Соединение закрывает сам {@link TransactionManager} по завершении операции.
+     *
+     * @param connection соединение единицы работы
+     * @return обёртка над соединением
+     */
+    static Connection unclosable(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "isClosed":
+                            return false;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return transactionManager.getConnection(poolType);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections are configured by the pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
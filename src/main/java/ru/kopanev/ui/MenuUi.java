@@ -6,6 +6,9 @@ import ru.kopanev.command.guestCommands.ExitCommand;
 import ru.kopanev.command.guestCommands.LoginCommand;
 import ru.kopanev.command.guestCommands.RegisterCommand;
 import ru.kopanev.command.userCommands.*;
+import ru.kopanev.exception.DeadlineExceededException;
+import ru.kopanev.exception.OverloadedException;
+import ru.kopanev.exception.ServiceUnavailableException;
 import ru.kopanev.service.*;
 import ru.kopanev.utils.UserSession;
 
@@ -68,6 +71,8 @@ public class MenuUi {
         userCommands.put("8", new GetProductCommand(productUi));
         userCommands.put("9", new ViewAllEventsCommand(auditUi));
         userCommands.put("10", new ViewUserEventsCommand(auditUi, session.getCurrentUser()));
+        userCommands.put("11", new ShowDescriptionsCommand(productUi));
+        userCommands.put("12", new ShowCacheStatsCommand(productUi));
         userCommands.put("0", new LogoutCommand(userUi));
     }
 
@@ -127,6 +132,8 @@ public class MenuUi {
         8. Получить товар по ID
         9. Просмотреть весь аудит
         10. Просмотреть аудит пользователя
+        11. Показать описания товаров
+        12. Статистика кэша товаров
         0. Выйти
         Выберите действие:\s""");
 
@@ -137,13 +144,24 @@ public class MenuUi {
 
     /**
      * Выполняет выбранную команду.
-     * Если команда не найдена, выводит сообщение об ошибке.
+     * Если команда не найдена или не уложилась в отведённое время, выводит сообщение об ошибке.
      *
      * @param command команда для выполнения (может быть null)
      */
     private void executeCommand(Command command) {
         if (command != null) {
-            command.execute();
+            try {
+                command.execute();
+            } catch (DeadlineExceededException e) {
+                log.warn("Command timed out: {}", e.getMessage());
+                System.out.println("Сервис не ответил вовремя, попробуйте еще раз.");
+            } catch (OverloadedException e) {
+                log.warn("Command shed: {}", e.getMessage());
+                System.out.println(e.getMessage());
+            } catch (ServiceUnavailableException e) {
+                log.warn("Command rejected: {}", e.getMessage());
+                System.out.println(e.getMessage());
+            }
         } else {
             System.out.println("Неверный ввод, попробуйте еще раз.");
         }
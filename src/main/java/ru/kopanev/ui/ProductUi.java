@@ -2,12 +2,23 @@ package ru.kopanev.ui;
 
 import lombok.RequiredArgsConstructor;
 import ru.kopanev.exception.EntityNotFoundException;
+import ru.kopanev.model.HotProduct;
 import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductPage;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.ReadResult;
+import ru.kopanev.model.UpdateResult;
 import ru.kopanev.service.ProductService;
+import ru.kopanev.utils.Prices;
 import ru.kopanev.utils.UserSession;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -23,6 +34,9 @@ import java.util.Scanner;
  */
 @RequiredArgsConstructor
 public class ProductUi {
+    private static final DateTimeFormatter STALE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+    private static final int HOT_PRODUCTS_LIMIT = 10;
+
     private final Scanner scanner;
     private final UserSession session;
     private final ProductService productService;
@@ -43,7 +57,7 @@ public class ProductUi {
         System.out.println("Введите описание: ");
         String description = scanner.nextLine().trim();
 
-        Product product = new Product(name, category, brand, BigDecimal.valueOf(price), description);
+        Product product = new Product(name, category, brand, Prices.toMinorUnits(BigDecimal.valueOf(price)), description);
         productService.addProduct(session.getCurrentUser(), product);
         System.out.println("Товар добавлен с ID: " + product.getId());
     }
@@ -51,17 +65,15 @@ public class ProductUi {
     /**
      * Обновляет существующий товар в каталоге.
      * Запрашивает ID товара и новые данные для обновления.
+     * Если товар успел изменить другой пользователь, изменения не применяются.
      */
     public void updateProduct() {
         System.out.print("Введите ID товара для изменения: ");
         long id = Long.parseLong(scanner.nextLine().trim());
 
-        if (!getProductsIds().contains(id)) {
-            System.out.println("Товара с ID " + id + " нет в каталоге");
-            return;
-        }
-
         try {
+            ProductSnapshot current = productService.getProduct(id);
+
             System.out.print("Введите новое название: ");
             String name = scanner.nextLine().trim();
             System.out.print("Введите новую категорию: ");
@@ -73,9 +85,16 @@ public class ProductUi {
             System.out.print("Введите новое описание: ");
             String description = scanner.nextLine().trim();
 
-            Product updatedProduct = new Product(name, category, brand, BigDecimal.valueOf(price), description);
-            productService.updateProduct(session.getCurrentUser(), updatedProduct);
-            System.out.println("Товар обновлен");
+            Product updatedProduct = new Product(name, category, brand, Prices.toMinorUnits(BigDecimal.valueOf(price)), description);
+            updatedProduct.setId(id);
+            updatedProduct.setVersion(current.getVersion());
+
+            UpdateResult result = productService.updateProduct(session.getCurrentUser(), updatedProduct);
+            if (result.isUpdated()) {
+                System.out.println("Товар обновлен");
+            } else {
+                System.out.println("Товар был изменён другим пользователем, повторите попытку");
+            }
         } catch (EntityNotFoundException e) {
             System.out.println(e.getMessage());
         }
@@ -88,11 +107,6 @@ public class ProductUi {
         System.out.print("Введите ID товара для удаления: ");
         long id = Long.parseLong(scanner.nextLine().trim());
 
-        if (!getProductsIds().contains(id)) {
-            System.out.println("Товара с ID " + id + " нет в каталоге");
-            return;
-        }
-
         try {
             productService.deleteProduct(session.getCurrentUser(), id);
             System.out.println("Товар удален");
@@ -105,15 +119,16 @@ public class ProductUi {
      * Выводит список всех товаров в каталоге.
      */
     public void listProducts() {
-        List<Product> products = productService.getAllProducts();
+        ReadResult<List<ProductSummary>> products = productService.getAllProducts();
+        printStaleWarning(products);
 
-        if (products.isEmpty()) {
+        if (products.getValue().isEmpty()) {
             System.out.println("Каталог пуст");
             return;
         }
 
         System.out.println("\n=== КАТАЛОГ ТОВАРОВ ===");
-        for (Product product : products) {
+        for (ProductSummary product : products.getValue()) {
             System.out.println(product);
         }
     }
@@ -130,9 +145,10 @@ public class ProductUi {
             return;
         }
 
-        List<Product> filteredProducts = productService.findByCategory(session.getCurrentUser(), category);
+        ReadResult<List<ProductSummary>> filteredProducts = productService.findByCategory(session.getCurrentUser(), category);
+        printStaleWarning(filteredProducts);
         System.out.println("\n=== ТОВАРЫ ПО КАТЕГОРИИ " + category + " ===");
-        for (Product product : filteredProducts) {
+        for (ProductSummary product : filteredProducts.getValue()) {
             System.out.println(product);
         }
     }
@@ -149,9 +165,10 @@ public class ProductUi {
             return;
         }
 
-        List<Product> filteredProducts = productService.findByBrand(session.getCurrentUser(), brand);
+        ReadResult<List<ProductSummary>> filteredProducts = productService.findByBrand(session.getCurrentUser(), brand);
+        printStaleWarning(filteredProducts);
         System.out.println("\n=== ТОВАРЫ ПО БРЕНДУ " + brand + " ===");
-        for (Product product : filteredProducts) {
+        for (ProductSummary product : filteredProducts.getValue()) {
             System.out.println(product);
         }
     }
@@ -165,37 +182,69 @@ public class ProductUi {
         System.out.println("Введите максимальную цену товаров: ");
         BigDecimal maxPrice = BigDecimal.valueOf(Double.parseDouble(scanner.nextLine().trim()));
 
-        List<Product> filteredProducts = productService.findByPriceRange(session.getCurrentUser(), minPrice, maxPrice);
+        ReadResult<List<ProductSummary>> filteredProducts = productService.findByPriceRange(session.getCurrentUser(), minPrice, maxPrice);
+        printStaleWarning(filteredProducts);
         System.out.println("\n=== ТОВАРЫ ОТ " + minPrice + " ДО " + maxPrice + " ===");
-        for (Product product : filteredProducts) {
+        for (ProductSummary product : filteredProducts.getValue()) {
             System.out.println(product);
         }
     }
 
     /**
-     * Находит и выводит товар по ID.
+     * Находит и выводит товар по ID вместе с последними действиями пользователя.
      */
     public void getProductById() {
         System.out.print("Введите ID товара: ");
         long id = Long.parseLong(scanner.nextLine().trim());
 
         try {
-            Product product = productService.getProduct(id);
+            ProductPage page = productService.getProductPage(session.getCurrentUser(), id);
+            if (page.isStale()) {
+                System.out.println("\nБаза данных недоступна: показан товар из кэша, данные могут быть устаревшими");
+            }
             System.out.println("\n=== ТОВАР ===");
-            System.out.println(product);
+            System.out.println(page.getProduct());
+
+            if (!page.getRecentEvents().isEmpty()) {
+                System.out.println("\n--- Ваши последние действия ---");
+                page.getRecentEvents().forEach(System.out::println);
+            }
         } catch (EntityNotFoundException e) {
             System.out.println(e.getMessage());
         }
     }
 
     /**
-     * Возвращает список всех ID товаров в каталоге.
-     * @return список идентификаторов товаров
+     * Выводит описания товаров по списку ID, введённых через запятую.
+     * Описания загружаются одним запросом для всех товаров, которых нет в кэше.
      */
-    private List<Long> getProductsIds() {
-        return productService.getAllProducts().stream()
-                .map(Product::getId)
+    public void showDescriptions() {
+        System.out.print("Введите ID товаров через запятую: ");
+        List<Long> ids = Arrays.stream(scanner.nextLine().split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(Long::parseLong)
                 .toList();
+
+        Map<Long, String> descriptions = productService.getDescriptions(ids);
+        System.out.println("\n=== ОПИСАНИЯ ТОВАРОВ ===");
+        for (Long id : ids) {
+            System.out.println("#" + id + ": " + descriptions.getOrDefault(id, "нет описания"));
+        }
+    }
+
+    /**
+     * Выводит показатели кэша товаров и самые запрашиваемые товары.
+     */
+    public void showCacheStats() {
+        System.out.println("\n=== СТАТИСТИКА КЭША ТОВАРОВ ===");
+        productService.getCacheMetrics().forEach((name, value) -> System.out.println(name + " = " + value));
+
+        List<HotProduct> hot = productService.getHotProducts(HOT_PRODUCTS_LIMIT);
+        if (!hot.isEmpty()) {
+            System.out.println("\n--- Самые запрашиваемые товары ---");
+            hot.forEach(System.out::println);
+        }
     }
 
     /**
@@ -203,8 +252,8 @@ public class ProductUi {
      * @return список категорий
      */
     private List<String> getProductsCategories() {
-        return productService.getAllProducts().stream()
-                .map(Product::getCategory)
+        return productService.getAllProducts().getValue().stream()
+                .map(ProductSummary::getCategory)
                 .toList();
     }
 
@@ -213,8 +262,20 @@ public class ProductUi {
      * @return список брендов
      */
     private List<String> getProductsBrands() {
-        return productService.getAllProducts().stream()
-                .map(Product::getBrand)
+        return productService.getAllProducts().getValue().stream()
+                .map(ProductSummary::getBrand)
                 .toList();
     }
-}
\ No newline at end of file
+
+    /**
+     * Предупреждает, что список получен из памяти приложения, пока БД недоступна.
+     * @param result результат чтения
+     */
+    private void printStaleWarning(ReadResult<?> result) {
+        if (result.isStale()) {
+            LocalDateTime asOf = result.getAsOf();
+            System.out.println("\nБаза данных недоступна: данные по состоянию на " + asOf.format(STALE_TIME_FORMAT)
+                    + " и могут быть устаревшими");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.kopanev.utils;
+
+import ru.kopanev.enums.EvictionCause;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики работы кэша: попадания, промахи, загрузки из БД и вытеснения по причинам.
+ * Счётчики построены на {@link LongAdder}, поэтому учёт на горячем пути
+ * не создаёт конкуренции между потоками и не выделяет память.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class CacheStats {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final Map<EvictionCause, LongAdder> evictions = new EnumMap<>(EvictionCause.class);
+
+    /**
+     * Создаёт обнулённые счётчики.
+     */
+    public CacheStats() {
+        for (EvictionCause cause : EvictionCause.values()) {
+            evictions.put(cause, new LongAdder());
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction(EvictionCause cause) {
+        evictions.get(cause).increment();
+    }
+
+    /**
+     * Учитывает успешную загрузку товара из БД после промаха или при перечитывании.
+     *
+     * @param nanos длительность загрузки
+     */
+    public void recordLoadSuccess(long nanos) {
+        loads.increment();
+        totalLoadNanos.add(nanos);
+    }
+
+    /**
+     * Учитывает неудачную загрузку товара из БД, в том числе отсутствие товара.
+     *
+     * @param nanos длительность загрузки
+     */
+    public void recordLoadFailure(long nanos) {
+        loadFailures.increment();
+        totalLoadNanos.add(nanos);
+    }
+
+    /**
+     * @return количество попаданий
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return количество промахов
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return доля попаданий среди обращений (1, если обращений не было)
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long requests = hitCount + getMissCount();
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return количество успешных загрузок
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return количество неудачных загрузок
+     */
+    public long getLoadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * @return среднее время загрузки в миллисекундах
+     */
+    public double getAverageLoadMillis() {
+        long count = getLoadCount() + getLoadFailureCount();
+        return count == 0 ? 0 : (double) totalLoadNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param cause причина вытеснения
+     * @return количество вытеснений по причине
+     */
+    public long getEvictionCount(EvictionCause cause) {
+        return evictions.get(cause).sum();
+    }
+
+    /**
+     * Возвращает счётчики в виде метрик с именами вида {@code <prefix>.hits},
+     * пригодном для выгрузки в систему мониторинга.
+     *
+     * @param prefix префикс имён метрик
+     * @return метрики в постоянном порядке
+     */
+    public Map<String, Number> toMetrics(String prefix) {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put(prefix + ".hits", getHitCount());
+        metrics.put(prefix + ".misses", getMissCount());
+        metrics.put(prefix + ".hit-rate", getHitRate());
+        metrics.put(prefix + ".loads", getLoadCount());
+        metrics.put(prefix + ".load-failures", getLoadFailureCount());
+        metrics.put(prefix + ".load-average-ms", getAverageLoadMillis());
+        for (EvictionCause cause : EvictionCause.values()) {
+            metrics.put(prefix + ".evictions." + cause.name().toLowerCase(), getEvictionCount(cause));
+        }
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, hitRate=%.3f, loads=%d, loadFailures=%d, avgLoad=%.2f ms, "
+                        + "evictions(size=%d, expired=%d, explicit=%d)",
+                getHitCount(), getMissCount(), getHitRate(), getLoadCount(), getLoadFailureCount(),
+                getAverageLoadMillis(), getEvictionCount(EvictionCause.SIZE),
+                getEvictionCount(EvictionCause.EXPIRED), getEvictionCount(EvictionCause.EXPLICIT));
+    }
+}
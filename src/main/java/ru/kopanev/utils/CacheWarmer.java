@@ -0,0 +1,95 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.repository.async.AsyncProductRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Прогрев кэша товаров при старте приложения.
+ *
+ * <p>Горячие товары определяются по счётчикам обращений кэша, восстановленным
+ * из снимка ({@link CatalogSnapshotStore}). Товары, которых ещё нет в кэше,
+ * загружаются пакетами по несколько идентификаторов в запросе; пакеты выполняются
+ * параллельно на исполнителе пула чтения каталога.</p>
+ *
+ * <p>Прогрев ограничен по времени: по истечении бюджета незавершённые пакеты
+ * отменяются, а приложение стартует с тем, что успело загрузиться.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class CacheWarmer {
+
+    private final ProductCache cache;
+    private final AsyncProductRepository repository;
+    private final int batchSize;
+
+    /**
+     * Создаёт компонент прогрева.
+     *
+     * @param cache кэш товаров
+     * @param repository асинхронный репозиторий товаров
+     * @param batchSize количество товаров, загружаемых одним запросом
+     */
+    public CacheWarmer(ProductCache cache, AsyncProductRepository repository, int batchSize) {
+        this.cache = cache;
+        this.repository = repository;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Загружает в кэш самые востребованные товары.
+     *
+     * @param maxProducts максимальное количество горячих товаров
+     * @param budget время, отведённое на прогрев
+     * @return количество горячих товаров, оказавшихся в кэше после прогрева
+     */
+    public int warmUp(int maxProducts, Duration budget) {
+        long start = System.nanoTime();
+        List<Long> hot = cache.mostAccessed(maxProducts);
+        if (hot.isEmpty()) {
+            log.info("Cache warm-up skipped: no access history");
+            return 0;
+        }
+
+        List<Long> missing = hot.stream().filter(id -> !cache.contains(id)).toList();
+        List<CompletableFuture<List<ProductSnapshot>>> batches = new ArrayList<>();
+        List<CompletableFuture<Void>> cached = new ArrayList<>();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            CompletableFuture<List<ProductSnapshot>> batch =
+                    repository.findByIds(missing.subList(from, Math.min(from + batchSize, missing.size())));
+            batches.add(batch);
+            cached.add(batch.thenAccept(products -> products.forEach(cache::put)));
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(cached.toArray(CompletableFuture[]::new));
+        try {
+            all.get(budget.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Cache warm-up exceeded its budget of {} ms, continuing with a partially warm cache",
+                    budget.toMillis());
+        } catch (ExecutionException | CancellationException e) {
+            log.warn("Cache warm-up batch failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batches.forEach(batch -> batch.cancel(true));
+        }
+
+        int warm = (int) hot.stream().filter(cache::contains).count();
+        log.info("Cache warm-up finished in {} ms: {}/{} hot products cached ({}%), {} loaded in {} batches",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), warm, hot.size(),
+                warm * 100 / hot.size(), missing.size() - (hot.size() - warm), batches.size());
+        return warm;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.ReadResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Последний загруженный из БД список товаров.
+ * Обновляется при каждом успешном чтении всего каталога и используется
+ * для ответов на списки и фильтры, пока БД недоступна.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class CatalogSnapshot {
+
+    private volatile Snapshot current;
+
+    /**
+     * Заменяет снимок каталога.
+     *
+     * @param products все товары каталога
+     */
+    public void update(List<ProductSummary> products) {
+        update(products, LocalDateTime.now());
+    }
+
+    /**
+     * Заменяет снимок каталога, загруженный в указанное время.
+     *
+     * @param products все товары каталога
+     * @param loadedAt время загрузки товаров из БД
+     */
+    public void update(List<ProductSummary> products, LocalDateTime loadedAt) {
+        current = new Snapshot(List.copyOf(products), loadedAt);
+        log.debug("Catalog snapshot updated: {} products loaded at {}", products.size(), loadedAt);
+    }
+
+    /**
+     * Выбирает товары снимка, подходящие под условие.
+     *
+     * @param filter условие отбора
+     * @return товары снимка, помеченные как устаревшие, если снимок был загружен
+     */
+    public Optional<ReadResult<List<ProductSummary>>> find(Predicate<ProductSummary> filter) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        log.debug("Serving products from catalog snapshot loaded at {}", snapshot.loadedAt());
+        return Optional.of(ReadResult.stale(snapshot.products().stream().filter(filter).toList(), snapshot.loadedAt()));
+    }
+
+    private record Snapshot(List<ProductSummary> products, LocalDateTime loadedAt) {
+    }
+}
@@ -0,0 +1,374 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.ReadResult;
+import ru.kopanev.repository.ProductRepository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Файл со снимком каталога и горячих товаров кэша для быстрого старта.
+ *
+ * <p>Снимок периодически записывается на локальный диск в компактном двоичном виде
+ * вместе со счётчиками обращений кэша, по которым при старте выбираются товары для прогрева.
+ * Вместе с данными записывается номер последнего изменения в журнале {@code product_changes},
+ * прочитанный до их сбора. При старте файл отображается в память и читается целиком,
+ * после чего по журналу читаются только изменения, сделанные после этого номера:
+ * изменённые и удалённые с тех пор товары не попадают ни в кэш, ни в каталог.
+ * Снимок без номера (старого формата или записанный, пока БД была недоступна) восстанавливает
+ * только счётчики обращений. Повреждённый файл не мешает старту: кэш просто остаётся пустым.</p>
+ *
+ * <p>Формат файла (big-endian):</p>
+ * <pre>
+ * int     MAGIC
+ * int     FORMAT_VERSION
+ * long    номер последнего изменения журнала на момент записи (-1 — неизвестен)
+ * long    время загрузки каталога из БД (epoch millis, -1 — каталога нет)
+ * int     количество товаров каталога, далее товары: id, name, category, brand, price, version
+ * int     количество товаров кэша, далее товары: id, name, category, brand, price, description, version
+ * int     количество счётчиков обращений, далее пары: id, count
+ * </pre>
+ * Файлы версии 1 не содержат счётчиков обращений и номера изменения, версии 2 — номера изменения.
+ * Строки записываются как длина в байтах UTF-8 (-1 для null) и сами байты.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class CatalogSnapshotStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x50435331;
+    private static final int FORMAT_VERSION = 3;
+    private static final long NO_WATERMARK = -1;
+    private static final int CHANGES_BATCH_SIZE = 500;
+    private static final long CLOSE_TIMEOUT_MS = 5_000;
+
+    // Минимальный размер записей в байтах: строки занимают хотя бы поле длины.
+    private static final int MIN_CATALOG_RECORD_BYTES = 8 + 3 * 4 + 8 + 8;
+    private static final int MIN_HOT_RECORD_BYTES = 8 + 3 * 4 + 8 + 4 + 8;
+    private static final int COUNTER_RECORD_BYTES = 8 + 8;
+
+    private final Path file;
+    private final CatalogSnapshot catalog;
+    private final ProductCache cache;
+    private final ProductRepository repository;
+    private final StringDictionary categories;
+    private final StringDictionary brands;
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Создаёт хранилище снимка.
+     *
+     * @param file путь к файлу снимка
+     * @param catalog снимок каталога в памяти
+     * @param cache кэш товаров
+     * @param repository репозиторий товаров, читающий журнал изменений с основной БД
+     * @param categories словарь категорий
+     * @param brands словарь брендов
+     */
+    public CatalogSnapshotStore(Path file, CatalogSnapshot catalog, ProductCache cache, ProductRepository repository,
+                                StringDictionary categories, StringDictionary brands) {
+        this.file = file;
+        this.catalog = catalog;
+        this.cache = cache;
+        this.repository = repository;
+        this.categories = categories;
+        this.brands = brands;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Загружает снимок с диска и сверяет его с БД.
+     * Отсутствующий или повреждённый файл не считается ошибкой: приложение стартует с пустым кэшем.
+     */
+    public void restore() {
+        if (!Files.exists(file)) {
+            log.info("Catalog snapshot not found: {}", file);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Contents contents;
+        try {
+            contents = read();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read catalog snapshot {}, starting cold: {}", file, e.getMessage());
+            return;
+        }
+        long readNanos = System.nanoTime() - start;
+        cache.restoreAccessCounts(contents.accessCounts());
+        if (contents.watermark() == NO_WATERMARK) {
+            log.info("Catalog snapshot has no change log position, restored access counts only");
+            return;
+        }
+
+        Set<Long> changed;
+        try {
+            changed = changedSince(contents.watermark());
+        } catch (RuntimeException e) {
+            log.warn("Failed to reconcile catalog snapshot with database, starting cold: {}", e.getMessage());
+            return;
+        }
+
+        int restored = 0;
+        for (ProductSnapshot product : contents.hot()) {
+            if (!changed.contains(product.getId())) {
+                cache.put(product);
+                restored++;
+            }
+        }
+
+        if (contents.catalogLoadedAt() != null) {
+            List<ProductSummary> current = contents.catalog().stream()
+                    .filter(product -> !changed.contains(product.getId()))
+                    .toList();
+            catalog.update(current, contents.catalogLoadedAt());
+        }
+
+        log.info("Catalog snapshot restored: read {} us, reconcile {} ms ({} products changed), "
+                        + "cached {}/{} products, catalog {} products",
+                TimeUnit.NANOSECONDS.toMicros(readNanos),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start - readNanos), changed.size(),
+                restored, contents.hot().size(), contents.catalog().size());
+    }
+
+    /**
+     * Читает по журналу идентификаторы товаров, изменённых или удалённых после указанного номера.
+     */
+    private Set<Long> changedSince(long watermark) {
+        Set<Long> changed = new HashSet<>();
+        long seq = watermark;
+        List<ProductChange> changes;
+        do {
+            changes = repository.findChangesSince(seq, CHANGES_BATCH_SIZE);
+            for (ProductChange change : changes) {
+                changed.add(change.getProductId());
+                seq = change.getSeq();
+            }
+        } while (changes.size() == CHANGES_BATCH_SIZE);
+        return changed;
+    }
+
+    /**
+     * Запускает периодическую запись снимка.
+     *
+     * @param intervalMs интервал записи в миллисекундах
+     */
+    public void start(long intervalMs) {
+        writer.scheduleWithFixedDelay(this::saveQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает снимок на диск. Файл заменяется атомарно, так что при сбое
+     * во время записи остаётся предыдущий снимок.
+     *
+     * @throws IOException если запись не удалась
+     */
+    public void save() throws IOException {
+        // Номер читается до сбора данных: изменения после него будут перепроверены при восстановлении.
+        long watermark = latestChangeSeq();
+        ReadResult<List<ProductSummary>> products = catalog.find(product -> true).orElse(null);
+        List<ProductSnapshot> hot = cache.values();
+        Map<Long, Long> accessCounts = cache.getAccessCounts();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(watermark);
+            if (products == null) {
+                out.writeLong(-1);
+                out.writeInt(0);
+            } else {
+                out.writeLong(products.getAsOf().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                out.writeInt(products.getValue().size());
+                for (ProductSummary product : products.getValue()) {
+                    out.writeLong(product.getId());
+                    writeString(out, product.getName());
+                    writeString(out, product.getCategory());
+                    writeString(out, product.getBrand());
+                    out.writeLong(product.getPrice());
+                    out.writeLong(product.getVersion());
+                }
+            }
+            out.writeInt(hot.size());
+            for (ProductSnapshot product : hot) {
+                out.writeLong(product.getId());
+                writeString(out, product.getName());
+                writeString(out, product.getCategory());
+                writeString(out, product.getBrand());
+                out.writeLong(product.getPrice());
+                writeString(out, product.getDescription());
+                out.writeLong(product.getVersion());
+            }
+            out.writeInt(accessCounts.size());
+            for (Map.Entry<Long, Long> entry : accessCounts.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Catalog snapshot saved: catalog={}, cached={}, watermark={}",
+                products == null ? 0 : products.getValue().size(), hot.size(), watermark);
+    }
+
+    /**
+     * Останавливает периодическую запись и, дождавшись её завершения, записывает итоговый снимок.
+     * Если фоновая запись не завершилась вовремя, итоговый снимок не записывается,
+     * чтобы две записи не использовали один временный файл.
+     */
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Catalog snapshot writer did not stop in {} ms, final snapshot skipped", CLOSE_TIMEOUT_MS);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while stopping catalog snapshot writer, final snapshot skipped");
+            return;
+        }
+        saveQuietly();
+    }
+
+    private long latestChangeSeq() {
+        try {
+            return repository.findLatestChangeSeq();
+        } catch (RuntimeException e) {
+            log.debug("Change log position unavailable, snapshot saved without it: {}", e.getMessage());
+            return NO_WATERMARK;
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            log.warn("Failed to save catalog snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Contents read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("not a catalog snapshot");
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+                throw new IllegalStateException("unsupported snapshot format " + formatVersion);
+            }
+            long watermark = formatVersion >= 3 ? buffer.getLong() : NO_WATERMARK;
+
+            long loadedAtMillis = buffer.getLong();
+            LocalDateTime catalogLoadedAt = loadedAtMillis < 0 ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(loadedAtMillis), ZoneId.systemDefault());
+
+            int catalogSize = readSize(buffer, MIN_CATALOG_RECORD_BYTES);
+            List<ProductSummary> products = new ArrayList<>(catalogSize);
+            for (int i = 0; i < catalogSize; i++) {
+                products.add(new ProductSummary(
+                        buffer.getLong(),
+                        readString(buffer),
+                        categories.intern(readString(buffer)),
+                        brands.intern(readString(buffer)),
+                        buffer.getLong(),
+                        buffer.getLong()));
+            }
+
+            int hotSize = readSize(buffer, MIN_HOT_RECORD_BYTES);
+            List<ProductSnapshot> hot = new ArrayList<>(hotSize);
+            for (int i = 0; i < hotSize; i++) {
+                hot.add(new ProductSnapshot(
+                        buffer.getLong(),
+                        readString(buffer),
+                        categories.intern(readString(buffer)),
+                        brands.intern(readString(buffer)),
+                        buffer.getLong(),
+                        readString(buffer),
+                        buffer.getLong()));
+            }
+
+            Map<Long, Long> accessCounts = new HashMap<>();
+            if (formatVersion >= 2) {
+                int countersSize = readSize(buffer, COUNTER_RECORD_BYTES);
+                for (int i = 0; i < countersSize; i++) {
+                    accessCounts.put(buffer.getLong(), buffer.getLong());
+                }
+            }
+            return new Contents(watermark, catalogLoadedAt, products, hot, accessCounts);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Читает количество записей и проверяет, что столько записей помещается в остаток файла.
+     */
+    private static int readSize(MappedByteBuffer buffer, int minRecordBytes) {
+        int size = buffer.getInt();
+        if (size < 0 || size > buffer.remaining() / minRecordBytes) {
+            throw new IllegalStateException("corrupted record count " + size);
+        }
+        return size;
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("corrupted string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record Contents(long watermark, LocalDateTime catalogLoadedAt, List<ProductSummary> catalog, List<ProductSnapshot> hot,
+                            Map<Long, Long> accessCounts) {
+    }
+}
@@ -0,0 +1,397 @@
+package ru.kopanev.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Потокобезопасная хэш-таблица с примитивными ключами {@code long}.
+ *
+ * <p>В отличие от {@code ConcurrentHashMap<Long, V>}, поиск не упаковывает ключ
+ * и не создаёт объектов: таблица разбита на сегменты с открытой адресацией
+ * (линейное пробирование по массивам {@code long[]} и {@code Object[]}),
+ * а чтение выполняется оптимистично по {@link StampedLock} без захвата блокировки.
+ * Изменения сегмента выполняются под его блокировкой записи.</p>
+ *
+ * <p>Значение {@link #NO_KEY} не может быть ключом: им помечаются пустые ячейки.
+ * Значения null не хранятся.</p>
+ *
+ * @param <V> тип значений
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class ConcurrentLongMap<V> {
+
+    /**
+     * Ключ, которым помечаются пустые ячейки; возвращается {@link #anyKey(long)} для пустой таблицы.
+     */
+    public static final long NO_KEY = Long.MIN_VALUE;
+
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    /**
+     * Функция пересчёта значения по примитивному ключу.
+     *
+     * @param <V> тип значений
+     */
+    @FunctionalInterface
+    public interface Remapping<V> {
+
+        /**
+         * @param key ключ
+         * @param current текущее значение или null
+         * @return новое значение или null, чтобы удалить ключ
+         */
+        V apply(long key, V current);
+    }
+
+    private final Segment<V>[] segments;
+
+    /**
+     * Создаёт пустую таблицу.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentLongMap() {
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Возвращает значение по ключу без блокировок и выделения памяти.
+     *
+     * @param key ключ
+     * @return значение или null
+     */
+    public V get(long key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Атомарно пересчитывает значение ключа.
+     *
+     * @param key ключ
+     * @param remapping функция от текущего значения (null, если его нет) к новому (null — удалить)
+     * @return новое значение или null
+     */
+    public V compute(long key, Remapping<V> remapping) {
+        checkKey(key);
+        return segmentFor(key).compute(key, remapping);
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @param key ключ
+     * @return удалённое значение или null
+     */
+    public V remove(long key) {
+        return segmentFor(key).remove(key, null);
+    }
+
+    /**
+     * Удаляет ключ, только если он связан с указанным значением (сравнение по ссылке).
+     *
+     * @param key ключ
+     * @param value ожидаемое значение
+     * @return true, если ключ удалён
+     */
+    public boolean remove(long key, V value) {
+        return value != null && segmentFor(key).remove(key, value) != null;
+    }
+
+    /**
+     * @return количество ключей
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return true, если таблица пуста
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Возвращает какой-либо ключ таблицы, начиная поиск с позиции, определяемой подсказкой.
+     * Перебор подсказок по порядку обходит таблицу по кругу.
+     *
+     * @param hint произвольное число, например счётчик вызовов
+     * @return ключ или {@link #NO_KEY}, если таблица пуста
+     */
+    public long anyKey(long hint) {
+        int start = (int) (hint & (SEGMENTS - 1));
+        for (int i = 0; i < SEGMENTS; i++) {
+            long key = segments[(start + i) & (SEGMENTS - 1)].anyKey(hint >>> 4);
+            if (key != NO_KEY) {
+                return key;
+            }
+        }
+        return NO_KEY;
+    }
+
+    /**
+     * Передаёт все ключи получателю. Ключи, изменённые во время обхода, могут быть пропущены.
+     *
+     * @param action получатель ключей
+     */
+    public void forEachKey(LongConsumer action) {
+        for (Segment<V> segment : segments) {
+            for (long key : segment.keys()) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * @return копия значений таблицы
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size());
+        for (Segment<V> segment : segments) {
+            segment.collectValues(result);
+        }
+        return result;
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[(int) (mix(key) >>> 60)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static void checkKey(long key) {
+        if (key == NO_KEY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+    }
+
+    /**
+     * Массивы сегмента, заменяемые целиком при расширении.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            Arrays.fill(keys, NO_KEY);
+        }
+    }
+
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+        private volatile int size;
+
+        V get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V value = find(table, key);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        V compute(long key, Remapping<V> remapping) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                int slot = slotOf(current, key);
+                V previous = slot < 0 ? null : value(current, slot);
+                V next = remapping.apply(key, previous);
+                if (next == null) {
+                    if (slot >= 0) {
+                        delete(current, slot);
+                    }
+                } else if (slot >= 0) {
+                    current.values[slot] = next;
+                } else {
+                    insert(key, next);
+                }
+                return next;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V remove(long key, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                int slot = slotOf(current, key);
+                if (slot < 0) {
+                    return null;
+                }
+                V previous = value(current, slot);
+                if (expected != null && previous != expected) {
+                    return null;
+                }
+                delete(current, slot);
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long anyKey(long hint) {
+            long stamp = lock.readLock();
+            try {
+                long[] keys = table.keys;
+                int start = (int) (hint & (keys.length - 1));
+                for (int i = 0; i < keys.length; i++) {
+                    long key = keys[(start + i) & (keys.length - 1)];
+                    if (key != NO_KEY) {
+                        return key;
+                    }
+                }
+                return NO_KEY;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long[] keys() {
+            long stamp = lock.readLock();
+            try {
+                long[] result = new long[size];
+                int count = 0;
+                for (long key : table.keys) {
+                    if (key != NO_KEY) {
+                        result[count++] = key;
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void collectValues(List<V> target) {
+            long stamp = lock.readLock();
+            try {
+                Table current = table;
+                for (int i = 0; i < current.keys.length; i++) {
+                    if (current.keys[i] != NO_KEY) {
+                        target.add(value(current, i));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Поиск, допускающий гонку с записью: результат проверяется вызывающим
+         * через {@link StampedLock#validate(long)}. Цикл ограничен длиной таблицы,
+         * поэтому несогласованное состояние не приводит к зацикливанию.
+         */
+        private V find(Table current, long key) {
+            long[] keys = current.keys;
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            for (int i = 0; i < keys.length; i++) {
+                long candidate = keys[slot];
+                if (candidate == key) {
+                    return value(current, slot);
+                }
+                if (candidate == NO_KEY) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slotOf(Table current, long key) {
+            long[] keys = current.keys;
+            int mask = keys.length - 1;
+            for (int slot = (int) mix(key) & mask; keys[slot] != NO_KEY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, V value) {
+            if ((size + 1) * 2 > table.keys.length) {
+                resize();
+            }
+            long[] keys = table.keys;
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (keys[slot] != NO_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            table.values[slot] = value;
+            keys[slot] = key;
+            size++;
+        }
+
+        /**
+         * Удаляет ячейку со сдвигом следующих элементов цепочки назад, без надгробий.
+         */
+        private void delete(Table current, int slot) {
+            long[] keys = current.keys;
+            Object[] values = current.values;
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; keys[next] != NO_KEY; next = (next + 1) & mask) {
+                int home = (int) mix(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = NO_KEY;
+            values[hole] = null;
+            size--;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table resized = new Table(old.keys.length * 2);
+            int mask = resized.keys.length - 1;
+            for (int i = 0; i < old.keys.length; i++) {
+                long key = old.keys[i];
+                if (key != NO_KEY) {
+                    int slot = (int) mix(key) & mask;
+                    while (resized.keys[slot] != NO_KEY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    resized.keys[slot] = key;
+                    resized.values[slot] = old.values[i];
+                }
+            }
+            table = resized;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V value(Table current, int slot) {
+            return (V) current.values[slot];
+        }
+    }
+}
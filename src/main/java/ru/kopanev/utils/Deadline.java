@@ -0,0 +1,135 @@
+package ru.kopanev.utils;
+
+import ru.kopanev.exception.DeadlineExceededException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Крайний срок выполнения запроса пользователя.
+ * Устанавливается при входе в сервисный слой и привязывается к текущему потоку,
+ * поэтому доступен сервисам и репозиториям без передачи через параметры.
+ * Оставшееся время используется как таймаут получения соединения из пула
+ * и как таймаут выполнения SQL-запроса.
+ *
+ * <p>Вложенный вызов {@link #within(Duration, Supplier)} не продлевает внешний срок:
+ * действует более ранний из двух.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * Создаёт срок, истекающий через указанное время.
+     *
+     * @param timeout время до истечения срока
+     * @return крайний срок
+     */
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Возвращает срок, привязанный к текущему потоку.
+     *
+     * @return крайний срок или {@code null}, если он не установлен
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполняет операцию со сроком, истекающим через указанное время.
+     *
+     * @param timeout время на выполнение операции
+     * @param work операция
+     * @return результат операции
+     * @throws DeadlineExceededException если внешний срок уже истёк
+     */
+    public static <T> T within(Duration timeout, Supplier<T> work) {
+        return after(timeout).run(work);
+    }
+
+    /**
+     * Выполняет операцию с этим сроком, привязав его к текущему потоку.
+     * Если в потоке уже установлен более ранний срок, используется он.
+     * Ошибка операции, завершившейся после истечения срока, пробрасывается как
+     * {@link DeadlineExceededException}: репозитории оборачивают таймауты JDBC
+     * в собственные исключения.
+     *
+     * @param work операция
+     * @return результат операции
+     * @throws DeadlineExceededException если срок истёк до или во время выполнения
+     */
+    public <T> T run(Supplier<T> work) {
+        Deadline outer = CURRENT.get();
+        Deadline effective = outer != null && outer.expiresAtNanos - expiresAtNanos < 0 ? outer : this;
+        effective.check();
+
+        CURRENT.set(effective);
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            if (effective.isExpired() && !(e instanceof DeadlineExceededException)) {
+                throw new DeadlineExceededException("Request deadline exceeded", e);
+            }
+            throw e;
+        } finally {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Возвращает оставшееся до срока время.
+     *
+     * @return миллисекунды до срока (0, если срок истёк)
+     */
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    /**
+     * Возвращает оставшееся время в целых секундах для {@link java.sql.Statement#setQueryTimeout(int)}.
+     * Округляется вверх, чтобы не получить 0 — в JDBC это означает отсутствие таймаута.
+     *
+     * @return секунды до срока, не меньше 1
+     */
+    public int remainingSecondsCeil() {
+        long millis = remainingMillis();
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (millis + 999) / 1000));
+    }
+
+    /**
+     * Проверяет, истёк ли срок.
+     *
+     * @return true, если срок истёк
+     */
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Прерывает операцию, если срок истёк.
+     *
+     * @throws DeadlineExceededException если срок истёк
+     */
+    public void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+    }
+}
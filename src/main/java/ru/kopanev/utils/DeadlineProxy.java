@@ -0,0 +1,56 @@
+package ru.kopanev.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+
+/**
+ * Обёртка над сервисом, выполняющая каждый вызов его методов с крайним сроком.
+ * Так срок устанавливается на входе в сервисный слой, а не в UI, где время
+ * ожидания ввода пользователя не должно учитываться.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public final class DeadlineProxy {
+
+    private DeadlineProxy() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Оборачивает сервис.
+     *
+     * @param serviceInterface интерфейс сервиса
+     * @param service реализация сервиса
+     * @param timeout время на выполнение одного вызова
+     * @return сервис, вызовы которого ограничены сроком
+     */
+    public static <T> T wrap(Class<T> serviceInterface, T service, Duration timeout) {
+        Object proxy = Proxy.newProxyInstance(
+                serviceInterface.getClassLoader(),
+                new Class<?>[]{serviceInterface},
+                (self, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(service, args);
+                    }
+                    return Deadline.within(timeout, () -> {
+                        try {
+                            return method.invoke(service, args);
+                        } catch (InvocationTargetException e) {
+                            Throwable cause = e.getCause();
+                            if (cause instanceof RuntimeException runtime) {
+                                throw runtime;
+                            }
+                            if (cause instanceof Error error) {
+                                throw error;
+                            }
+                            throw new RuntimeException(cause);
+                        } catch (IllegalAccessException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                });
+        return serviceInterface.cast(proxy);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш описаний товаров.
+ * Описания хранятся отдельно от {@link ProductCache}, так как они не нужны
+ * спискам и фильтрам и могут быть значительно больше остальных полей товара.
+ *
+ * <p>Размер кэша ограничен не количеством элементов, а суммарным весом
+ * описаний в байтах. При превышении бюджета вытесняются элементы в порядке обхода
+ * {@link ConcurrentHashMap}, то есть в порядке хэшей ключей, а не времени добавления:
+ * порядок вытеснения не важен, а отдельная очередь добавлений стоила бы памяти и конкуренции.</p>
+ *
+ * <p>Отсутствие описания тоже кэшируется — общим маркером {@link #NO_DESCRIPTION} нулевого веса,
+ * иначе товары без описания читались бы из БД при каждом обращении.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class DescriptionCache {
+
+    /**
+     * Оценка накладных расходов на объект String и его массив байт.
+     */
+    private static final long STRING_OVERHEAD_BYTES = 56;
+
+    /**
+     * Маркер товара без описания. Сравнивается по ссылке.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    public static final String NO_DESCRIPTION = new String();
+
+    private final Map<Long, String> cache;
+    private final AtomicLong weight;
+    private final long maxWeightBytes;
+
+    /**
+     * Создаёт кэш с указанным бюджетом памяти.
+     *
+     * @param maxWeightBytes максимальный суммарный вес описаний в байтах
+     */
+    public DescriptionCache(long maxWeightBytes) {
+        this.cache = new ConcurrentHashMap<>();
+        this.weight = new AtomicLong();
+        this.maxWeightBytes = maxWeightBytes;
+        log.info("DescriptionCache initialized with max weight: {} bytes", maxWeightBytes);
+    }
+
+    /**
+     * Получает описание товара из кэша.
+     *
+     * @param id идентификатор товара
+     * @return описание, {@link #NO_DESCRIPTION}, если у товара нет описания,
+     *         или {@code null}, если товара нет в кэше
+     */
+    public String get(Long id) {
+        return cache.get(id);
+    }
+
+    /**
+     * Добавляет описание товара в кэш.
+     * Отсутствие описания кэшируется как {@link #NO_DESCRIPTION}; описания,
+     * превышающие весь бюджет кэша, не кэшируются.
+     *
+     * @param id идентификатор товара
+     * @param description описание товара или null, если его нет
+     */
+    public void put(Long id, String description) {
+        if (description == null) {
+            description = NO_DESCRIPTION;
+        }
+
+        long entryWeight = weigh(description);
+        if (entryWeight > maxWeightBytes) {
+            log.debug("Description of product id={} is too large to cache: {} bytes", id, entryWeight);
+            return;
+        }
+
+        String previous = cache.put(id, description);
+        weight.addAndGet(entryWeight - (previous != null ? weigh(previous) : 0));
+
+        while (weight.get() > maxWeightBytes && !cache.isEmpty()) {
+            evictNext();
+        }
+    }
+
+    /**
+     * Удаляет описание товара из кэша (инвалидация).
+     *
+     * @param id идентификатор товара
+     */
+    public void invalidate(Long id) {
+        String removed = cache.remove(id);
+        if (removed != null) {
+            weight.addAndGet(-weigh(removed));
+        }
+    }
+
+    /**
+     * Очищает весь кэш.
+     */
+    public void clear() {
+        cache.keySet().forEach(this::invalidate);
+        log.info("Description cache cleared");
+    }
+
+    /**
+     * Возвращает текущий суммарный вес описаний в кэше.
+     *
+     * @return вес в байтах
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Оценивает занимаемый описанием объём памяти.
+     * Для строк с кириллицей используется два байта на символ; маркер отсутствия описания весит 0.
+     *
+     * @param description описание товара
+     * @return оценка размера в байтах
+     */
+    static long weigh(String description) {
+        if (description == NO_DESCRIPTION) {
+            return 0;
+        }
+        return STRING_OVERHEAD_BYTES + 2L * description.length();
+    }
+
+    /**
+     * Вытесняет первый элемент в порядке обхода таблицы.
+     */
+    private void evictNext() {
+        Iterator<Long> keys = cache.keySet().iterator();
+        if (keys.hasNext()) {
+            Long firstKey = keys.next();
+            invalidate(firstKey);
+            log.debug("Evicted description from cache: id={}", firstKey);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.FilterCriteria;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов фильтров товаров по нормализованным условиям ({@link FilterCriteria}).
+ *
+ * <p>При изменении товара удаляются только затронутые результаты: те, в которые
+ * товар входил, и те, под условия которых попадает его новое состояние.
+ * Так изменение цены одного товара не сбрасывает результаты по другим категориям и брендам.</p>
+ *
+ * <p>Результат запроса, выполнявшегося одновременно с изменением товара, мог
+ * не увидеть это изменение. Поэтому запись принимается только если с момента
+ * начала запроса ({@link #generation()}) изменений не было.</p>
+ *
+ * <p>Результаты также устаревают через {@code expireAfterWrite} — на случай,
+ * если уведомления об изменениях в других экземплярах отключены.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class FilterResultCache {
+
+    private final Map<FilterCriteria, Entry> results = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final int maxEntries;
+    private final long expireAfterWriteNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Создаёт кэш результатов.
+     *
+     * @param maxEntries максимальное количество хранимых результатов
+     * @param expireAfterWrite время жизни результата (0 — без ограничения)
+     */
+    public FilterResultCache(int maxEntries, Duration expireAfterWrite) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        log.info("FilterResultCache initialized: maxEntries={}, expireAfterWrite={}", maxEntries, expireAfterWrite);
+    }
+
+    /**
+     * Возвращает номер поколения, который нужно запомнить до выполнения запроса
+     * и передать в {@link #put(FilterCriteria, List, long)}.
+     *
+     * @return текущий номер поколения
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Возвращает сохранённый результат фильтра.
+     *
+     * @param criteria условия фильтра
+     * @return товары или null, если результата нет или он устарел
+     */
+    public List<ProductSummary> get(FilterCriteria criteria) {
+        Entry entry = results.get(criteria);
+        if (entry != null && expireAfterWriteNanos > 0
+                && System.nanoTime() - entry.writtenAt >= expireAfterWriteNanos) {
+            results.remove(criteria, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.products;
+    }
+
+    /**
+     * Сохраняет результат фильтра, если с начала запроса товары не менялись.
+     *
+     * @param criteria условия фильтра
+     * @param products результат запроса
+     * @param startGeneration номер поколения, полученный до выполнения запроса
+     */
+    public void put(FilterCriteria criteria, List<ProductSummary> products, long startGeneration) {
+        long[] ids = products.stream().mapToLong(ProductSummary::getId).sorted().toArray();
+        Entry entry = new Entry(List.copyOf(products), ids, System.nanoTime());
+        if (results.size() >= maxEntries && !results.containsKey(criteria)) {
+            Iterator<FilterCriteria> keys = results.keySet().iterator();
+            if (keys.hasNext()) {
+                results.remove(keys.next());
+            }
+        }
+        results.put(criteria, entry);
+        // Изменение, пришедшее во время записи, могло не увидеть новый результат.
+        if (generation.get() != startGeneration) {
+            results.remove(criteria, entry);
+            log.debug("Discarded filter result {}: products changed during query", criteria);
+        }
+    }
+
+    /**
+     * Удаляет результаты, затронутые изменением товара.
+     *
+     * @param id идентификатор товара
+     * @param current новое состояние товара или null, если товар удалён
+     */
+    public void onProductChanged(long id, ProductSnapshot current) {
+        generation.incrementAndGet();
+        results.entrySet().removeIf(result -> {
+            boolean affected = Arrays.binarySearch(result.getValue().ids, id) >= 0
+                    || (current != null && result.getKey()
+                    .matches(current.getCategory(), current.getBrand(), current.getPrice()));
+            if (affected) {
+                invalidations.increment();
+            }
+            return affected;
+        });
+    }
+
+    /**
+     * Удаляет все результаты, например когда состояние изменённых товаров неизвестно.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        results.clear();
+        log.debug("Filter result cache cleared");
+    }
+
+    /**
+     * @return true, если сохранённых результатов нет
+     */
+    public boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    /**
+     * Возвращает показатели кэша в виде метрик с префиксом {@code cache.filter}.
+     *
+     * @return метрики в постоянном порядке
+     */
+    public Map<String, Number> toMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("cache.filter.size", results.size());
+        metrics.put("cache.filter.hits", hits.sum());
+        metrics.put("cache.filter.misses", misses.sum());
+        metrics.put("cache.filter.invalidations", invalidations.sum());
+        return metrics;
+    }
+
+    private record Entry(List<ProductSummary> products, long[] ids, long writtenAt) {
+    }
+}
@@ -0,0 +1,101 @@
+package ru.kopanev.utils;
+
+import ru.kopanev.exception.DeadlineExceededException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * Вспомогательные методы композиции асинхронных запросов сервисного слоя.
+ * Независимые запросы запускаются параллельно; если один из них завершается
+ * ошибкой или по таймауту, остальные отменяются, чтобы не занимать соединения.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public final class Futures {
+
+    private Futures() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Объединяет результаты двух независимых запросов.
+     *
+     * @param first первый запрос
+     * @param second второй запрос
+     * @param combiner функция объединения результатов
+     * @return future с объединённым результатом
+     */
+    public static <A, B, R> CompletableFuture<R> both(CompletableFuture<A> first, CompletableFuture<B> second,
+                                                      BiFunction<A, B, R> combiner) {
+        cancelOnFailure(first, List.of(second));
+        cancelOnFailure(second, List.of(first));
+        return first.thenCombine(second, combiner);
+    }
+
+    /**
+     * Собирает результаты нескольких независимых запросов в порядке их следования.
+     *
+     * @param futures запросы
+     * @return future со списком результатов
+     */
+    public static <T> CompletableFuture<List<T>> all(List<CompletableFuture<T>> futures) {
+        for (CompletableFuture<T> future : futures) {
+            cancelOnFailure(future, futures);
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Ожидает результат не дольше указанного времени и не дольше крайнего срока
+     * текущего запроса ({@link Deadline}).
+     * По истечении времени future отменяется, что отменяет и связанный запрос.
+     * Исключение запроса пробрасывается без обёртки {@link CompletionException}.
+     *
+     * @param future запрос
+     * @param timeout максимальное время ожидания
+     * @return результат запроса
+     * @throws DeadlineExceededException при истечении времени ожидания
+     * @throws RuntimeException при ошибке запроса
+     */
+    public static <T> T await(CompletableFuture<T> future, Duration timeout) {
+        long timeoutMs = timeout.toMillis();
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            timeoutMs = Math.min(timeoutMs, deadline.remainingMillis());
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException("Query timed out after " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for query");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void cancelOnFailure(CompletableFuture<?> source, List<? extends CompletableFuture<?>> others) {
+        source.whenComplete((value, error) -> {
+            if (error != null) {
+                others.forEach(other -> other.cancel(true));
+            }
+        });
+    }
+}
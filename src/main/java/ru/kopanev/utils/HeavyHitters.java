@@ -0,0 +1,214 @@
+package ru.kopanev.utils;
+
+import ru.kopanev.model.HotProduct;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потоковый поиск самых запрашиваемых товаров в ограниченной памяти.
+ *
+ * <p>Частоты оцениваются скетчем count-min: {@value #DEPTH} строки счётчиков,
+ * у каждой своя хэш-функция; оценка — минимум по строкам. Коллизии её только завышают,
+ * а выборка обращений (см. ниже) добавляет случайную погрешность в обе стороны.
+ * Рядом хранится top-K — небольшой набор идентификаторов с наибольшими оценками.
+ * Идентификатор попадает в него, когда его оценка превышает минимальную оценку набора.</p>
+ *
+ * <p>Учёт обращения не выделяет память и не ждёт других потоков. В скетч попадает
+ * лишь случайная выборка обращений — в среднем одно из {@value #SAMPLE_RATE}, а оценки
+ * умножаются на этот коэффициент, — поэтому горячий товар не превращает общие счётчики
+ * в точку конкуренции. Набор top-K обновляется под блокировкой, которая на горячем пути
+ * только пробуется: при конкуренции обновление пропускается, что допустимо
+ * для приближённой статистики.</p>
+ *
+ * <p>Чтобы набор отражал текущую нагрузку, а не всю историю, после
+ * {@code 10 × width} учтённых обращений все счётчики уменьшаются вдвое. Уменьшение
+ * проходит по всему скетчу, поэтому выполняется в фоновом потоке, а не в потоке чтения.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    private static final int SAMPLE_RATE = 8;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final AtomicLongArray counters;
+    private final int width;
+    private final long agingPeriod;
+    private final AtomicLong additions = new AtomicLong();
+    private final AtomicBoolean agingScheduled = new AtomicBoolean();
+    private final Executor agingExecutor;
+    private final Runnable agingTask = this::age;
+    private final ReentrantLock topLock = new ReentrantLock();
+    private final long[] topIds;
+    private final long[] topCounts;
+    private int topSize;
+    private volatile long threshold;
+
+    /**
+     * Создаёт пустой трекер.
+     *
+     * @param k размер набора самых запрашиваемых идентификаторов
+     * @param width ширина строки скетча; чем больше, тем меньше завышение оценок
+     */
+    public HeavyHitters(int k, int width) {
+        this(k, width, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Создаёт пустой трекер, уменьшающий счётчики в указанном исполнителе.
+     *
+     * @param k размер набора самых запрашиваемых идентификаторов
+     * @param width ширина строки скетча; чем больше, тем меньше завышение оценок
+     * @param agingExecutor исполнитель уменьшения счётчиков
+     */
+    HeavyHitters(int k, int width, Executor agingExecutor) {
+        this.agingExecutor = agingExecutor;
+        this.width = Math.max(16, width);
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+        this.agingPeriod = 10L * this.width;
+        this.topIds = new long[Math.max(1, k)];
+        this.topCounts = new long[Math.max(1, k)];
+    }
+
+    /**
+     * Учитывает обращение к товару.
+     *
+     * @param id идентификатор товара
+     */
+    public void record(long id) {
+        if ((ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) != 0) {
+            return;
+        }
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(row * width + index(id, row)));
+        }
+        if (additions.incrementAndGet() >= agingPeriod && agingScheduled.compareAndSet(false, true)) {
+            agingExecutor.execute(agingTask);
+        }
+        if (estimate > threshold && topLock.tryLock()) {
+            try {
+                offer(id, estimate);
+            } finally {
+                topLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Возвращает оценку количества обращений к товару.
+     *
+     * @param id идентификатор товара
+     * @return оценка количества обращений с момента последнего уменьшения счётчиков
+     */
+    public long estimate(long id) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + index(id, row)));
+        }
+        return estimate * SAMPLE_RATE;
+    }
+
+    /**
+     * Возвращает самые запрашиваемые товары.
+     *
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию оценки обращений
+     */
+    public List<HotProduct> top(int limit) {
+        List<HotProduct> result = new ArrayList<>();
+        topLock.lock();
+        try {
+            for (int i = 0; i < topSize; i++) {
+                result.add(new HotProduct(topIds[i], topCounts[i] * SAMPLE_RATE));
+            }
+        } finally {
+            topLock.unlock();
+        }
+        result.sort(Comparator.comparingLong(HotProduct::getEstimatedAccesses).reversed());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /**
+     * Обновляет оценку идентификатора в наборе или вытесняет из набора минимальный.
+     * Вызывается под {@link #topLock}.
+     */
+    private void offer(long id, long estimate) {
+        int min = -1;
+        for (int i = 0; i < topSize; i++) {
+            if (topIds[i] == id) {
+                topCounts[i] = estimate;
+                updateThreshold();
+                return;
+            }
+            if (min < 0 || topCounts[i] < topCounts[min]) {
+                min = i;
+            }
+        }
+        if (topSize < topIds.length) {
+            topIds[topSize] = id;
+            topCounts[topSize] = estimate;
+            topSize++;
+        } else if (estimate > topCounts[min]) {
+            topIds[min] = id;
+            topCounts[min] = estimate;
+        }
+        updateThreshold();
+    }
+
+    /**
+     * Порог входа в набор — минимальная оценка в нём, пока набор заполнен.
+     * Элементы набора тоже проходят порог, поэтому их оценки остаются актуальными.
+     */
+    private void updateThreshold() {
+        if (topSize < topIds.length) {
+            threshold = 0;
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < topSize; i++) {
+            min = Math.min(min, topCounts[i]);
+        }
+        threshold = min - 1;
+    }
+
+    /**
+     * Уменьшает вдвое все счётчики и оценки набора. Выполняется в {@link #agingExecutor}.
+     * Параллельные увеличения при этом могут частично потеряться, что не влияет на порядок горячих товаров.
+     */
+    private void age() {
+        topLock.lock();
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >> 1);
+            }
+            for (int i = 0; i < topSize; i++) {
+                topCounts[i] >>= 1;
+            }
+            updateThreshold();
+            additions.set(0);
+        } finally {
+            topLock.unlock();
+            agingScheduled.set(false);
+        }
+    }
+
+    private int index(long id, int row) {
+        long h = (id + 1) * SEEDS[row];
+        h ^= h >>> 31;
+        return (int) ((h & Long.MAX_VALUE) % width);
+    }
+}
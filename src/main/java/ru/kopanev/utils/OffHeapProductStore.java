@@ -0,0 +1,440 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.ProductSnapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Второй уровень кэша товаров вне кучи Java.
+ *
+ * <p>Снимки товаров сериализуются в прямые буферы ({@link ByteBuffer#allocateDirect(int)}),
+ * поэтому даже весь каталог не увеличивает кучу и не влияет на паузы сборщика мусора.
+ * Память выделяется слэбами фиксированного размера; записи добавляются в текущий слэб
+ * последовательно. Когда слэбы заканчиваются, самый старый слэб освобождается целиком:
+ * все записи в нём удаляются из индекса и он используется заново (FIFO по слэбам).
+ * Перезаписанные и удалённые записи остаются в слэбе до его освобождения.</p>
+ *
+ * <p>Индекс — открытая адресация с линейным пробированием по массивам {@code long}:
+ * идентификатор товара и адрес записи (номер слэба и смещение). На элемент
+ * индекса приходится 16 байт кучи без отдельных объектов.</p>
+ *
+ * <p>Категория и бренд хранятся кодами {@link StringDictionary}, поэтому
+ * прочитанные снимки используют общие экземпляры этих строк.</p>
+ *
+ * <p>Формат записи:</p>
+ * <pre>
+ * int     длина записи
+ * long    id
+ * long    version
+ * long    момент записи в кэш по System.nanoTime()
+ * long    price
+ * int     код категории (-1 — null)
+ * int     код бренда (-1 — null)
+ * строка  name
+ * строка  description
+ * </pre>
+ * Строки записываются как длина в байтах UTF-8 (-1 для null) и сами байты.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class OffHeapProductStore implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 8 + 4 + 4;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private final ByteBuffer[] slabs;
+    private final int slabSize;
+    private final StringDictionary categories;
+    private final StringDictionary brands;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private long[] keys;
+    private long[] addresses;
+    private int size;
+    private int currentSlab;
+    private int writeOffset;
+    private int slabsInUse;
+
+    /**
+     * Запись товара, прочитанная из памяти вне кучи.
+     *
+     * @param product снимок товара
+     * @param writtenAt момент записи в кэш по {@link System#nanoTime()}
+     */
+    public record StoredProduct(ProductSnapshot product, long writtenAt) {
+    }
+
+    /**
+     * Создаёт хранилище. Слэбы выделяются по мере заполнения.
+     *
+     * @param capacityBytes общий объём памяти вне кучи
+     * @param slabSize размер одного слэба в байтах, ограничивает размер записи
+     * @param categories словарь категорий
+     * @param brands словарь брендов
+     */
+    public OffHeapProductStore(long capacityBytes, int slabSize, StringDictionary categories,
+                               StringDictionary brands) {
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) Math.max(2, capacityBytes / slabSize)];
+        this.categories = categories;
+        this.brands = brands;
+        this.keys = new long[INITIAL_INDEX_CAPACITY];
+        this.addresses = new long[INITIAL_INDEX_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        log.info("OffHeapProductStore initialized: {} slabs of {} bytes", slabs.length, slabSize);
+    }
+
+    /**
+     * Возвращает запись товара.
+     *
+     * @param id идентификатор товара
+     * @return запись или пустой Optional, если товара нет во втором уровне
+     */
+    public Optional<StoredProduct> get(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = find(id);
+            if (slot < 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(read(addresses[slot]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает снимок товара, если во втором уровне нет более новой версии.
+     * Для той же версии обновляется только момент записи.
+     * Снимок, не помещающийся в один слэб, не сохраняется.
+     *
+     * @param product снимок товара
+     * @param writtenAt момент записи в кэш по {@link System#nanoTime()}
+     */
+    public void put(ProductSnapshot product, long writtenAt) {
+        byte[] name = encode(product.getName());
+        byte[] description = encode(product.getDescription());
+        int length = HEADER_BYTES + stringBytes(name) + stringBytes(description);
+        if (length > slabSize) {
+            log.debug("Product id={} is too large for off-heap store: {} bytes", product.getId(), length);
+            return;
+        }
+        int categoryCode = product.getCategory() == null ? -1 : categories.codeOf(product.getCategory());
+        int brandCode = product.getBrand() == null ? -1 : brands.codeOf(product.getBrand());
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(product.getId());
+            if (slot >= 0 && versionAt(addresses[slot]) >= product.getVersion()) {
+                // Та же версия только продлевает срок записи, без новой копии в слэбе.
+                if (versionAt(addresses[slot]) == product.getVersion()) {
+                    touch(addresses[slot], writtenAt);
+                }
+                return;
+            }
+
+            long address = allocate(length);
+            ByteBuffer slab = slabs[slabOf(address)];
+            int position = offsetOf(address);
+            slab.putInt(position, length);
+            slab.putLong(position + 4, product.getId());
+            slab.putLong(position + 12, product.getVersion());
+            slab.putLong(position + 20, writtenAt);
+            slab.putLong(position + 28, product.getPrice());
+            slab.putInt(position + 36, categoryCode);
+            slab.putInt(position + 40, brandCode);
+            position = writeString(slab, position + HEADER_BYTES, name);
+            position = writeString(slab, position, description);
+            // Нулевая длина отмечает конец записей: за ней могут лежать записи прошлого оборота.
+            if (position + 4 <= slabSize) {
+                slab.putInt(position, 0);
+            }
+
+            // Слот мог сдвинуться при освобождении слэба внутри allocate.
+            index(product.getId(), address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет товар из второго уровня. Место записи освобождается вместе со слэбом.
+     *
+     * @param id идентификатор товара
+     */
+    public void invalidate(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(id);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет все записи. Выделенные слэбы сохраняются для повторного использования,
+     * их устаревшие записи освобождаются при следующем обороте.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            currentSlab = 0;
+            writeOffset = 0;
+            if (slabs[0] != null) {
+                slabs[0].putInt(0, 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество товаров во втором уровне
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return объём выделенной памяти вне кучи в байтах
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) slabsInUse * slabSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество попаданий во второй уровень
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return количество промахов второго уровня
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Освобождает ссылки на слэбы; память вне кучи возвращается при сборке буферов.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(slabs, null);
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            slabsInUse = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выделяет место под запись в текущем слэбе или переходит к следующему,
+     * освобождая его, если он уже занят.
+     */
+    private long allocate(int length) {
+        if (slabs[currentSlab] == null) {
+            slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            slabsInUse++;
+        }
+        if (writeOffset + length > slabSize) {
+            currentSlab = (currentSlab + 1) % slabs.length;
+            writeOffset = 0;
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+                slabsInUse++;
+            } else {
+                evictSlab(currentSlab);
+            }
+        }
+        long address = ((long) currentSlab << 32) | writeOffset;
+        writeOffset += length;
+        return address;
+    }
+
+    /**
+     * Удаляет из индекса все записи слэба, на которые он ещё ссылается.
+     */
+    private void evictSlab(int slabNumber) {
+        ByteBuffer slab = slabs[slabNumber];
+        int evicted = 0;
+        int position = 0;
+        while (position + HEADER_BYTES <= slabSize) {
+            int length = slab.getInt(position);
+            if (length < HEADER_BYTES || position + length > slabSize) {
+                break;
+            }
+            long address = ((long) slabNumber << 32) | position;
+            int slot = find(slab.getLong(position + 4));
+            if (slot >= 0 && addresses[slot] == address) {
+                removeSlot(slot);
+                evicted++;
+            }
+            position += length;
+        }
+        slab.putInt(0, 0);
+        log.debug("Off-heap slab {} reused, evicted {} products", slabNumber, evicted);
+    }
+
+    private StoredProduct read(long address) {
+        ByteBuffer slab = slabs[slabOf(address)];
+        int position = offsetOf(address);
+        int categoryCode = slab.getInt(position + 36);
+        int brandCode = slab.getInt(position + 40);
+        int nameOffset = position + HEADER_BYTES;
+        String name = readString(slab, nameOffset);
+        String description = readString(slab, nameOffset + 4 + Math.max(0, slab.getInt(nameOffset)));
+        ProductSnapshot product = new ProductSnapshot(
+                slab.getLong(position + 4),
+                name,
+                categoryCode < 0 ? null : categories.valueOf(categoryCode),
+                brandCode < 0 ? null : brands.valueOf(brandCode),
+                slab.getLong(position + 28),
+                description,
+                slab.getLong(position + 12));
+        return new StoredProduct(product, slab.getLong(position + 20));
+    }
+
+    private void touch(long address, long writtenAt) {
+        ByteBuffer slab = slabs[slabOf(address)];
+        int position = offsetOf(address) + 20;
+        slab.putLong(position, Math.max(slab.getLong(position), writtenAt));
+    }
+
+    private long versionAt(long address) {
+        return slabs[slabOf(address)].getLong(offsetOf(address) + 12);
+    }
+
+    private int find(long id) {
+        int mask = keys.length - 1;
+        for (int slot = hash(id) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void index(long id, long address) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = id;
+            size++;
+        }
+        addresses[slot] = address;
+    }
+
+    /**
+     * Удаляет слот со сдвигом следующих элементов цепочки назад,
+     * чтобы поиск не требовал надгробий.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                addresses[hole] = addresses[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldAddresses = addresses;
+        keys = new long[oldKeys.length * 2];
+        addresses = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                index(oldKeys[i], oldAddresses[i]);
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringBytes(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int writeString(ByteBuffer slab, int position, byte[] bytes) {
+        if (bytes == null) {
+            slab.putInt(position, -1);
+            return position + 4;
+        }
+        slab.putInt(position, bytes.length);
+        slab.put(position + 4, bytes);
+        return position + 4 + bytes.length;
+    }
+
+    private static String readString(ByteBuffer slab, int position) {
+        int length = slab.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        slab.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.kopanev.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Преобразование цен между {@link BigDecimal} и копейками.
+ * Внутри приложения цены хранятся как {@code long} в минимальных единицах (копейках),
+ * что соответствует колонке {@code DECIMAL(10,2)} и избавляет от аллокаций
+ * и {@code compareTo} при фильтрации и кэшировании.
+ * {@link BigDecimal} используется только на границе API и при записи в БД.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+public final class Prices {
+    private static final int SCALE = 2;
+
+    private Prices() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Переводит цену в копейки с округлением до ближайшей копейки.
+     *
+     * @param price цена в рублях (не должна быть null)
+     * @return цена в копейках
+     * @throws ArithmeticException если цена не помещается в long
+     */
+    public static long toMinorUnits(BigDecimal price) {
+        return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Переводит цену из копеек в рубли.
+     *
+     * @param minorUnits цена в копейках
+     * @return цена в рублях с двумя знаками после запятой
+     */
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Форматирует цену в копейках для вывода пользователю.
+     *
+     * @param minorUnits цена в копейках
+     * @return строка вида {@code 89990.00}
+     */
+    public static String format(long minorUnits) {
+        return toDecimal(minorUnits).toPlainString();
+    }
+}
@@ -1,46 +1,192 @@
 package ru.kopanev.utils;
 
 import lombok.extern.slf4j.Slf4j;
-import ru.kopanev.model.Product;
+import ru.kopanev.enums.EvictionCause;
+import ru.kopanev.model.HotProduct;
+import ru.kopanev.model.ProductSnapshot;
 
-import java.util.LinkedHashMap;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /**
  * Кэш для хранения товаров в памяти.
- * Использует ConcurrentHashMap для потокобезопасного доступа.
+ * Использует {@link ConcurrentLongMap} с примитивными ключами для потокобезопасного доступа:
+ * попадание через {@link #getIfPresent(long)} не упаковывает идентификатор,
+ * не создаёт {@link Optional} и не пишет в журнал, то есть не выделяет память.
  *
- * <p>При достижении максимального размера автоматически вытесняет
- * старые элементы (простая FIFO стратегия). Для production рекомендуется
+ * <p>Хранит неизменяемые {@link ProductSnapshot}, поэтому найденный товар
+ * возвращается без копирования и может безопасно использоваться
+ * несколькими потоками одновременно.</p>
+ *
+ * <p>Запись в кэш условная: снимок заменяет существующий только если его
+ * версия строго больше. Так читатель, загрузивший из БД старую версию,
+ * не может перезаписать в кэше более новую версию, положенную параллельным обновлением.</p>
+ *
+ * <p>Инвалидация оставляет на {@link #TOMBSTONE_TTL} нижнюю границу версии товара
+ * (для удалённого товара — надгробие): снимок ниже границы не попадает ни в один уровень.
+ * Так читатель, начавший загрузку до изменения или удаления товара, не вернёт
+ * в кэш прочитанную до него версию после инвалидации.</p>
+ *
+ * <p>Кэш считает обращения к товарам (и попадания, и промахи). По этим счётчикам
+ * при следующем старте определяется набор горячих товаров для прогрева.
+ * Отслеживается не больше {@link #MAX_TRACKED_IDS} идентификаторов.</p>
+ *
+ * <p>Работа кэша учитывается в {@link CacheStats}, а самые запрашиваемые товары
+ * отслеживаются в {@link HeavyHitters}; {@link #toMetrics()} отдаёт всё это в виде метрик.</p>
+ *
+ * <p>Элементы устаревают через {@code expireAfterWrite} после записи: товар мог
+ * быть изменён вне этого процесса. Сроки отслеживает {@link TimerWheel}, без
+ * периодического просмотра всего кэша. Если к элементу обращаются после
+ * {@code refreshAfterWrite}, он перечитывается асинхронно, а читатели до завершения
+ * перечитывания получают прежнее значение — поэтому востребованные товары
+ * не устаревают и чтение не ждёт БД.</p>
+ *
+ * <p>Ниже кэша может быть подключён второй уровень вне кучи ({@link OffHeapProductStore}).
+ * Записи проходят в оба уровня, промах первого уровня проверяет второй и при попадании
+ * поднимает товар в первый с исходным моментом записи, поэтому срок жизни общий.
+ * Вытеснение из первого уровня второй уровень не затрагивает; инвалидация — затрагивает.</p>
+ *
+ * <p>Размер кэша ограничен не количеством элементов, а суммарным весом снимков
+ * в байтах: товар с большим описанием занимает заметно больше памяти, чем товар без него.
+ * Вес оценивается по {@link #weigh(ProductSnapshot)}. При превышении бюджета
+ * вытесняются элементы по кругу в порядке хэш-таблицы (простая стратегия). Для production рекомендуется
  * использовать LRU (Least Recently Used) стратегию.</p>
  *
  * @author Artem Kopanev
  * @since 1.0
  */
 @Slf4j
-public class ProductCache {
+public class ProductCache implements AutoCloseable {
 
-    private final Map<Long, Product> cache;
-    private final int maxSize;
+    /**
+     * Время, в течение которого после инвалидации действует нижняя граница версии товара.
+     * Должно превышать время загрузки товара из БД.
+     */
+    public static final Duration TOMBSTONE_TTL = Duration.ofSeconds(10);
+
+    /**
+     * Максимальное количество идентификаторов, для которых считаются обращения.
+     */
+    public static final int MAX_TRACKED_IDS = 10_000;
+
+    /**
+     * Бюджет памяти кэша по умолчанию (1 МБ).
+     */
+    public static final long DEFAULT_MAX_WEIGHT_BYTES = 1024 * 1024;
 
     /**
-     * Создаёт кэш с размером по умолчанию (100 элементов).
+     * Оценка памяти на элемент без учёта строк: объект снимка, элемент кэша,
+     * узел ConcurrentHashMap и ключ Long.
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 136;
+
+    /**
+     * Количество границ версий, после которого при инвалидации удаляются истёкшие.
+     */
+    private static final int FLOORS_SWEEP_THRESHOLD = 1024;
+
+    private static final int TIMER_WHEEL_SIZE = 512;
+    private static final int HOT_PRODUCTS_TRACKED = 32;
+    private static final int HOT_PRODUCTS_SKETCH_WIDTH = 4096;
+
+    private final ConcurrentLongMap<Entry> cache = new ConcurrentLongMap<>();
+    private final ConcurrentLongMap<LongAdder> accessCounts = new ConcurrentLongMap<>();
+    private final AtomicLong evictionCursor = new AtomicLong();
+    private final CacheStats stats = new CacheStats();
+    private final HeavyHitters hotProducts = new HeavyHitters(HOT_PRODUCTS_TRACKED, HOT_PRODUCTS_SKETCH_WIDTH);
+    private final Map<Long, Floor> floors = new ConcurrentHashMap<>();
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongSupplier nanoClock;
+    private final AtomicLong weight = new AtomicLong();
+    private final long maxWeightBytes;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final TimerWheel expirations;
+    private volatile Function<Long, CompletableFuture<Optional<ProductSnapshot>>> refreshLoader;
+    private volatile OffHeapProductStore secondLevel;
+
+    /**
+     * Создаёт кэш с бюджетом памяти по умолчанию (1 МБ).
      */
     public ProductCache() {
-        this(100);
+        this(DEFAULT_MAX_WEIGHT_BYTES);
+    }
+
+    /**
+     * Создаёт кэш с указанным бюджетом памяти, элементы которого не устаревают.
+     *
+     * @param maxWeightBytes максимальный суммарный вес снимков в байтах
+     */
+    public ProductCache(long maxWeightBytes) {
+        this(maxWeightBytes, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Создаёт кэш с ограниченным временем жизни элементов.
+     *
+     * @param maxWeightBytes максимальный суммарный вес снимков в байтах
+     * @param expireAfterWrite время жизни элемента после записи (0 — без ограничения)
+     * @param refreshAfterWrite время после записи, начиная с которого элемент при обращении
+     *                          перечитывается асинхронно (0 — без перечитывания)
+     * @param timerTick точность отслеживания сроков
+     */
+    public ProductCache(long maxWeightBytes, Duration expireAfterWrite, Duration refreshAfterWrite,
+                        Duration timerTick) {
+        this(maxWeightBytes, expireAfterWrite, refreshAfterWrite, timerTick, System::nanoTime);
     }
 
     /**
-     * Создаёт кэш с указанным максимальным размером.
+     * Создаёт кэш с ограниченным временем жизни элементов и заданными часами.
+     * Используется в тестах, чтобы управлять временем.
      *
-     * @param maxSize максимальное количество элементов в кэше
+     * @param maxWeightBytes максимальный суммарный вес снимков в байтах
+     * @param expireAfterWrite время жизни элемента после записи (0 — без ограничения)
+     * @param refreshAfterWrite время после записи, начиная с которого элемент при обращении
+     *                          перечитывается асинхронно (0 — без перечитывания)
+     * @param timerTick точность отслеживания сроков
+     * @param nanoClock источник времени в наносекундах, как {@link System#nanoTime()}
      */
-    public ProductCache(int maxSize) {
-        this.cache = new ConcurrentHashMap<>();
-        this.maxSize = maxSize;
-        log.info("ProductCache initialized with max size: {}", maxSize);
+    ProductCache(long maxWeightBytes, Duration expireAfterWrite, Duration refreshAfterWrite, Duration timerTick,
+                 LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.maxWeightBytes = maxWeightBytes;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.refreshAfterWriteNanos = refreshAfterWrite.toNanos();
+        this.expirations = expireAfterWriteNanos > 0
+                ? new TimerWheel(timerTick, TIMER_WHEEL_SIZE, this::expireIfDue, "product-cache-expiry", nanoClock)
+                : null;
+        log.info("ProductCache initialized with max weight: {} bytes, expireAfterWrite: {}, refreshAfterWrite: {}",
+                maxWeightBytes, expireAfterWrite, refreshAfterWrite);
+    }
+
+    /**
+     * Задаёт загрузчик для асинхронного перечитывания элементов.
+     * Без загрузчика элементы только устаревают.
+     *
+     * @param loader загрузчик товара по идентификатору
+     */
+    public void setRefreshLoader(Function<Long, CompletableFuture<Optional<ProductSnapshot>>> loader) {
+        this.refreshLoader = loader;
+    }
+
+    /**
+     * Подключает второй уровень кэша вне кучи. Кэш закрывает его при своём закрытии.
+     *
+     * @param store хранилище второго уровня
+     */
+    public void setSecondLevel(OffHeapProductStore store) {
+        this.secondLevel = store;
     }
 
     /**
@@ -49,66 +195,187 @@ public class ProductCache {
      * @param id идентификатор товара
      * @return Optional с товаром, если найден в кэше, иначе пустой Optional
      */
-    public Optional<Product> get(Long id) {
-        Product product = cache.get(id);
-        if (product != null) {
-            log.debug("Cache HIT: product id={}", id);
-        } else {
-            log.debug("Cache MISS: product id={}", id);
+    public Optional<ProductSnapshot> get(Long id) {
+        return Optional.ofNullable(getIfPresent(id));
+    }
+
+    /**
+     * Получает товар из кэша по идентификатору без выделения памяти при попадании.
+     * Используется на горячем пути чтения товара.
+     *
+     * @param id идентификатор товара
+     * @return товар или null, если его нет в кэше
+     */
+    public ProductSnapshot getIfPresent(long id) {
+        recordAccess(id, 1);
+        hotProducts.record(id);
+        Entry entry = liveEntry(id);
+        if (entry == null) {
+            entry = promote(id);
+            if (entry == null) {
+                stats.recordMiss();
+                log.debug("Cache MISS: product id={}", id);
+                return null;
+            }
+        }
+        stats.recordHit();
+
+        if (refreshAfterWriteNanos > 0 && nanoClock.getAsLong() - entry.writtenAt >= refreshAfterWriteNanos) {
+            refreshAsync(id);
         }
-        return Optional.ofNullable(product);
+        return entry.value;
     }
 
     /**
-     * Добавляет товар в кэш.
-     * Если кэш заполнен, вытесняет самый старый элемент.
+     * Получает товар из кэша, не учитывая обращение в счётчиках.
+     * Используется служебными компонентами, а не чтением товаров пользователями.
+     * Товар из второго уровня в первый не поднимается.
      *
-     * @param product товар для добавления в кэш
+     * @param id идентификатор товара
+     * @return Optional с товаром, если найден в кэше, иначе пустой Optional
      */
-    public void put(Product product) {
-        if (cache.size() >= maxSize) {
-            evictOldest();
+    public Optional<ProductSnapshot> peek(Long id) {
+        Entry entry = liveEntry(id);
+        if (entry != null) {
+            return Optional.of(entry.value);
         }
-        cache.put(product.getId(), product);
-        log.debug("Cached product: id={}, name={}", product.getId(), product.getName());
+        OffHeapProductStore store = secondLevel;
+        return store == null ? Optional.empty() : store.get(id)
+                .filter(stored -> !isExpired(stored.writtenAt(), nanoClock.getAsLong()))
+                .map(OffHeapProductStore.StoredProduct::product);
     }
 
     /**
-     * Обновляет товар в кэше.
+     * Добавляет товар в кэш, если в нём нет более новой версии товара.
+     * Если бюджет памяти превышен, вытесняет самые старые элементы.
+     * Снимок, превышающий весь бюджет кэша, не кэшируется.
+     *
+     * @param product товар для добавления в кэш
+     * @return true, если снимок попал в кэш; false, если в кэше уже есть версия не старее
+     */
+    public boolean put(ProductSnapshot product) {
+        boolean stored = putIfNewer(product);
+        log.debug("Cache put: id={}, version={}, stored={}", product.getId(), product.getVersion(), stored);
+        return stored;
+    }
+
+    /**
+     * Обновляет товар в кэше, если в нём нет более новой версии товара.
      *
      * @param product товар с обновлёнными данными
+     * @return true, если снимок попал в кэш; false, если в кэше уже есть версия не старее
      */
-    public void update(Product product) {
-        cache.put(product.getId(), product);
-        log.debug("Updated cache: product id={}", product.getId());
+    public boolean update(ProductSnapshot product) {
+        boolean stored = putIfNewer(product);
+        log.debug("Cache update: id={}, version={}, stored={}", product.getId(), product.getVersion(), stored);
+        return stored;
     }
 
     /**
-     * Удаляет товар из кэша (инвалидация).
+     * Решает, стоит ли загружать в кэш товар, который не запрашивали напрямую
+     * (например, найденный фильтром). Пока в кэше есть место, допускается любой товар.
+     * Иначе товар допускается, только если его запрашивали чаще, чем очередного
+     * кандидата на вытеснение, — так просмотр длинных списков не вытесняет горячие товары.
+     *
+     * @param id идентификатор товара
+     * @return true, если товар стоит загрузить
+     */
+    public boolean admits(long id) {
+        if (cache.get(id) != null) {
+            return false;
+        }
+        if (weight.get() < maxWeightBytes - maxWeightBytes / 10) {
+            return true;
+        }
+        long victim = cache.anyKey(evictionCursor.get());
+        return victim == ConcurrentLongMap.NO_KEY || hotProducts.estimate(id) > hotProducts.estimate(victim);
+    }
+
+    /**
+     * Удаляет товар из кэша (инвалидация) на обоих уровнях.
+     * Пока действует {@link #TOMBSTONE_TTL}, в кэш не попадают версии не новее удалённой.
      *
      * @param id идентификатор товара для удаления
      */
     public void invalidate(Long id) {
-        cache.remove(id);
-        log.debug("Invalidated cache: product id={}", id);
+        invalidate(id, 0);
     }
 
     /**
-     * Очищает весь кэш.
+     * Удаляет товар из кэша на обоих уровнях, если известно, что в БД товар уже
+     * не ниже указанной версии (например, после конфликта версий).
+     * Пока действует {@link #TOMBSTONE_TTL}, в кэш не попадают более старые версии.
+     *
+     * @param id идентификатор товара для удаления
+     * @param minVersion минимальная версия, которую можно снова кэшировать
+     */
+    public void invalidate(long id, long minVersion) {
+        Entry current = cache.get(id);
+        evict(id, Math.max(minVersion, current == null ? 0 : current.value.getVersion() + 1));
+    }
+
+    /**
+     * Удаляет из кэша состояние товара, которое так и не было записано в БД
+     * (например, отброшенные изменения буфера отложенной записи). Граница версий берётся
+     * только из {@code minVersion}: кэшированная версия в БД не попала, и граница по ней
+     * отклоняла бы настоящую версию товара из БД.
+     *
+     * @param id идентификатор товара для удаления
+     * @param minVersion минимальная версия, которую можно снова кэшировать
+     */
+    public void invalidateUnwritten(long id, long minVersion) {
+        evict(id, minVersion);
+    }
+
+    private void evict(long id, long floor) {
+        // Граница ставится до удаления: запись, начатая до неё, будет удалена, а начатая после — отклонена.
+        if (floor > 0) {
+            raiseFloor(id, floor);
+        }
+        if (removeLocal(id)) {
+            stats.recordEviction(EvictionCause.EXPLICIT);
+        }
+        OffHeapProductStore store = secondLevel;
+        if (store != null) {
+            store.invalidate(id);
+        }
+        log.debug("Invalidated cache: product id={}, minVersion={}", id, floor);
+    }
+
+    /**
+     * Удаляет из кэша удалённый товар и оставляет надгробие: пока действует
+     * {@link #TOMBSTONE_TTL}, товар не попадает в кэш ни в какой версии.
+     *
+     * @param id идентификатор удалённого товара
+     */
+    public void invalidateDeleted(long id) {
+        invalidate(id, Long.MAX_VALUE);
+    }
+
+    /**
+     * Очищает весь кэш на обоих уровнях.
      */
     public void clear() {
-        cache.clear();
+        cache.forEachKey(id -> {
+            if (removeLocal(id)) {
+                stats.recordEviction(EvictionCause.EXPLICIT);
+            }
+        });
+        OffHeapProductStore store = secondLevel;
+        if (store != null) {
+            store.clear();
+        }
         log.info("Cache cleared");
     }
 
     /**
-     * Проверяет наличие товара в кэше.
+     * Проверяет наличие товара в первом уровне кэша.
      *
      * @param id идентификатор товара
      * @return true, если товар находится в кэше
      */
     public boolean contains(Long id) {
-        return cache.containsKey(id);
+        return liveEntry(id) != null;
     }
 
     /**
@@ -121,17 +388,410 @@ public class ProductCache {
     }
 
     /**
-     * Вытесняет самый старый элемент из кэша (FIFO стратегия).
+     * Возвращает текущий суммарный вес снимков в кэше.
+     *
+     * @return вес в байтах
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Оценивает занимаемый снимком объём памяти.
+     * Категория и бренд учитываются полностью, хотя обычно они общие для многих товаров
+     * (см. {@link StringDictionary}), поэтому оценка скорее завышена.
+     *
+     * @param product снимок товара
+     * @return оценка размера в байтах
+     */
+    static long weigh(ProductSnapshot product) {
+        return ENTRY_OVERHEAD_BYTES
+                + weigh(product.getName())
+                + weigh(product.getCategory())
+                + weigh(product.getBrand())
+                + weigh(product.getDescription());
+    }
+
+    private static long weigh(String value) {
+        return value == null ? 0 : DescriptionCache.weigh(value);
+    }
+
+    /**
+     * Возвращает все снимки, находящиеся в кэше.
+     *
+     * @return копия содержимого кэша
+     */
+    public List<ProductSnapshot> values() {
+        long now = nanoClock.getAsLong();
+        return cache.values().stream()
+                .filter(entry -> !isExpired(entry, now))
+                .map(entry -> entry.value)
+                .toList();
+    }
+
+    /**
+     * @return счётчики работы кэша
+     */
+    public CacheStats stats() {
+        return stats;
+    }
+
+    /**
+     * Возвращает самые запрашиваемые товары по текущей нагрузке.
+     * В отличие от {@link #mostAccessed(int)}, оценки со временем затухают.
+     *
+     * @param limit максимальное количество товаров
+     * @return товары по убыванию оценки обращений
+     */
+    public List<HotProduct> hotProducts(int limit) {
+        return hotProducts.top(limit);
+    }
+
+    /**
+     * Возвращает показатели кэша в виде метрик с префиксом {@code cache.product}.
+     *
+     * @return метрики в постоянном порядке
+     */
+    public Map<String, Number> toMetrics() {
+        Map<String, Number> metrics = stats.toMetrics("cache.product");
+        metrics.put("cache.product.size", size());
+        metrics.put("cache.product.weight-bytes", weight());
+        OffHeapProductStore store = secondLevel;
+        if (store != null) {
+            metrics.put("cache.product.off-heap.size", store.size());
+            metrics.put("cache.product.off-heap.allocated-bytes", store.allocatedBytes());
+            metrics.put("cache.product.off-heap.hits", store.hits());
+            metrics.put("cache.product.off-heap.misses", store.misses());
+        }
+        return metrics;
+    }
+
+    /**
+     * Возвращает идентификаторы товаров, к которым чаще всего обращались.
+     *
+     * @param limit максимальное количество идентификаторов
+     * @return идентификаторы по убыванию количества обращений
+     */
+    public List<Long> mostAccessed(int limit) {
+        return getAccessCounts().entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Возвращает количество обращений по идентификаторам товаров.
+     *
+     * @return копия счётчиков обращений
+     */
+    public Map<Long, Long> getAccessCounts() {
+        Map<Long, Long> result = new HashMap<>();
+        accessCounts.forEachKey(id -> {
+            LongAdder counter = accessCounts.get(id);
+            if (counter != null) {
+                result.put(id, counter.sum());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Добавляет к счётчикам обращения, накопленные до перезапуска.
+     *
+     * @param counts количество обращений по идентификаторам товаров
+     */
+    public void restoreAccessCounts(Map<Long, Long> counts) {
+        counts.forEach(this::recordAccess);
+    }
+
+    private void recordAccess(long id, long count) {
+        LongAdder counter = accessCounts.get(id);
+        if (counter == null) {
+            if (accessCounts.size() >= MAX_TRACKED_IDS) {
+                return;
+            }
+            counter = accessCounts.compute(id, (key, current) -> current != null ? current : new LongAdder());
+        }
+        counter.add(count);
+    }
+
+    /**
+     * Останавливает отслеживание сроков элементов и закрывает второй уровень.
+     */
+    @Override
+    public void close() {
+        if (expirations != null) {
+            expirations.close();
+        }
+        OffHeapProductStore store = secondLevel;
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Атомарно записывает снимок, если текущий снимок отсутствует или старее.
+     * Снимок той же версии не заменяет текущий, но продлевает его срок жизни:
+     * данные только что подтверждены чтением из БД.
+     *
+     * @param product снимок для записи
+     * @return true, если снимок записан
+     */
+    private boolean putIfNewer(ProductSnapshot product) {
+        if (belowFloor(product)) {
+            log.debug("Rejected invalidated version: id={}, version={}", product.getId(), product.getVersion());
+            return false;
+        }
+        long now = nanoClock.getAsLong();
+        OffHeapProductStore store = secondLevel;
+        if (store != null) {
+            store.put(product, now);
+            // Инвалидация могла пройти между проверкой и записью во второй уровень.
+            if (belowFloor(product)) {
+                store.invalidate(product.getId());
+                return false;
+            }
+        }
+        return putLocal(product, now);
+    }
+
+    /**
+     * Записывает снимок только в первый уровень.
+     *
+     * @param product снимок для записи
+     * @param writtenAt момент записи снимка в кэш
+     * @return true, если снимок записан
+     */
+    private boolean putLocal(ProductSnapshot product, long writtenAt) {
+        long now = nanoClock.getAsLong();
+        Entry candidate = new Entry(product, writtenAt, weigh(product));
+        if (candidate.weight > maxWeightBytes) {
+            log.debug("Product id={} is too large to cache: {} bytes", product.getId(), candidate.weight);
+            return false;
+        }
+
+        // Вес корректируется внутри compute: функция выполняется атомарно для ключа.
+        Entry result = cache.compute(product.getId(), (id, current) -> {
+            if (belowFloor(product)) {
+                return current;
+            }
+            Entry chosen;
+            if (current == null || isExpired(current, now)
+                    || candidate.value.getVersion() > current.value.getVersion()) {
+                chosen = candidate;
+            } else if (candidate.value.getVersion() == current.value.getVersion()
+                    && writtenAt > current.writtenAt) {
+                chosen = new Entry(current.value, writtenAt, current.weight);
+            } else {
+                chosen = current;
+            }
+            weight.addAndGet(chosen.weight - (current == null ? 0 : current.weight));
+            return chosen;
+        });
+        if (result == null) {
+            return false;
+        }
+        if (expirations != null && result.writtenAt == writtenAt) {
+            expirations.schedule(product.getId(), writtenAt + expireAfterWriteNanos);
+        }
+        while (weight.get() > maxWeightBytes && !cache.isEmpty()) {
+            evictNext();
+        }
+        return result.value == product;
+    }
+
+    /**
+     * Поднимает товар из второго уровня в первый.
+     *
+     * @return элемент первого уровня или null, если во втором уровне товара нет или он устарел
+     */
+    private Entry promote(long id) {
+        OffHeapProductStore store = secondLevel;
+        if (store == null) {
+            return null;
+        }
+        Optional<OffHeapProductStore.StoredProduct> stored = store.get(id);
+        if (stored.isEmpty()) {
+            return null;
+        }
+        if (isExpired(stored.get().writtenAt(), nanoClock.getAsLong())) {
+            store.invalidate(id);
+            return null;
+        }
+        ProductSnapshot product = stored.get().product();
+        if (belowFloor(product)) {
+            store.invalidate(id);
+            return null;
+        }
+        putLocal(product, stored.get().writtenAt());
+        return new Entry(product, stored.get().writtenAt(), 0);
+    }
+
+    /**
+     * Удаляет товар только из первого уровня и без границы версии: при вытеснении и очистке
+     * товар не менялся, и его можно снова кэшировать в любой версии.
+     *
+     * @return true, если элемент удалён
+     */
+    private boolean removeLocal(long id) {
+        Entry removed = cache.remove(id);
+        if (removed != null) {
+            weight.addAndGet(-removed.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет именно этот элемент, если он всё ещё в кэше.
+     *
+     * @return true, если элемент удалён
+     */
+    private boolean remove(long id, Entry entry) {
+        if (cache.remove(id, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает элемент, если он есть и не устарел. Устаревший элемент удаляется.
+     */
+    private Entry liveEntry(long id) {
+        Entry entry = cache.get(id);
+        if (entry != null && isExpired(entry, nanoClock.getAsLong())) {
+            if (remove(id, entry)) {
+                stats.recordEviction(EvictionCause.EXPIRED);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return isExpired(entry.writtenAt, now);
+    }
+
+    private boolean isExpired(long writtenAt, long now) {
+        return expireAfterWriteNanos > 0 && now - writtenAt >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Удаляет элемент, если его срок действительно истёк. Вызывается колесом таймеров.
+     */
+    private void expireIfDue(long id) {
+        Entry entry = cache.get(id);
+        if (entry != null && isExpired(entry, nanoClock.getAsLong()) && remove(id, entry)) {
+            stats.recordEviction(EvictionCause.EXPIRED);
+            log.debug("Expired product from cache: id={}", id);
+        }
+    }
+
+    /**
+     * Перечитывает элемент в фоне, если он ещё не перечитывается.
+     * При ошибке остаётся прежнее значение до истечения его срока.
+     */
+    private void refreshAsync(long id) {
+        Function<Long, CompletableFuture<Optional<ProductSnapshot>>> loader = refreshLoader;
+        if (loader == null || !refreshing.add(id)) {
+            return;
+        }
+
+        long start = nanoClock.getAsLong();
+        CompletableFuture<Optional<ProductSnapshot>> reload;
+        try {
+            reload = loader.apply(id);
+        } catch (RuntimeException e) {
+            refreshing.remove(id);
+            stats.recordLoadFailure(nanoClock.getAsLong() - start);
+            log.debug("Failed to start refresh of product id={}: {}", id, e.getMessage());
+            return;
+        }
+        reload.whenComplete((found, error) -> {
+            refreshing.remove(id);
+            if (error != null) {
+                stats.recordLoadFailure(nanoClock.getAsLong() - start);
+                log.debug("Failed to refresh product id={}: {}", id, error.getMessage());
+                return;
+            }
+            stats.recordLoadSuccess(nanoClock.getAsLong() - start);
+            if (found.isPresent()) {
+                putIfNewer(found.get());
+            } else {
+                invalidateDeleted(id);
+            }
+        });
+    }
+
+    /**
+     * Поднимает нижнюю границу версии товара и продлевает её срок.
+     * Изредка удаляет истёкшие границы других товаров, чтобы их число не росло.
+     */
+    private void raiseFloor(long id, long minVersion) {
+        long now = nanoClock.getAsLong();
+        long until = now + TOMBSTONE_TTL.toNanos();
+        floors.compute(id, (key, current) -> new Floor(current == null || current.isExpired(now)
+                ? minVersion : Math.max(minVersion, current.minVersion), until));
+        if (floors.size() > FLOORS_SWEEP_THRESHOLD) {
+            floors.values().removeIf(floor -> floor.isExpired(now));
+        }
+    }
+
+    /**
+     * Проверяет, ниже ли версия снимка действующей границы, оставленной инвалидацией.
+     */
+    private boolean belowFloor(ProductSnapshot product) {
+        Floor floor = floors.get(product.getId());
+        if (floor == null) {
+            return false;
+        }
+        if (floor.isExpired(nanoClock.getAsLong())) {
+            floors.remove(product.getId(), floor);
+            return false;
+        }
+        return product.getVersion() < floor.minVersion;
+    }
+
+    /**
+     * Вытесняет очередной элемент из кэша, обходя таблицу по кругу.
      *
      * <p>Примечание: В production рекомендуется использовать
      * LRU (Least Recently Used) стратегию для более эффективного
      * управления памятью.</p>
      */
-    private void evictOldest() {
-        if (!cache.isEmpty()) {
-            Long firstKey = cache.keySet().iterator().next();
-            cache.remove(firstKey);
-            log.debug("Evicted product from cache: id={}", firstKey);
+    private void evictNext() {
+        long id = cache.anyKey(evictionCursor.getAndIncrement());
+        if (id != ConcurrentLongMap.NO_KEY && removeLocal(id)) {
+            stats.recordEviction(EvictionCause.SIZE);
+            log.debug("Evicted product from cache: id={}", id);
+        }
+    }
+
+    /**
+     * Нижняя граница версии товара после инвалидации и момент её истечения
+     * по часам кэша. {@link Long#MAX_VALUE} означает удалённый товар.
+     */
+    private record Floor(long minVersion, long until) {
+
+        boolean isExpired(long now) {
+            return now - until >= 0;
+        }
+    }
+
+    /**
+     * Элемент кэша: снимок, момент его записи по часам кэша и оценка веса.
+     */
+    private static final class Entry {
+        private final ProductSnapshot value;
+        private final long writtenAt;
+        private final long weight;
+
+        private Entry(ProductSnapshot value, long writtenAt, long weight) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+            this.weight = weight;
         }
     }
-}
\ No newline at end of file
+}
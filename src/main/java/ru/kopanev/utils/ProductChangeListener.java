@@ -0,0 +1,333 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.repository.ProductRepository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Инвалидация локальных кэшей по изменениям товаров в других экземплярах приложения.
+ *
+ * <p>Триггер на журнале {@code product_changes} отправляет {@code NOTIFY product_changes}
+ * с полезной нагрузкой {@code id,version,seq} (для удалённого товара версия равна -1,
+ * {@code seq} — номер записи журнала). Компонент держит
+ * отдельное соединение вне пулов, выполняет на нём {@code LISTEN} и в фоновом потоке:</p>
+ * <ul>
+ *   <li>собирает уведомления в течение {@code batchIntervalMs}, оставляя по каждому товару
+ *       только последнюю версию;</li>
+ *   <li>удаляет из кэшей удалённые товары и перечитывает одним запросом товары,
+ *       версия которых в кэше старее уведомления;</li>
+ *   <li>после переподключения догоняет пропущенные изменения по журналу
+ *       {@code product_changes}, начиная с номера последнего применённого изменения —
+ *       из журнала или из уведомления, — так как уведомления, отправленные без подключения,
+ *       потеряны. При первом подключении номера ещё нет, и весь кэш сверяется с БД.</li>
+ * </ul>
+ *
+ * <p>Журнал и товары читаются через репозиторий, читающий с основной БД: реплика может
+ * отставать от уведомлений, и перечитанный с неё товар оказался бы старше изменения.</p>
+ *
+ * <p>Из кэша результатов фильтров удаляются результаты, затронутые изменениями.
+ * Для этого изменённые товары перечитываются, пока в нём есть результаты;
+ * если перечитать не удалось, кэш результатов очищается целиком.</p>
+ *
+ * <p>Изменения, сделанные этим же экземпляром, уже отражены в кэше и пропускаются
+ * по версии.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class ProductChangeListener implements AutoCloseable {
+
+    /**
+     * Канал уведомлений об изменении товаров.
+     */
+    public static final String CHANNEL = "product_changes";
+
+    private static final long DELETED = -1;
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final ProductCache productCache;
+    private final DescriptionCache descriptionCache;
+    private final FilterResultCache filterResults;
+    private final ProductRepository repository;
+    private final long batchIntervalMs;
+    private final long reconnectDelayMs;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile Connection connection;
+    private long lastSeq = -1;
+
+    /**
+     * Создаёт слушателя изменений.
+     *
+     * @param url JDBC URL основной БД
+     * @param username имя пользователя БД
+     * @param password пароль пользователя БД
+     * @param productCache кэш товаров
+     * @param descriptionCache кэш описаний товаров
+     * @param filterResults кэш результатов фильтров
+     * @param repository репозиторий товаров, читающий с основной БД
+     * @param batchIntervalMs время накопления уведомлений перед обработкой
+     * @param reconnectDelayMs пауза перед повторным подключением после ошибки
+     */
+    public ProductChangeListener(String url, String username, String password, ProductCache productCache,
+                                 DescriptionCache descriptionCache, FilterResultCache filterResults,
+                                 ProductRepository repository,
+                                 long batchIntervalMs, long reconnectDelayMs) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.productCache = productCache;
+        this.descriptionCache = descriptionCache;
+        this.filterResults = filterResults;
+        this.repository = repository;
+        this.batchIntervalMs = Math.max(1, batchIntervalMs);
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.thread = new Thread(this::run, "product-change-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Запускает фоновый поток слушателя.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(url, username, password)) {
+                connection = conn;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for product changes on channel '{}'", CHANNEL);
+                catchUp();
+                listen(conn.unwrap(PGConnection.class));
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Product change listener disconnected, reconnecting in {} ms: {}",
+                            reconnectDelayMs, e.getMessage());
+                    sleep(reconnectDelayMs);
+                }
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void listen(PGConnection pgConnection) throws SQLException {
+        Map<Long, Long> pending = new HashMap<>();
+        long pendingSeq = -1;
+        long flushAt = 0;
+        while (running) {
+            long timeoutMs = pending.isEmpty()
+                    ? batchIntervalMs
+                    : Math.max(1, TimeUnit.NANOSECONDS.toMillis(flushAt - System.nanoTime()));
+            PGNotification[] notifications = pgConnection.getNotifications((int) timeoutMs);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    if (pending.isEmpty()) {
+                        flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchIntervalMs);
+                    }
+                    pendingSeq = Math.max(pendingSeq, parse(notification.getParameter(), pending));
+                }
+            }
+            if (!pending.isEmpty() && System.nanoTime() - flushAt >= 0) {
+                apply(pending);
+                pending.clear();
+                // Уведомления приходят в порядке фиксации, поэтому все изменения до этого номера уже применены.
+                lastSeq = Math.max(lastSeq, pendingSeq);
+                pendingSeq = -1;
+            }
+        }
+    }
+
+    /**
+     * Разбирает уведомление {@code id,version,seq} и добавляет изменение в пакет.
+     * Уведомление без номера ({@code id,version}) принимается, но номер журнала не продвигает.
+     *
+     * @return номер записи журнала или -1, если его нет
+     */
+    private long parse(String payload, Map<Long, Long> pending) {
+        String[] fields = payload.split(",");
+        try {
+            pending.put(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+            return fields.length > 2 ? Long.parseLong(fields[2]) : -1;
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed product change notification: '{}'", payload);
+            return -1;
+        }
+    }
+
+    /**
+     * Применяет накопленные изменения к кэшам.
+     *
+     * @param changes последняя версия по идентификатору товара
+     */
+    private void apply(Map<Long, Long> changes) {
+        List<Long> outdated = new ArrayList<>();
+        List<Long> changed = new ArrayList<>();
+        int removed = 0;
+        for (Map.Entry<Long, Long> change : changes.entrySet()) {
+            Long id = change.getKey();
+            long version = change.getValue();
+            descriptionCache.invalidate(id);
+            if (version == DELETED) {
+                productCache.invalidateDeleted(id);
+                filterResults.onProductChanged(id, null);
+                removed++;
+                continue;
+            }
+            changed.add(id);
+            Optional<ProductSnapshot> cached = productCache.peek(id);
+            if (cached.isEmpty()) {
+                // Товар могут загружать прямо сейчас: граница не даст положить версию, прочитанную до изменения.
+                productCache.invalidate(id, version);
+            } else if (cached.get().getVersion() < version) {
+                outdated.add(id);
+            }
+        }
+
+        // Новое состояние всех изменённых товаров нужно, только пока есть результаты фильтров.
+        boolean loadChanged = !filterResults.isEmpty();
+        Map<Long, ProductSnapshot> loaded = load(loadChanged ? changed : outdated);
+        refresh(outdated, changes, loaded);
+        if (loadChanged && loaded != null) {
+            changed.forEach(id -> filterResults.onProductChanged(id, loaded.get(id)));
+        } else if (!changed.isEmpty()) {
+            filterResults.clear();
+        }
+        log.debug("Applied {} product changes: removed={}, refreshed={}", changes.size(), removed, outdated.size());
+    }
+
+    /**
+     * Применяет изменения, пропущенные с предыдущего подключения.
+     * Повторное применение уже учтённого изменения ничего не меняет, поэтому журнал
+     * читается с номера, запомненного при подключении, а не с последнего уведомления.
+     */
+    private void catchUp() {
+        if (lastSeq < 0) {
+            long latest = repository.findLatestChangeSeq();
+            resync();
+            lastSeq = latest;
+            return;
+        }
+
+        int applied = 0;
+        List<ProductChange> changes;
+        do {
+            changes = repository.findChangesSince(lastSeq, CATCH_UP_BATCH_SIZE);
+            for (ProductChange change : changes) {
+                descriptionCache.invalidate(change.getProductId());
+                filterResults.onProductChanged(change.getProductId(), change.getProduct());
+                if (change.getProduct() == null) {
+                    productCache.invalidateDeleted(change.getProductId());
+                } else if (productCache.peek(change.getProductId()).isPresent()) {
+                    productCache.update(change.getProduct());
+                }
+                lastSeq = change.getSeq();
+            }
+            applied += changes.size();
+        } while (changes.size() == CATCH_UP_BATCH_SIZE);
+        log.info("Product caches caught up with {} changes, last seq={}", applied, lastSeq);
+    }
+
+    /**
+     * Сверяет весь кэш с БД при первом подключении.
+     */
+    private void resync() {
+        List<Long> cached = productCache.values().stream().map(ProductSnapshot::getId).toList();
+        descriptionCache.clear();
+        filterResults.clear();
+        refresh(cached, Map.of(), load(cached));
+        log.info("Product cache resynchronised with database: {} products checked", cached.size());
+    }
+
+    /**
+     * Читает товары одним запросом.
+     *
+     * @param ids идентификаторы товаров
+     * @return товары по идентификатору (удалённых в нём нет) или null, если чтение не удалось
+     */
+    private Map<Long, ProductSnapshot> load(Collection<Long> ids) {
+        Map<Long, ProductSnapshot> loaded = new HashMap<>();
+        if (ids.isEmpty()) {
+            return loaded;
+        }
+        try {
+            repository.findByIds(ids).forEach(product -> loaded.put(product.getId(), product));
+            return loaded;
+        } catch (RuntimeException e) {
+            log.warn("Failed to read changed products: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Обновляет товары в кэше прочитанными версиями. Товары, которых больше нет или которые
+     * не удалось прочитать в версии не ниже ожидаемой, удаляются из кэша.
+     *
+     * @param ids идентификаторы товаров
+     * @param expectedVersions минимальные ожидаемые версии по идентификатору товара
+     * @param loaded прочитанные товары или null, если чтение не удалось
+     */
+    private void refresh(Collection<Long> ids, Map<Long, Long> expectedVersions, Map<Long, ProductSnapshot> loaded) {
+        for (Long id : ids) {
+            ProductSnapshot product = loaded == null ? null : loaded.get(id);
+            long expected = expectedVersions.getOrDefault(id, 0L);
+            if (loaded != null && product == null) {
+                productCache.invalidateDeleted(id);
+            } else if (product == null || product.getVersion() < expected) {
+                productCache.invalidate(id, expected);
+            } else {
+                productCache.update(product);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Останавливает слушателя и закрывает его соединение.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Connection conn = connection;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                log.debug("Failed to close product change listener connection: {}", e.getMessage());
+            }
+        }
+        thread.interrupt();
+    }
+}
@@ -26,29 +26,109 @@ public final class SqlQueries {
             "SELECT id, username, action, details, timestamp FROM marketplace.audit_events WHERE username=? ORDER BY timestamp DESC";
 
     // Product Repository queries
-    public static final String SAVE_PRODUCT =
-            "INSERT INTO marketplace.products (name, category, brand, price, description) VALUES (?, ?, ?, ?, ?)";
-
-    public static final String UPDATE_PRODUCT =
-            "UPDATE marketplace.products SET name=?, category=?, brand=?, price=?, description=? WHERE id=?";
-
-    public static final String DELETE_PRODUCT =
-            "DELETE FROM marketplace.products WHERE id = ?";
+    // Запись товара и событие аудита выполняются одним запросом: строка аудита
+    // вставляется data-modifying CTE только если запись товара действительно произошла.
+    // Тем же запросом изменение добавляется в журнал product_changes. Перед выделением
+    // номера изменения берётся транзакционная advisory-блокировка журнала: она держится
+    // до фиксации, поэтому номера изменений видны потребителям строго по возрастанию
+    // и потребитель, прочитавший изменения до seq, не пропустит изменение с меньшим seq.
+    public static final String SAVE_PRODUCT_WITH_AUDIT =
+            "WITH inserted AS (" +
+            "INSERT INTO marketplace.products (name, category, brand, price, description) VALUES (?, ?, ?, ?, ?) " +
+            "RETURNING id, version), " +
+            "audit AS (" +
+            "INSERT INTO marketplace.audit_events (username, action, details, timestamp) " +
+            "SELECT ?, ?, ?, ? FROM inserted), " +
+            "change_lock AS (SELECT pg_advisory_xact_lock(hashtext('marketplace.product_changes')) FROM inserted), " +
+            "change AS (" +
+            "INSERT INTO marketplace.product_changes (product_id, operation, version) " +
+            "SELECT id, 'INSERT', version FROM inserted, change_lock) " +
+            "SELECT id, version FROM inserted";
+
+    // Обновление выполняется только при совпадении версии. Строка сначала блокируется
+    // (locked), поэтому current_version — последняя зафиксированная версия, которую
+    // проверило и UPDATE, а не версия из снимка начала запроса. current_version отличает
+    // конфликт версий (current_version есть, new_version нет) от отсутствия товара (оба NULL).
+    public static final String UPDATE_PRODUCT_WITH_AUDIT =
+            "WITH locked AS (" +
+            "SELECT id, version FROM marketplace.products WHERE id=? FOR NO KEY UPDATE), " +
+            "updated AS (" +
+            "UPDATE marketplace.products p SET name=?, category=?, brand=?, price=?, description=?, " +
+            "version = p.version + 1 " +
+            "FROM locked c WHERE p.id = c.id AND p.version=? RETURNING p.id, p.version), " +
+            "audit AS (" +
+            "INSERT INTO marketplace.audit_events (username, action, details, timestamp) " +
+            "SELECT ?, ?, ?, ? FROM updated), " +
+            "change_lock AS (SELECT pg_advisory_xact_lock(hashtext('marketplace.product_changes')) FROM updated), " +
+            "change AS (" +
+            "INSERT INTO marketplace.product_changes (product_id, operation, version) " +
+            "SELECT id, 'UPDATE', version FROM updated, change_lock) " +
+            "SELECT (SELECT version FROM updated) AS new_version, " +
+            "(SELECT version FROM locked) AS current_version";
+
+    // Отложенное обновление из буфера записи: версия устанавливается явно, чтобы совпасть
+    // с версией, уже выданной клиентам из кэша. Запрос не возвращает строк и пригоден
+    // для пакетного выполнения; количество изменённых строк (запись в журнал) — 1 при
+    // успехе и 0, если версия в БД не совпала или товар удалён.
+    public static final String UPDATE_PRODUCT_BUFFERED_WITH_AUDIT =
+            "WITH updated AS (" +
+            "UPDATE marketplace.products SET name=?, category=?, brand=?, price=?, description=?, version=? " +
+            "WHERE id=? AND version=? RETURNING id, version), " +
+            "audit AS (" +
+            "INSERT INTO marketplace.audit_events (username, action, details, timestamp) " +
+            "SELECT ?, ?, ?, ? FROM updated), " +
+            "change_lock AS (SELECT pg_advisory_xact_lock(hashtext('marketplace.product_changes')) FROM updated) " +
+            "INSERT INTO marketplace.product_changes (product_id, operation, version) " +
+            "SELECT id, 'UPDATE', version FROM updated, change_lock";
+
+    // К деталям события аудита добавляется название удалённого товара.
+    public static final String DELETE_PRODUCT_WITH_AUDIT =
+            "WITH deleted AS (" +
+            "DELETE FROM marketplace.products WHERE id = ? " +
+            "RETURNING id, name, category, brand, (price * 100)::BIGINT AS price_minor, description, version), " +
+            "audit AS (" +
+            "INSERT INTO marketplace.audit_events (username, action, details, timestamp) " +
+            "SELECT ?, ?, ? || name, ? FROM deleted), " +
+            "change_lock AS (SELECT pg_advisory_xact_lock(hashtext('marketplace.product_changes')) FROM deleted), " +
+            "change AS (" +
+            "INSERT INTO marketplace.product_changes (product_id, operation, version) " +
+            "SELECT id, 'DELETE', version FROM deleted, change_lock) " +
+            "SELECT id, name, category, brand, price_minor, description, version FROM deleted";
 
     public static final String FIND_PRODUCT_BY_ID =
-            "SELECT id, name, category, brand, price, description FROM marketplace.products WHERE id=?";
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, description, version FROM marketplace.products WHERE id=?";
 
     public static final String FIND_ALL_PRODUCTS =
-            "SELECT id, name, category, brand, price, description FROM marketplace.products ORDER BY id";
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, version FROM marketplace.products ORDER BY id";
 
     public static final String FIND_PRODUCT_BY_CATEGORY =
-            "SELECT id, name, category, brand, price, description FROM marketplace.products WHERE category = ? ORDER BY name";
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, version FROM marketplace.products WHERE category = ? ORDER BY name";
 
     public static final String FIND_PRODUCT_BY_BRAND =
-            "SELECT id, name, category, brand, price, description FROM marketplace.products WHERE brand = ? ORDER BY name";
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, version FROM marketplace.products WHERE brand = ? ORDER BY name";
 
     public static final String FIND_PRODUCT_BY_PRICE_RANGE =
-            "SELECT id, name, category, brand, price, description FROM marketplace.products WHERE price BETWEEN ? AND ? ORDER BY price";
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, version FROM marketplace.products WHERE price BETWEEN ? AND ? ORDER BY price";
+
+    public static final String FIND_PRODUCTS_BY_IDS =
+            "SELECT id, name, category, brand, (price * 100)::BIGINT AS price_minor, description, version FROM marketplace.products WHERE id = ANY(?)";
+
+    // Текущее состояние товара присоединяется к изменению; для удалённых товаров оно отсутствует.
+    public static final String FIND_PRODUCT_CHANGES_SINCE =
+            "SELECT c.seq, c.product_id, c.operation, c.version, c.changed_at, " +
+            "p.id, p.name, p.category, p.brand, (p.price * 100)::BIGINT AS price_minor, p.description, " +
+            "p.version AS current_version " +
+            "FROM marketplace.product_changes c LEFT JOIN marketplace.products p ON p.id = c.product_id " +
+            "WHERE c.seq > ? ORDER BY c.seq LIMIT ?";
+
+    public static final String FIND_LATEST_PRODUCT_CHANGE_SEQ =
+            "SELECT COALESCE(MAX(seq), 0) AS seq FROM marketplace.product_changes";
+
+    public static final String FIND_PRODUCT_DESCRIPTION_BY_ID =
+            "SELECT description FROM marketplace.products WHERE id = ?";
+
+    public static final String FIND_PRODUCT_DESCRIPTIONS_BY_IDS =
+            "SELECT id, description FROM marketplace.products WHERE id = ANY(?)";
 
     // User Repository queries
     public static final String SAVE_USER =
@@ -65,4 +145,14 @@ public final class SqlQueries {
 
     public static final String FIND_ALL_USERS =
             "SELECT id, username, password, is_active FROM marketplace.users";
+
+    // Отставание реплики в миллисекундах. Полностью догнавшая основную БД реплика
+    // возвращает 0, даже если последняя применённая транзакция была давно.
+    // БД не в режиме восстановления репликой не является и возвращает NULL.
+    public static final String REPLICA_LAG_MS =
+            "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) " +
+            "END::BIGINT AS lag_ms";
 }
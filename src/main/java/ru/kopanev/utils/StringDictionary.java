@@ -0,0 +1,131 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасный словарь для строк с небольшим числом различных значений
+ * (категории, бренды).
+ * Каждой строке присваивается компактный целочисленный код, а при разборе
+ * строк из БД вместо новой копии возвращается уже сохранённый экземпляр.
+ * Это избавляет кэши от миллионов одинаковых строк.
+ *
+ * <p>Коды выдаются последовательно с нуля и никогда не переиспользуются,
+ * поэтому их можно хранить в кэшах и индексах вместо самих строк.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class StringDictionary {
+
+    /**
+     * Заголовки объекта String и его массива байт (24 + 16 байт при сжатых указателях),
+     * проверено JOL в {@code StringDictionaryFootprintTest}.
+     */
+    private static final long STRING_OVERHEAD_BYTES = 40;
+
+    private final String name;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final LongAdder savedBytes = new LongAdder();
+    private volatile String[] values = new String[16];
+    private int size;
+
+    /**
+     * Создаёт пустой словарь.
+     *
+     * @param name название словаря для логирования
+     */
+    public StringDictionary(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Возвращает канонический экземпляр строки.
+     * Если строка уже есть в словаре, возвращается сохранённый экземпляр,
+     * иначе строка добавляется в словарь.
+     *
+     * @param value строка (может быть null)
+     * @return канонический экземпляр строки или null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        Integer code = codes.get(value);
+        if (code != null) {
+            savedBytes.add(STRING_OVERHEAD_BYTES + 2L * value.length());
+            return values[code];
+        }
+        // Код получаем до чтения массива: при добавлении строки codeOf может заменить массив.
+        code = codeOf(value);
+        return values[code];
+    }
+
+    /**
+     * Возвращает код строки, добавляя её в словарь при необходимости.
+     *
+     * @param value строка (не должна быть null)
+     * @return целочисленный код строки
+     */
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = codes.get(value);
+            if (code == null) {
+                code = size;
+                String[] current = values;
+                if (code == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[code] = value;
+                values = current;
+                size++;
+                codes.put(value, code);
+                log.debug("Dictionary '{}': added '{}' with code {}", name, value, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Возвращает строку по её коду.
+     *
+     * @param code код, ранее выданный {@link #codeOf(String)}
+     * @return строка, соответствующая коду
+     * @throws ArrayIndexOutOfBoundsException если код не выдавался словарём
+     */
+    public String valueOf(int code) {
+        if (code < 0 || code >= codes.size()) {
+            throw new ArrayIndexOutOfBoundsException("Unknown code " + code + " in dictionary '" + name + "'");
+        }
+        return values[code];
+    }
+
+    /**
+     * Возвращает количество различных строк в словаре.
+     *
+     * @return размер словаря
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * Возвращает оценку памяти, сэкономленной за счёт повторного использования строк.
+     *
+     * @return суммарный размер не сохранённых дубликатов в байтах
+     */
+    public long savedBytes() {
+        return savedBytes.sum();
+    }
+}
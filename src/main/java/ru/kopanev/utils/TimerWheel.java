@@ -0,0 +1,136 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Хэшированное колесо таймеров для истечения срока элементов кэша.
+ *
+ * <p>Колесо состоит из {@code wheelSize} корзин, каждая отвечает за интервал {@code tick}.
+ * Элемент попадает в корзину по номеру тика своего срока; раз в тик фоновый поток
+ * обрабатывает только текущую корзину. Элементы, срок которых наступит через
+ * полный оборот колеса или позже, остаются в корзине до нужного оборота.
+ * Поэтому стоимость тика пропорциональна числу элементов в корзине, а не размеру кэша.</p>
+ *
+ * <p>Повторное планирование ключа не удаляет его из прежней корзины: получатель
+ * уведомления сам проверяет, действительно ли срок элемента истёк.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class TimerWheel implements AutoCloseable {
+
+    private final long tickNanos;
+    private final Map<Long, Long>[] buckets;
+    private final LongConsumer onExpire;
+    private final ScheduledExecutorService ticker;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private volatile long processedTick = -1;
+
+    /**
+     * Создаёт колесо и запускает его фоновый поток.
+     *
+     * @param tick длительность одного тика
+     * @param wheelSize количество корзин
+     * @param onExpire получатель ключей, срок которых наступил
+     * @param threadName имя фонового потока
+     */
+    public TimerWheel(Duration tick, int wheelSize, LongConsumer onExpire, String threadName) {
+        this(tick, wheelSize, onExpire, threadName, System::nanoTime);
+    }
+
+    /**
+     * Создаёт колесо с заданными часами и запускает его фоновый поток.
+     * Фоновый поток срабатывает раз в тик реального времени, а сроки сравнивает по этим часам.
+     *
+     * @param tick длительность одного тика
+     * @param wheelSize количество корзин
+     * @param onExpire получатель ключей, срок которых наступил
+     * @param threadName имя фонового потока
+     * @param nanoClock источник времени в наносекундах, как {@link System#nanoTime()}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(Duration tick, int wheelSize, LongConsumer onExpire, String threadName, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.tickNanos = Math.max(1, tick.toNanos());
+        this.buckets = new Map[Math.max(1, wheelSize)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ConcurrentHashMap<>();
+        }
+        this.onExpire = onExpire;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Планирует уведомление об истечении срока ключа.
+     *
+     * @param key ключ
+     * @param deadlineNanos момент истечения по часам колеса
+     */
+    public void schedule(long key, long deadlineNanos) {
+        // Срок в уже обработанном тике переносится на ближайший необработанный.
+        long tick = Math.max(tickOf(deadlineNanos), processedTick + 1);
+        buckets[bucketOf(tick)].merge(key, deadlineNanos, Math::max);
+    }
+
+    /**
+     * Обрабатывает корзины всех тиков, прошедших с предыдущего вызова.
+     */
+    private void advance() {
+        long now = nanoClock.getAsLong();
+        long currentTick = tickOf(now);
+        // После долгой паузы потока достаточно одного оборота: он покрывает все корзины.
+        long fromTick = Math.max(processedTick + 1, currentTick - buckets.length + 1);
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            expireBucket(buckets[bucketOf(tick)], now);
+        }
+        processedTick = currentTick;
+    }
+
+    private void expireBucket(Map<Long, Long> bucket, long now) {
+        for (Map.Entry<Long, Long> entry : bucket.entrySet()) {
+            Long key = entry.getKey();
+            Long deadline = entry.getValue();
+            // Удаление по значению не теряет срок, перенесённый параллельным schedule.
+            if (deadline - now <= 0 && bucket.remove(key, deadline)) {
+                try {
+                    onExpire.accept(key);
+                } catch (RuntimeException e) {
+                    log.warn("Timer wheel callback failed for key={}: {}", key, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long tickOf(long nanos) {
+        return Math.max(0, nanos - startNanos) / tickNanos;
+    }
+
+    private int bucketOf(long tick) {
+        return (int) (tick % buckets.length);
+    }
+
+    /**
+     * Останавливает фоновый поток колеса.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
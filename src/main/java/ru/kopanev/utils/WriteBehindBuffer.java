@@ -0,0 +1,336 @@
+package ru.kopanev.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.kopanev.model.BufferedUpdate;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.UpdateResult;
+import ru.kopanev.repository.ProductRepository;
+import ru.kopanev.resilience.AdmissionController;
+import ru.kopanev.resilience.CircuitBreaker;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Буфер отложенной записи изменений товаров (write-behind).
+ *
+ * <p>Изменение кэшированного товара не записывается в БД сразу: оно попадает в буфер,
+ * где изменения одного товара объединяются в одно — с итоговым состоянием товара
+ * и версией строки в БД, на которую они рассчитаны. Буфер разбит на сегменты
+ * ({@link ConcurrentLongMap}), поэтому изменения разных товаров не конкурируют.
+ * Фоновая задача записывает буфер пакетами ({@link ProductRepository#updateBatch(List)})
+ * через контроль допуска и выключатель, как {@link ru.kopanev.resilience.DeferredAuditQueue}.</p>
+ *
+ * <p>Порядок изменений одного товара сохраняется: у товара не больше одной записи
+ * в буфере, пакеты записывает один поток, а изменения, пришедшие во время записи,
+ * рассчитываются на только что записанную версию. Версия строки проверяется при записи,
+ * поэтому изменение не может перезаписать более новое состояние в БД.</p>
+ *
+ * <p>Согласованность при этом ослабляется:</p>
+ * <ul>
+ *   <li>этот экземпляр видит изменение сразу, а другие экземпляры и прямые читатели
+ *       БД — только после записи буфера, то есть через {@code flushIntervalMs} или позже,
+ *       если БД перегружена;</li>
+ *   <li>при аварийном завершении незаписанные изменения теряются; при штатном
+ *       завершении буфер записывается в {@link #close()};</li>
+ *   <li>если товар за это время изменил другой экземпляр или товар удалён, изменения
+ *       из буфера отбрасываются, хотя вызывающий уже получил успешный ответ;
+ *       о потерянных изменениях сообщается через {@code onLost};</li>
+ *   <li>промежуточные состояния товара не попадают ни в БД, ни в журнал изменений,
+ *       а объединённые изменения записываются одним событием аудита
+ *       с количеством изменений.</li>
+ * </ul>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Slf4j
+public class WriteBehindBuffer implements AutoCloseable {
+
+    private final ConcurrentLongMap<Pending> pending = new ConcurrentLongMap<>();
+    private final ProductRepository productRepository;
+    private final AdmissionController admission;
+    private final CircuitBreaker circuitBreaker;
+    private final LostUpdateHandler onLost;
+    private final int batchSize;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+
+    /**
+     * Создаёт буфер и запускает его фоновую запись.
+     *
+     * @param productRepository репозиторий товаров
+     * @param admission контроль допуска запросов к БД
+     * @param circuitBreaker выключатель обращений к БД
+     * @param onLost получатель товаров, изменения которых отброшены
+     * @param flushIntervalMs интервал фоновой записи в миллисекундах
+     * @param batchSize максимальное количество товаров в одном пакете
+     * @param maxPending максимальное количество товаров в буфере; сверх него изменения записываются сразу
+     */
+    public WriteBehindBuffer(ProductRepository productRepository, AdmissionController admission,
+                             CircuitBreaker circuitBreaker, LostUpdateHandler onLost, long flushIntervalMs,
+                             int batchSize, int maxPending) {
+        this.productRepository = productRepository;
+        this.admission = admission;
+        this.circuitBreaker = circuitBreaker;
+        this.onLost = onLost;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("WriteBehindBuffer initialized: flushInterval={} ms, batchSize={}, maxPending={}",
+                flushIntervalMs, batchSize, maxPending);
+    }
+
+    /**
+     * Принимает изменение товара в буфер. Версия изменения сверяется с последним изменением
+     * товара в буфере, а если его нет — с кэшированным снимком. При успехе в {@code product}
+     * записывается новая версия.
+     *
+     * @param product товар с обновлёнными данными и ожидаемой версией
+     * @param auditEvent событие аудита изменения
+     * @param cached снимок товара из кэша или null
+     * @return результат изменения или null, если изменение нужно записать в БД сразу:
+     *         товара нет ни в буфере, ни в кэше, версия кэша не совпадает или буфер заполнен
+     */
+    public UpdateResult offer(Product product, Event auditEvent, ProductSnapshot cached) {
+        UpdateResult[] result = new UpdateResult[1];
+        long[] expected = new long[1];
+        pending.compute(product.getId(), (id, current) -> {
+            long expectedVersion;
+            int updates;
+            if (current != null) {
+                long version = current.product().getVersion();
+                if (version != product.getVersion()) {
+                    result[0] = UpdateResult.conflict(version);
+                    return current;
+                }
+                expectedVersion = current.expectedVersion();
+                updates = current.updates() + 1;
+            } else {
+                // Расхождение с кэшем разрешает БД: кэш мог отстать от изменений других экземпляров.
+                if (cached == null || cached.getVersion() != product.getVersion() || pending.size() >= maxPending) {
+                    return null;
+                }
+                expectedVersion = cached.getVersion();
+                updates = 1;
+            }
+            expected[0] = expectedVersion;
+            ProductSnapshot next = ProductSnapshot.from(product).toBuilder()
+                    .version(product.getVersion() + 1)
+                    .build();
+            result[0] = UpdateResult.updated(next.getVersion());
+            return new Pending(next, expectedVersion, auditEvent, updates);
+        });
+
+        if (result[0] != null && result[0].isUpdated()) {
+            product.setVersion(result[0].getVersion());
+            accepted.increment();
+            if (result[0].getVersion() - 1 > expected[0]) {
+                coalesced.increment();
+            }
+            log.debug("Buffered product update: id={}, version={}", product.getId(), product.getVersion());
+        }
+        return result[0];
+    }
+
+    /**
+     * Возвращает состояние товара с ещё не записанными изменениями.
+     *
+     * @param id идентификатор товара
+     * @return снимок товара или null, если изменений товара в буфере нет
+     */
+    public ProductSnapshot get(long id) {
+        Pending entry = pending.get(id);
+        return entry == null ? null : entry.product();
+    }
+
+    /**
+     * Отбрасывает незаписанные изменения товара, например после его удаления.
+     *
+     * @param id идентификатор товара
+     */
+    public void discard(long id) {
+        if (pending.remove(id) != null) {
+            log.debug("Discarded buffered updates of product {}", id);
+        }
+    }
+
+    /**
+     * @return количество товаров с незаписанными изменениями
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Записывает товары, находящиеся в буфере на момент вызова, пока контроль допуска
+     * это разрешает. Изменения, пришедшие во время записи, остаются до следующего вызова.
+     */
+    void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Pending> entries = pending.values();
+            for (int from = 0; from < entries.size(); from += batchSize) {
+                if (!writeAdmitted(entries.subList(from, Math.min(entries.size(), from + batchSize)))) {
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает показатели буфера в виде метрик с префиксом {@code write-behind}.
+     *
+     * @return метрики в постоянном порядке
+     */
+    public Map<String, Number> toMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("write-behind.pending", pending.size());
+        metrics.put("write-behind.accepted", accepted.sum());
+        metrics.put("write-behind.coalesced", coalesced.sum());
+        metrics.put("write-behind.flushed", flushed.sum());
+        metrics.put("write-behind.batches", batches.sum());
+        metrics.put("write-behind.lost", lost.sum());
+        return metrics;
+    }
+
+    /**
+     * Останавливает фоновую запись и записывает оставшиеся изменения напрямую,
+     * без контроля допуска.
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flushLock.lock();
+        try {
+            List<Pending> entries = pending.values();
+            for (int from = 0; from < entries.size(); from += batchSize) {
+                List<Pending> batch = entries.subList(from, Math.min(entries.size(), from + batchSize));
+                try {
+                    complete(batch, write(batch));
+                } catch (RuntimeException e) {
+                    log.warn("Buffered product updates lost on shutdown: {}", pending.size());
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает пакет через контроль допуска и выключатель.
+     *
+     * @return true, если пакет записан и можно продолжать
+     */
+    private boolean writeAdmitted(List<Pending> batch) {
+        if (!admission.tryAcquire()) {
+            return false;
+        }
+        boolean overloaded = false;
+        try {
+            boolean[] applied = circuitBreaker.execute("product.write-behind", () -> write(batch), () -> null);
+            if (applied == null) {
+                return false;
+            }
+            complete(batch, applied);
+            return true;
+        } catch (RuntimeException e) {
+            overloaded = AdmissionController.isOverload(e);
+            log.warn("Failed to flush buffered product updates, will retry: {}", e.getMessage());
+            return false;
+        } finally {
+            admission.release(overloaded);
+        }
+    }
+
+    private boolean[] write(List<Pending> batch) {
+        boolean[] applied = productRepository.updateBatch(batch.stream().map(Pending::toUpdate).toList());
+        batches.increment();
+        return applied;
+    }
+
+    /**
+     * Убирает записанные изменения из буфера. Если за время записи товар снова изменили,
+     * запись остаётся, но рассчитывается уже на записанную версию. Изменения, не применённые
+     * из-за расхождения версий, отбрасываются вместе с более новыми изменениями товара.
+     */
+    private void complete(List<Pending> batch, boolean[] applied) {
+        for (int i = 0; i < batch.size(); i++) {
+            Pending written = batch.get(i);
+            long id = written.product().getId();
+            if (applied[i]) {
+                flushed.increment();
+                pending.compute(id, (key, current) -> current == written || current == null ? null
+                        : new Pending(current.product(), written.product().getVersion(), current.auditEvent(),
+                        current.updates() - written.updates()));
+            } else {
+                pending.remove(id);
+                lost.increment();
+                log.warn("Buffered updates of product {} lost: version {} is no longer current",
+                        id, written.expectedVersion());
+                onLost.onLost(id, written.expectedVersion());
+            }
+        }
+    }
+
+    /**
+     * Получатель товаров, изменения которых отброшены из-за расхождения версий.
+     */
+    @FunctionalInterface
+    public interface LostUpdateHandler {
+
+        /**
+         * Вызывается после того, как изменения товара убраны из буфера.
+         * Версии новее {@code expectedVersion}, выданные буфером, в БД не попали.
+         *
+         * @param id идентификатор товара
+         * @param expectedVersion версия строки, на которую были рассчитаны изменения;
+         *                        в БД товар уже в другой версии или удалён
+         */
+        void onLost(long id, long expectedVersion);
+    }
+
+    /**
+     * Незаписанные изменения товара.
+     *
+     * @param product итоговое состояние товара с версией, которую он получит в БД
+     * @param expectedVersion версия строки в БД, на которую рассчитаны изменения
+     * @param auditEvent событие аудита последнего изменения
+     * @param updates количество объединённых изменений
+     */
+    private record Pending(ProductSnapshot product, long expectedVersion, Event auditEvent, int updates) {
+
+        BufferedUpdate toUpdate() {
+            String details = updates > 1
+                    ? auditEvent.getDetails() + " (объединено изменений: " + updates + ")"
+                    : auditEvent.getDetails();
+            return new BufferedUpdate(product, expectedVersion,
+                    new Event(null, auditEvent.getUsername(), auditEvent.getAction(), details,
+                            auditEvent.getTimestamp()));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ru.kopanev.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.enums.ReplicaSelection;
+import ru.kopanev.transaction.TransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет маршрутизацию чтения на основной БД PostgreSQL и двух потоковых репликах:
+ * распределение по кругу, переход на основную БД при отставании реплики
+ * и исключение БД, которая репликой не является.
+ *
+ * <p>Какой пул обслужил запрос, определяется по {@code application_name} соединения.
+ * Без Docker тест пропускается.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ReplicaRoutingDataSourceIntegrationTest {
+
+    private static final String IMAGE = "postgres:16-alpine";
+    private static final String PRIMARY_NAME = "primary";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final long LAG_CHECK_INTERVAL_MS = 100;
+
+    /**
+     * Основная БД разрешает подключения репликации по паролю.
+     */
+    private static final String PRIMARY_SCRIPT =
+            "echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\"\n";
+
+    /**
+     * Реплика копирует основную БД через pg_basebackup и запускается в режиме горячего резерва.
+     */
+    private static final String REPLICA_SCRIPT = "until su-exec postgres pg_basebackup -h " + PRIMARY_NAME
+            + " -U %s -D \"$PGDATA\" -R -X stream; do rm -rf \"$PGDATA\"/*; sleep 1; done; "
+            + "chmod 700 \"$PGDATA\"; exec su-exec postgres postgres";
+
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer PRIMARY = new PostgreSQLContainer(IMAGE)
+            .withNetwork(NETWORK)
+            .withNetworkAliases(PRIMARY_NAME)
+            .withCopyToContainer(Transferable.of(PRIMARY_SCRIPT), "/docker-entrypoint-initdb.d/10-replication.sh");
+
+    @Container
+    private static final GenericContainer<?> FIRST_REPLICA = replica();
+
+    @Container
+    private static final GenericContainer<?> SECOND_REPLICA = replica();
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void closeResources() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    @Test
+    void roundRobinAlternatesBetweenReplicas() {
+        DataSource router = router(1_000,
+                pool("replica-1", url(FIRST_REPLICA)), pool("replica-2", url(SECOND_REPLICA)));
+        await("both replicas serve reads",
+                () -> Set.of("replica-1", "replica-2").equals(Set.copyOf(reads(router, 4))));
+
+        List<String> served = reads(router, 4);
+
+        assertNotEquals(served.get(0), served.get(1));
+        assertEquals(served.subList(0, 2), served.subList(2, 4));
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimaryUntilItCatchesUp() {
+        DataSource router = router(500, pool("replica-1", url(FIRST_REPLICA)));
+        await("replica serves reads", () -> "replica-1".equals(read(router)));
+
+        execute(url(FIRST_REPLICA), "SELECT pg_wal_replay_pause()");
+        try {
+            execute(PRIMARY.getJdbcUrl(), "CREATE TABLE IF NOT EXISTS lag_probe (id INT)");
+            execute(PRIMARY.getJdbcUrl(), "INSERT INTO lag_probe VALUES (1)");
+
+            await("reads fall back to primary", () -> PRIMARY_NAME.equals(read(router)));
+        } finally {
+            execute(url(FIRST_REPLICA), "SELECT pg_wal_replay_resume()");
+        }
+
+        await("caught-up replica serves reads again", () -> "replica-1".equals(read(router)));
+    }
+
+    @Test
+    void databaseNotInRecoveryIsNeverUsedAsReplica() {
+        DataSource router = router(1_000,
+                pool("standalone", PRIMARY.getJdbcUrl()), pool("replica-1", url(FIRST_REPLICA)));
+        await("replica serves reads", () -> "replica-1".equals(read(router)));
+
+        assertEquals(List.of("replica-1"), reads(router, 10).stream().distinct().toList());
+    }
+
+    private static GenericContainer<?> replica() {
+        return new GenericContainer<>(IMAGE)
+                .withNetwork(NETWORK)
+                .withEnv("PGPASSWORD", PRIMARY.getPassword())
+                .withExposedPorts(5432)
+                .withCommand("bash", "-c", REPLICA_SCRIPT.formatted(PRIMARY.getUsername()))
+                .dependsOn(PRIMARY)
+                .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*\\n", 1));
+    }
+
+    private DataSource router(long maxLagMs, HikariDataSource... replicas) {
+        HikariDataSource primary = pool(PRIMARY_NAME, PRIMARY.getJdbcUrl());
+        Map<PoolType, DataSource> pools = new EnumMap<>(PoolType.class);
+        for (PoolType type : PoolType.values()) {
+            pools.put(type, primary);
+        }
+        ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(new TransactionManager(pools), primary,
+                List.of(replicas), new QueryTimeoutStats(), ReplicaSelection.ROUND_ROBIN, maxLagMs,
+                LAG_CHECK_INTERVAL_MS);
+        resources.add(router);
+        return router;
+    }
+
+    private HikariDataSource pool(String name, String url) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(PRIMARY.getUsername());
+        config.setPassword(PRIMARY.getPassword());
+        config.setMaximumPoolSize(2);
+        config.setMinimumIdle(0);
+        config.addDataSourceProperty("ApplicationName", name);
+        HikariDataSource pool = new HikariDataSource(config);
+        resources.add(pool);
+        return pool;
+    }
+
+    private static String url(GenericContainer<?> replica) {
+        return "jdbc:postgresql://" + replica.getHost() + ":" + replica.getMappedPort(5432) + "/"
+                + PRIMARY.getDatabaseName();
+    }
+
+    private static List<String> reads(DataSource router, int count) {
+        List<String> served = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            served.add(read(router));
+        }
+        return served;
+    }
+
+    /**
+     * Выполняет чтение через маршрутизатор.
+     *
+     * @return имя пула, обслужившего чтение
+     */
+    private static String read(DataSource router) {
+        try (Connection connection = router.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT current_setting('application_name')")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void execute(String url, String sql) {
+        try (Connection connection = DriverManager.getConnection(url, PRIMARY.getUsername(), PRIMARY.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(String condition, BooleanSupplier check) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!check.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "timed out waiting for: " + condition);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("interrupted waiting for: " + condition, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.repository.async.AsyncProductRepository;
+import ru.kopanev.repository.async.RepositoryExecutor;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет прогрев кэша: загрузку только отсутствующих горячих товаров, подсчёт
+ * покрытия и отмену пакетов, не уложившихся в бюджет времени.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class CacheWarmerTest {
+
+    private static final Map<Long, Long> ACCESS_COUNTS = Map.of(1L, 50L, 2L, 40L, 3L, 30L, 4L, 20L, 5L, 10L, 6L, 1L);
+
+    @Test
+    void loadsMissingHotProductsAndReportsCoverage() {
+        List<Collection<Long>> requested = new CopyOnWriteArrayList<>();
+        InMemoryProductRepository repository = new InMemoryProductRepository() {
+            @Override
+            public List<ProductSnapshot> findByIds(Collection<Long> ids) {
+                requested.add(List.copyOf(ids));
+                return super.findByIds(ids);
+            }
+        };
+        ProductCache cache = newCache(repository);
+        try (RepositoryExecutor executor = newExecutor()) {
+            CacheWarmer warmer = new CacheWarmer(cache, new AsyncProductRepository(repository, executor), 2);
+
+            int warm = warmer.warmUp(5, Duration.ofSeconds(5));
+
+            assertEquals(5, warm);
+            assertEquals(Set.of(List.of(2L, 3L), List.of(4L, 5L)), Set.copyOf(requested));
+            assertFalse(cache.contains(6L));
+        }
+    }
+
+    @Test
+    void batchesStillRunningWhenBudgetExpiresAreCancelled() throws InterruptedException {
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InMemoryProductRepository repository = new InMemoryProductRepository() {
+            @Override
+            public List<ProductSnapshot> findByIds(Collection<Long> ids) {
+                if (ids.contains(5L)) {
+                    try {
+                        never.await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("cancelled", e);
+                    }
+                }
+                return super.findByIds(ids);
+            }
+        };
+        ProductCache cache = newCache(repository);
+        try (RepositoryExecutor executor = newExecutor()) {
+            CacheWarmer warmer = new CacheWarmer(cache, new AsyncProductRepository(repository, executor), 2);
+
+            long start = System.nanoTime();
+            int warm = warmer.warmUp(5, Duration.ofMillis(200));
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(3, warm);
+            assertTrue(elapsedMs < 2_000, "warm-up must stop at its budget, took " + elapsedMs + " ms");
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS), "the late batch must be interrupted");
+            assertFalse(cache.contains(4L));
+            assertFalse(cache.contains(5L));
+        }
+    }
+
+    /**
+     * Кэш с историей обращений, в котором самый горячий товар уже восстановлен из снимка.
+     */
+    private static ProductCache newCache(InMemoryProductRepository repository) {
+        for (long id = 1; id <= 6; id++) {
+            repository.put(new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", 100, "Описание", 1));
+        }
+        ProductCache cache = new ProductCache();
+        cache.restoreAccessCounts(ACCESS_COUNTS);
+        cache.put(repository.get(1));
+        return cache;
+    }
+
+    private static RepositoryExecutor newExecutor() {
+        return new RepositoryExecutor(Map.of(PoolType.CATALOG_READ, 2), 16);
+    }
+}
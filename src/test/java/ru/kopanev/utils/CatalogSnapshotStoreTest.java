@@ -0,0 +1,121 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет восстановление снимка каталога: сверку по журналу изменений после записи снимка
+ * и холодный старт при повреждённом файле.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class CatalogSnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoreSkipsProductsChangedAfterSave() throws IOException {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        for (long id = 1; id <= 3; id++) {
+            repository.put(product(id, 1));
+        }
+        Path file = directory.resolve("catalog.snapshot");
+        ProductCache savedCache = new ProductCache();
+        CatalogSnapshot savedCatalog = new CatalogSnapshot();
+        savedCatalog.update(repository.findAll());
+        repository.findByIds(List.of(1L, 2L, 3L)).forEach(savedCache::put);
+        newStore(file, savedCatalog, savedCache, repository).save();
+
+        repository.put(product(2, 2));
+        repository.remove(3);
+
+        ProductCache cache = new ProductCache();
+        CatalogSnapshot catalog = new CatalogSnapshot();
+        newStore(file, catalog, cache, repository).restore();
+
+        assertEquals(List.of(1L), cache.values().stream().map(ProductSnapshot::getId).toList());
+        assertEquals(List.of(1L), catalog.find(product -> true).orElseThrow().getValue().stream()
+                .map(ProductSummary::getId).toList());
+    }
+
+    @Test
+    void snapshotWithoutChangeLogPositionRestoresAccessCountsOnly() throws IOException {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 1));
+        Path file = directory.resolve("catalog.snapshot");
+        ProductCache savedCache = new ProductCache();
+        savedCache.put(product(1, 1));
+        savedCache.get(1L);
+        repository.failWith(new IllegalStateException("database unavailable"));
+        newStore(file, new CatalogSnapshot(), savedCache, repository).save();
+        repository.failWith(null);
+
+        ProductCache cache = new ProductCache();
+        newStore(file, new CatalogSnapshot(), cache, repository).restore();
+
+        assertEquals(0, cache.size());
+        assertEquals(Map.of(1L, 1L), cache.getAccessCounts());
+    }
+
+    @Test
+    void corruptedRecordCountStartsCold() throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x50435331);
+            out.writeInt(3);
+            out.writeLong(0);
+            out.writeLong(-1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertStartsCold(file);
+    }
+
+    @Test
+    void truncatedSnapshotStartsCold() throws IOException {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 1));
+        Path file = directory.resolve("catalog.snapshot");
+        ProductCache savedCache = new ProductCache();
+        savedCache.put(product(1, 1));
+        newStore(file, new CatalogSnapshot(), savedCache, repository).save();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 12));
+
+        assertStartsCold(file);
+    }
+
+    private static void assertStartsCold(Path file) {
+        ProductCache cache = new ProductCache();
+        CatalogSnapshot catalog = new CatalogSnapshot();
+        newStore(file, catalog, cache, new InMemoryProductRepository()).restore();
+
+        assertEquals(0, cache.size());
+        assertTrue(catalog.find(product -> true).isEmpty());
+    }
+
+    private static CatalogSnapshotStore newStore(Path file, CatalogSnapshot catalog, ProductCache cache,
+                                                 InMemoryProductRepository repository) {
+        return new CatalogSnapshotStore(file, catalog, cache, repository,
+                new StringDictionary("categories"), new StringDictionary("brands"));
+    }
+
+    private static ProductSnapshot product(long id, long version) {
+        return new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", 100 * id, "Описание " + id, version);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Проверяет кэш описаний: отсутствие описания кэшируется маркером нулевого веса.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class DescriptionCacheTest {
+
+    @Test
+    void missingDescriptionIsCachedAsZeroWeightMarker() {
+        DescriptionCache cache = new DescriptionCache(1024);
+
+        cache.put(1L, null);
+        cache.put(2L, "Описание");
+
+        assertSame(DescriptionCache.NO_DESCRIPTION, cache.get(1L));
+        assertNull(cache.get(3L));
+        assertEquals(DescriptionCache.weigh("Описание"), cache.weight());
+    }
+
+    @Test
+    void emptyDescriptionIsNotMistakenForMarker() {
+        DescriptionCache cache = new DescriptionCache(1024);
+
+        cache.put(1L, "");
+
+        assertEquals("", cache.get(1L));
+        assertEquals(DescriptionCache.weigh(""), cache.weight());
+    }
+}
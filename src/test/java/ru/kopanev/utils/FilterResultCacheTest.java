@@ -0,0 +1,103 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.model.FilterCriteria;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверяет точечную инвалидацию результатов фильтров: изменение товара удаляет
+ * только результаты, в которые он входил, и результаты, под условия которых попадает его новое состояние.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class FilterResultCacheTest {
+
+    private static final FilterCriteria PHONES = FilterCriteria.category("Телефоны");
+    private static final FilterCriteria LAPTOPS = FilterCriteria.category("Ноутбуки");
+    private static final FilterCriteria ACME = FilterCriteria.brand("Акме");
+    private static final FilterCriteria CHEAP = FilterCriteria.priceRange(0, 10_000);
+
+    private final FilterResultCache cache = new FilterResultCache(16, Duration.ZERO);
+
+    @Test
+    void changeDropsResultsContainingProduct() {
+        fill();
+
+        cache.onProductChanged(1, product(1, "Телефоны", "Бета", 50_000));
+
+        assertNull(cache.get(PHONES));
+        assertNull(cache.get(CHEAP));
+        assertNotNull(cache.get(LAPTOPS));
+        assertNotNull(cache.get(ACME));
+    }
+
+    @Test
+    void changeDropsResultsNewStateMatches() {
+        fill();
+
+        // Товар 2 переходит в категорию и бренд, в результатах которых его ещё нет.
+        cache.onProductChanged(2, product(2, "Телефоны", "Акме", 50_000));
+
+        assertNull(cache.get(PHONES));
+        assertNull(cache.get(ACME));
+        assertNull(cache.get(LAPTOPS), "product 2 was in the laptops result");
+        assertNotNull(cache.get(CHEAP));
+    }
+
+    @Test
+    void deletionDropsOnlyResultsContainingProduct() {
+        fill();
+
+        cache.onProductChanged(3, null);
+
+        assertNull(cache.get(ACME));
+        assertNull(cache.get(LAPTOPS));
+        assertNotNull(cache.get(PHONES));
+        assertNotNull(cache.get(CHEAP));
+    }
+
+    @Test
+    void resultOfQueryOverlappingChangeIsDiscarded() {
+        long generation = cache.generation();
+        cache.onProductChanged(1, product(1, "Телефоны", "Бета", 5_000));
+
+        cache.put(PHONES, List.of(summary(1, "Телефоны", "Бета", 1_000)), generation);
+
+        assertNull(cache.get(PHONES));
+    }
+
+    @Test
+    void criteriaAreNormalized() {
+        fill();
+
+        assertNotNull(cache.get(FilterCriteria.category(" Телефоны ")));
+    }
+
+    /**
+     * Товар 1 — дешёвый телефон, товар 2 — ноутбук, товар 3 — ноутбук бренда «Акме».
+     */
+    private void fill() {
+        long generation = cache.generation();
+        cache.put(PHONES, List.of(summary(1, "Телефоны", "Бета", 1_000)), generation);
+        cache.put(LAPTOPS, List.of(summary(2, "Ноутбуки", "Бета", 80_000), summary(3, "Ноутбуки", "Акме", 90_000)),
+                generation);
+        cache.put(ACME, List.of(summary(3, "Ноутбуки", "Акме", 90_000)), generation);
+        cache.put(CHEAP, List.of(summary(1, "Телефоны", "Бета", 1_000)), generation);
+    }
+
+    private static ProductSnapshot product(long id, String category, String brand, long price) {
+        return new ProductSnapshot(id, "Товар " + id, category, brand, price, "Описание", 2);
+    }
+
+    private static ProductSummary summary(long id, String category, String brand, long price) {
+        return new ProductSummary(id, "Товар " + id, category, brand, price, 1);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.model.HotProduct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет поиск самых запрашиваемых товаров по выборке обращений
+ * и уменьшение счётчиков вне потока, учитывающего обращения.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class HeavyHittersTest {
+
+    @Test
+    void sampledCountsKeepHotProductsOnTop() {
+        HeavyHitters hitters = new HeavyHitters(8, 1024, Runnable::run);
+        Set<Long> hot = Set.of(1L, 2L, 3L, 4L, 5L);
+        for (int round = 0; round < 2_000; round++) {
+            for (long id : hot) {
+                hitters.record(id);
+            }
+            hitters.record(100 + round % 500);
+        }
+
+        Set<Long> top = hitters.top(5).stream().map(HotProduct::getProductId).collect(Collectors.toSet());
+
+        assertEquals(hot, top);
+        assertTrue(hitters.estimate(1) > hitters.estimate(150));
+    }
+
+    @Test
+    void agingIsScheduledOnceAndRunsOutsideRecord() {
+        List<Runnable> scheduled = new ArrayList<>();
+        HeavyHitters hitters = new HeavyHitters(4, 16, scheduled::add);
+        for (int i = 0; i < 10_000; i++) {
+            hitters.record(1);
+        }
+        assertEquals(1, scheduled.size());
+        long before = hitters.estimate(1);
+
+        scheduled.get(0).run();
+
+        assertEquals(before / 8 / 2 * 8, hitters.estimate(1));
+        for (int i = 0; i < 10_000; i++) {
+            hitters.record(1);
+        }
+        assertEquals(2, scheduled.size());
+    }
+}
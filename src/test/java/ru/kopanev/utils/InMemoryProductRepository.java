@@ -0,0 +1,224 @@
+package ru.kopanev.utils;
+
+import ru.kopanev.enums.ChangeOperation;
+import ru.kopanev.model.BufferedUpdate;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductChange;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.ProductSummary;
+import ru.kopanev.model.UpdateResult;
+import ru.kopanev.repository.ProductRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Репозиторий товаров в памяти для тестов: хранит товары, события аудита и журнал изменений
+ * и проверяет версии строк так же, как запросы к БД.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class InMemoryProductRepository implements ProductRepository {
+
+    private final Map<Long, ProductSnapshot> products = new LinkedHashMap<>();
+    private final List<ProductChange> changes = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+    private long nextId = 1;
+    private int batches;
+    private RuntimeException failure;
+
+    /**
+     * Добавляет товар в «БД» как внешнее изменение, записывая его в журнал.
+     */
+    synchronized void put(ProductSnapshot product) {
+        products.put(product.getId(), product);
+        nextId = Math.max(nextId, product.getId() + 1);
+        log(product.getId(), ChangeOperation.UPDATE, product.getVersion());
+    }
+
+    /**
+     * Удаляет товар как внешнее изменение, записывая удаление в журнал.
+     */
+    synchronized void remove(long id) {
+        ProductSnapshot removed = products.remove(id);
+        if (removed != null) {
+            log(id, ChangeOperation.DELETE, removed.getVersion());
+        }
+    }
+
+    /**
+     * Заставляет следующие обращения завершаться указанной ошибкой (null — снова работать).
+     */
+    synchronized void failWith(RuntimeException failure) {
+        this.failure = failure;
+    }
+
+    synchronized ProductSnapshot get(long id) {
+        return products.get(id);
+    }
+
+    synchronized List<Event> events() {
+        return List.copyOf(events);
+    }
+
+    synchronized int batches() {
+        return batches;
+    }
+
+    @Override
+    public synchronized void save(Product product, Event auditEvent) {
+        check();
+        product.setId(nextId++);
+        product.setVersion(1);
+        products.put(product.getId(), ProductSnapshot.from(product));
+        events.add(auditEvent);
+        log(product.getId(), ChangeOperation.INSERT, 1);
+    }
+
+    @Override
+    public synchronized UpdateResult update(Product product, Event auditEvent) {
+        check();
+        ProductSnapshot current = products.get(product.getId());
+        if (current == null) {
+            return UpdateResult.notFound();
+        }
+        if (current.getVersion() != product.getVersion()) {
+            return UpdateResult.conflict(current.getVersion());
+        }
+        product.setVersion(product.getVersion() + 1);
+        products.put(product.getId(), ProductSnapshot.from(product));
+        events.add(auditEvent);
+        log(product.getId(), ChangeOperation.UPDATE, product.getVersion());
+        return UpdateResult.updated(product.getVersion());
+    }
+
+    @Override
+    public synchronized boolean[] updateBatch(List<BufferedUpdate> updates) {
+        check();
+        batches++;
+        boolean[] applied = new boolean[updates.size()];
+        for (int i = 0; i < updates.size(); i++) {
+            BufferedUpdate update = updates.get(i);
+            ProductSnapshot current = products.get(update.getProduct().getId());
+            if (current != null && current.getVersion() == update.getExpectedVersion()) {
+                products.put(current.getId(), update.getProduct());
+                events.add(update.getAuditEvent());
+                log(current.getId(), ChangeOperation.UPDATE, update.getProduct().getVersion());
+                applied[i] = true;
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public synchronized Optional<ProductSnapshot> delete(Long id, Event auditEvent) {
+        check();
+        ProductSnapshot removed = products.remove(id);
+        if (removed != null) {
+            events.add(auditEvent);
+            log(id, ChangeOperation.DELETE, removed.getVersion());
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    @Override
+    public synchronized Optional<ProductSnapshot> findById(Long id) {
+        check();
+        return Optional.ofNullable(products.get(id));
+    }
+
+    @Override
+    public synchronized List<ProductSnapshot> findByIds(Collection<Long> ids) {
+        check();
+        return ids.stream().map(products::get).filter(product -> product != null).toList();
+    }
+
+    @Override
+    public synchronized Optional<String> findDescriptionById(Long id) {
+        check();
+        return Optional.ofNullable(products.get(id)).map(ProductSnapshot::getDescription);
+    }
+
+    @Override
+    public synchronized Map<Long, String> findDescriptionsByIds(Collection<Long> ids) {
+        check();
+        Map<Long, String> result = new HashMap<>();
+        findByIds(ids).stream()
+                .filter(product -> product.getDescription() != null)
+                .forEach(product -> result.put(product.getId(), product.getDescription()));
+        return result;
+    }
+
+    @Override
+    public synchronized List<ProductSummary> findAll() {
+        check();
+        return products.values().stream().map(InMemoryProductRepository::summary).toList();
+    }
+
+    @Override
+    public synchronized List<ProductSummary> findByCategory(String category) {
+        check();
+        return products.values().stream()
+                .filter(product -> category.equals(product.getCategory()))
+                .map(InMemoryProductRepository::summary)
+                .toList();
+    }
+
+    @Override
+    public synchronized List<ProductSummary> findByBrand(String brand) {
+        check();
+        return products.values().stream()
+                .filter(product -> brand.equals(product.getBrand()))
+                .map(InMemoryProductRepository::summary)
+                .toList();
+    }
+
+    @Override
+    public synchronized List<ProductSummary> findByPriceRange(long minPrice, long maxPrice) {
+        check();
+        return products.values().stream()
+                .filter(product -> product.getPrice() >= minPrice && product.getPrice() <= maxPrice)
+                .map(InMemoryProductRepository::summary)
+                .toList();
+    }
+
+    @Override
+    public synchronized List<ProductChange> findChangesSince(long afterSeq, int limit) {
+        check();
+        return changes.stream()
+                .filter(change -> change.getSeq() > afterSeq)
+                .limit(limit)
+                .map(change -> new ProductChange(change.getSeq(), change.getProductId(), change.getOperation(),
+                        change.getVersion(), change.getChangedAt(), products.get(change.getProductId())))
+                .toList();
+    }
+
+    @Override
+    public synchronized long findLatestChangeSeq() {
+        check();
+        return changes.size();
+    }
+
+    private void check() {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void log(long id, ChangeOperation operation, long version) {
+        changes.add(new ProductChange(changes.size() + 1, id, operation, version, LocalDateTime.now(), null));
+    }
+
+    private static ProductSummary summary(ProductSnapshot product) {
+        return new ProductSummary(product.getId(), product.getName(), product.getCategory(), product.getBrand(),
+                product.getPrice(), product.getVersion());
+    }
+}
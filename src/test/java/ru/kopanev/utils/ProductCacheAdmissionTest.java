@@ -0,0 +1,77 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.model.ProductSnapshot;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет допуск в кэш товаров, которые не запрашивали напрямую (например, из списков):
+ * просмотр длинного списка не вытесняет горячие товары.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class ProductCacheAdmissionTest {
+
+    private static final int HOT_PRODUCTS = 10;
+    private static final int HOT_READS = 1_000;
+    private static final long ENTRY_WEIGHT = ProductCache.weigh(product(1));
+
+    @Test
+    void anyProductIsAdmittedWhileCacheHasRoom() {
+        try (ProductCache cache = new ProductCache(HOT_PRODUCTS * ENTRY_WEIGHT)) {
+            cache.put(product(1));
+
+            assertTrue(cache.admits(100));
+            assertFalse(cache.admits(1), "a cached product needs no prefetch");
+        }
+    }
+
+    @Test
+    void scanningLongListDoesNotFlushHotProducts() {
+        try (ProductCache cache = newFullCacheOfHotProducts()) {
+            // Так список загружается в кэш фоновой предвыборкой.
+            for (long id = 1_000; id < 2_000; id++) {
+                if (cache.admits(id)) {
+                    cache.put(product(id));
+                }
+            }
+
+            for (long id = 1; id <= HOT_PRODUCTS; id++) {
+                assertTrue(cache.contains(id), "hot product " + id + " was flushed by the scan");
+            }
+            assertFalse(cache.contains(1_000L));
+        }
+    }
+
+    @Test
+    void productRequestedMoreOftenThanVictimIsAdmitted() {
+        try (ProductCache cache = newFullCacheOfHotProducts()) {
+            for (int i = 0; i < 2 * HOT_READS; i++) {
+                cache.getIfPresent(500);
+            }
+
+            assertTrue(cache.admits(500));
+        }
+    }
+
+    /**
+     * Кэш, заполненный товарами, к каждому из которых обращались {@link #HOT_READS} раз.
+     */
+    private static ProductCache newFullCacheOfHotProducts() {
+        ProductCache cache = new ProductCache(HOT_PRODUCTS * ENTRY_WEIGHT);
+        for (long id = 1; id <= HOT_PRODUCTS; id++) {
+            cache.put(product(id));
+            for (int i = 0; i < HOT_READS; i++) {
+                cache.getIfPresent(id);
+            }
+        }
+        return cache;
+    }
+
+    private static ProductSnapshot product(long id) {
+        return new ProductSnapshot(id, "Товар", "Категория", "Бренд", 100, "Описание", 1);
+    }
+}
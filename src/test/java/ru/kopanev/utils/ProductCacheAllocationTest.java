@@ -0,0 +1,61 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.model.ProductSnapshot;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Проверяет по счётчику выделенной потоком памяти, что попадание в кэш товаров
+ * через {@link ProductCache#getIfPresent(long)} не выделяет память.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class ProductCacheAllocationTest {
+
+    private static final int PRODUCTS = 1_000;
+    private static final int WARMUP_HITS = 200_000;
+    private static final int MEASURED_HITS = 1_000_000;
+
+    /**
+     * Допуск на служебные выделения самой JVM за время замера (например, при компиляции).
+     */
+    private static final long TOLERANCE_BYTES = 16 * 1024;
+
+    @Test
+    void cacheHitDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "thread allocation counter is not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counter is not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        try (ProductCache cache = new ProductCache()) {
+            for (long id = 1; id <= PRODUCTS; id++) {
+                cache.put(new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", 100 * id, null, 1));
+            }
+            // Прогрев: горячий путь должен быть скомпилирован до замера.
+            hit(cache, WARMUP_HITS);
+
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            hit(cache, MEASURED_HITS);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            assertTrue(allocated < TOLERANCE_BYTES, () -> String.format(
+                    "%d cache hits allocated %d bytes (%.3f bytes per hit)",
+                    MEASURED_HITS, allocated, (double) allocated / MEASURED_HITS));
+        }
+    }
+
+    private static void hit(ProductCache cache, int hits) {
+        for (int i = 0; i < hits; i++) {
+            assertNotNull(cache.getIfPresent(1 + i % PRODUCTS));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.model.ProductSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что читатель, загрузивший товар до его изменения или удаления,
+ * не возвращает в кэш устаревшую версию после инвалидации.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class ProductCacheConcurrencyTest {
+
+    private static final int PRODUCTS = 16;
+    private static final int READERS = 4;
+    private static final int WRITERS = 2;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void staleLoadAfterInvalidationIsRejected() {
+        ProductCache cache = new ProductCache();
+        ProductSnapshot loaded = product(1, 1);
+        cache.put(loaded);
+
+        cache.invalidate(1L);
+
+        assertFalse(cache.put(loaded));
+        assertFalse(cache.contains(1L));
+        assertTrue(cache.put(product(1, 2)));
+    }
+
+    @Test
+    void staleLoadAfterConflictIsRejected() {
+        ProductCache cache = new ProductCache();
+        cache.invalidate(1, 3);
+
+        assertFalse(cache.put(product(1, 2)));
+        assertTrue(cache.put(product(1, 3)));
+    }
+
+    @Test
+    void unwrittenVersionDoesNotRaiseTheFloor() {
+        ProductCache cache = new ProductCache();
+        // Версия 4 выдана буфером отложенной записи и в БД не попала; в БД версия 2 другого экземпляра.
+        cache.put(product(1, 4));
+
+        cache.invalidateUnwritten(1, 2);
+
+        assertFalse(cache.put(product(1, 1)));
+        assertTrue(cache.put(product(1, 2)));
+    }
+
+    @Test
+    void deletedProductIsNotCachedAgain() {
+        ProductCache cache = new ProductCache();
+        cache.put(product(1, 1));
+
+        cache.invalidateDeleted(1);
+
+        assertFalse(cache.put(product(1, 1)));
+        assertFalse(cache.update(product(1, 5)));
+        assertFalse(cache.contains(1L));
+    }
+
+    @Test
+    void concurrentLoadsNeverLeaveStaleVersions() throws InterruptedException {
+        AtomicReferenceArray<ProductSnapshot> database = new AtomicReferenceArray<>(PRODUCTS + 1);
+        for (int id = 1; id <= PRODUCTS; id++) {
+            database.set(id, product(id, 1));
+        }
+
+        ProductCache cache = new ProductCache();
+        run(cache, database);
+
+        for (int id = 1; id <= PRODUCTS; id++) {
+            ProductSnapshot current = database.get(id);
+            ProductSnapshot cached = cache.get((long) id).orElse(null);
+            if (current == null) {
+                assertEquals(null, cached, "deleted product " + id + " is cached");
+            } else if (cached != null) {
+                assertEquals(current.getVersion(), cached.getVersion(), "stale version of product " + id);
+            }
+        }
+    }
+
+    /**
+     * Читатели при промахе загружают товар из «БД» и кладут в кэш с задержкой,
+     * а писатели тем временем меняют или удаляют товар и инвалидируют кэш, как слушатель изменений.
+     */
+    private static void run(ProductCache cache, AtomicReferenceArray<ProductSnapshot> database)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        for (int i = 0; i < READERS; i++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (writing.get()) {
+                    int id = 1 + random.nextInt(PRODUCTS);
+                    if (!cache.contains((long) id)) {
+                        ProductSnapshot loaded = database.get(id);
+                        Thread.yield();
+                        if (loaded != null) {
+                            cache.put(loaded);
+                        }
+                    }
+                }
+            }));
+        }
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            writers.add(new Thread(() -> {
+                await(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < OPERATIONS; n++) {
+                    int id = 1 + random.nextInt(PRODUCTS);
+                    if (random.nextInt(100) == 0) {
+                        if (database.getAndSet(id, null) != null) {
+                            cache.invalidateDeleted(id);
+                        }
+                        continue;
+                    }
+                    ProductSnapshot updated = database.updateAndGet(id, current -> current == null ? null
+                            : current.toBuilder().version(current.getVersion() + 1).build());
+                    if (updated != null) {
+                        cache.invalidate(id, updated.getVersion());
+                    }
+                }
+            }));
+        }
+        threads.addAll(writers);
+        threads.forEach(thread -> thread.setUncaughtExceptionHandler((t, e) -> {
+            synchronized (errors) {
+                errors.add(e);
+            }
+        }));
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), () -> "worker failed: " + errors);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProductSnapshot product(long id, long version) {
+        return new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", 100 * id, null, version);
+    }
+}
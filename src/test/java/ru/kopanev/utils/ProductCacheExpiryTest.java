@@ -0,0 +1,141 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.enums.EvictionCause;
+import ru.kopanev.model.ProductSnapshot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет сроки элементов кэша товаров на управляемых часах: истечение после записи
+ * (при обращении и колесом таймеров) и асинхронное перечитывание востребованных элементов.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class ProductCacheExpiryTest {
+
+    private static final Duration TICK = Duration.ofMillis(5);
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void entryExpiresAfterWrite() {
+        try (ProductCache cache = newCache(Duration.ofSeconds(10), Duration.ZERO)) {
+            ProductSnapshot product = product(1);
+            cache.put(product);
+
+            advance(Duration.ofSeconds(9));
+            assertSame(product, cache.getIfPresent(1));
+
+            advance(Duration.ofSeconds(1));
+            assertNull(cache.getIfPresent(1));
+            assertEquals(1, cache.stats().getEvictionCount(EvictionCause.EXPIRED));
+        }
+    }
+
+    @Test
+    void timerWheelRemovesExpiredEntriesWithoutReads() throws InterruptedException {
+        try (ProductCache cache = newCache(Duration.ofSeconds(10), Duration.ZERO)) {
+            cache.put(product(1));
+            cache.put(product(2));
+
+            advance(Duration.ofSeconds(5));
+            cache.put(product(3));
+            advance(Duration.ofSeconds(6));
+
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (cache.size() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(TICK.toMillis());
+            }
+            assertEquals(1, cache.size());
+            assertTrue(cache.contains(3L));
+        }
+    }
+
+    @Test
+    void accessAfterRefreshIntervalReloadsInBackgroundAndServesOldValue() {
+        List<CompletableFuture<Optional<ProductSnapshot>>> reloads = new ArrayList<>();
+        try (ProductCache cache = newCache(Duration.ofSeconds(60), Duration.ofSeconds(10))) {
+            cache.setRefreshLoader(id -> {
+                CompletableFuture<Optional<ProductSnapshot>> reload = new CompletableFuture<>();
+                reloads.add(reload);
+                return reload;
+            });
+            ProductSnapshot stale = product(1);
+            cache.put(stale);
+
+            advance(Duration.ofSeconds(9));
+            assertSame(stale, cache.getIfPresent(1));
+            assertTrue(reloads.isEmpty());
+
+            advance(Duration.ofSeconds(1));
+            assertSame(stale, cache.getIfPresent(1));
+            assertSame(stale, cache.getIfPresent(1));
+            assertEquals(1, reloads.size(), "one reload per product while it is in flight");
+
+            ProductSnapshot fresh = new ProductSnapshot(1, "Товар 1", "Категория", "Бренд", 200, "Описание", 2);
+            reloads.get(0).complete(Optional.of(fresh));
+
+            assertSame(fresh, cache.getIfPresent(1));
+            assertEquals(1, reloads.size());
+            assertEquals(1, cache.stats().getLoadCount());
+        }
+    }
+
+    @Test
+    void failedRefreshKeepsValueUntilItExpires() {
+        try (ProductCache cache = newCache(Duration.ofSeconds(60), Duration.ofSeconds(10))) {
+            cache.setRefreshLoader(id -> CompletableFuture.failedFuture(new IllegalStateException("db down")));
+            ProductSnapshot product = product(1);
+            cache.put(product);
+
+            advance(Duration.ofSeconds(30));
+            assertSame(product, cache.getIfPresent(1));
+            assertEquals(1, cache.stats().getLoadFailureCount());
+
+            advance(Duration.ofSeconds(30));
+            assertFalse(cache.contains(1L));
+        }
+    }
+
+    @Test
+    void productDeletedWhileCachedIsDroppedByRefresh() {
+        try (ProductCache cache = newCache(Duration.ofSeconds(60), Duration.ofSeconds(10))) {
+            cache.setRefreshLoader(id -> CompletableFuture.completedFuture(Optional.empty()));
+            ProductSnapshot product = product(1);
+            cache.put(product);
+
+            advance(Duration.ofSeconds(10));
+            cache.getIfPresent(1);
+
+            assertFalse(cache.contains(1L));
+            assertFalse(cache.put(product), "a deleted product must not be cached again");
+        }
+    }
+
+    private ProductCache newCache(Duration expireAfterWrite, Duration refreshAfterWrite) {
+        return new ProductCache(ProductCache.DEFAULT_MAX_WEIGHT_BYTES, expireAfterWrite, refreshAfterWrite, TICK,
+                now::get);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    private static ProductSnapshot product(long id) {
+        return new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", 100, "Описание", 1);
+    }
+}
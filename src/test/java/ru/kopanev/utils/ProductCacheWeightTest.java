@@ -0,0 +1,86 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.enums.EvictionCause;
+import ru.kopanev.model.ProductSnapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет, что кэш товаров ограничен суммарным весом снимков в байтах, а не их количеством.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class ProductCacheWeightTest {
+
+    private static final long SMALL_WEIGHT = ProductCache.weigh(product(1, ""));
+
+    @Test
+    void manySmallProductsFitTheBudget() {
+        try (ProductCache cache = new ProductCache(1_000 * SMALL_WEIGHT)) {
+            for (long id = 1; id <= 1_000; id++) {
+                cache.put(product(id, ""));
+            }
+
+            assertEquals(1_000, cache.size());
+            assertEquals(1_000 * SMALL_WEIGHT, cache.weight());
+            assertEquals(0, cache.stats().getEvictionCount(EvictionCause.SIZE));
+        }
+    }
+
+    @Test
+    void largeProductEvictsByBytes() {
+        try (ProductCache cache = new ProductCache(10 * SMALL_WEIGHT)) {
+            for (long id = 1; id <= 10; id++) {
+                cache.put(product(id, ""));
+            }
+            ProductSnapshot large = product(11, "x".repeat((int) (2 * SMALL_WEIGHT)));
+
+            cache.put(large);
+
+            // При ограничении десятью элементами в кэше остался бы вес почти в полтора раза больше бюджета.
+            assertTrue(cache.weight() <= 10 * SMALL_WEIGHT);
+            assertEquals(totalWeight(cache), cache.weight());
+            assertTrue(cache.stats().getEvictionCount(EvictionCause.SIZE) >= 1);
+        }
+    }
+
+    @Test
+    void updateToHeavierVersionEvictsByBytes() {
+        try (ProductCache cache = new ProductCache(10 * SMALL_WEIGHT)) {
+            for (long id = 1; id <= 10; id++) {
+                cache.put(product(id, ""));
+            }
+
+            cache.update(new ProductSnapshot(1, "Товар 1", "Категория", "Бренд", 100,
+                    "x".repeat((int) SMALL_WEIGHT), 2));
+
+            assertTrue(cache.weight() <= 10 * SMALL_WEIGHT);
+            assertEquals(totalWeight(cache), cache.weight());
+            assertTrue(cache.size() < 10);
+        }
+    }
+
+    @Test
+    void productHeavierThanWholeBudgetIsNotCached() {
+        try (ProductCache cache = new ProductCache(10 * SMALL_WEIGHT)) {
+            cache.put(product(1, ""));
+
+            assertFalse(cache.put(product(2, "x".repeat((int) (10 * SMALL_WEIGHT)))));
+            assertFalse(cache.contains(2L));
+            assertTrue(cache.contains(1L));
+            assertEquals(SMALL_WEIGHT, cache.weight());
+        }
+    }
+
+    private static long totalWeight(ProductCache cache) {
+        return cache.values().stream().mapToLong(ProductCache::weigh).sum();
+    }
+
+    private static ProductSnapshot product(long id, String description) {
+        return new ProductSnapshot(id, "Товар " + (id % 10), "Категория", "Бренд", 100, description, 1);
+    }
+}
@@ -0,0 +1,203 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import ru.kopanev.config.DbConfig;
+import ru.kopanev.enums.Action;
+import ru.kopanev.enums.PoolType;
+import ru.kopanev.enums.UpdateStatus;
+import ru.kopanev.factory.DataSourceFactory;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.repository.ProductRepository;
+import ru.kopanev.repository.impl.ProductRepositoryImpl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет согласованность кэшей двух экземпляров приложения на общей БД PostgreSQL:
+ * изменение, сделанное одним экземпляром, доходит до кэша другого через LISTEN/NOTIFY,
+ * а пропущенное за время разрыва соединения — через журнал изменений.
+ *
+ * <p>Без Docker тест пропускается.</p>
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ProductChangeListenerIntegrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final long BATCH_INTERVAL_MS = 50;
+    private static final long RECONNECT_DELAY_MS = 1_000;
+    private static final List<String> DATABASE_PROPERTIES =
+            List.of("database.url", "database.username", "database.password", "database.replica.urls");
+
+    @Container
+    private static final PostgreSQLContainer POSTGRES = new PostgreSQLContainer("postgres:16-alpine");
+
+    private static ProductRepository repository;
+
+    private Instance first;
+    private Instance second;
+
+    @BeforeAll
+    static void migrate() {
+        System.setProperty("database.url", POSTGRES.getJdbcUrl());
+        System.setProperty("database.username", POSTGRES.getUsername());
+        System.setProperty("database.password", POSTGRES.getPassword());
+        System.setProperty("database.replica.urls", "");
+        new LiquibaseRunner(new DbConfig(), DataSourceFactory.getDataSource(PoolType.CATALOG_WRITE)).runMigrations();
+        repository = new ProductRepositoryImpl(new StringDictionary("categories"), new StringDictionary("brands"),
+                PoolType.CATALOG_WRITE);
+    }
+
+    @AfterAll
+    static void closePools() {
+        DataSourceFactory.close();
+        DATABASE_PROPERTIES.forEach(System::clearProperty);
+    }
+
+    @BeforeEach
+    void startInstances() {
+        first = new Instance();
+        second = new Instance();
+        await("both listeners subscribed", () -> listeners() >= 2);
+    }
+
+    @AfterEach
+    void stopInstances() {
+        first.close();
+        second.close();
+        await("listeners disconnected", () -> listeners() == 0);
+    }
+
+    @Test
+    void updateOnOneInstanceRefreshesOtherInstance() {
+        ProductSnapshot product = create();
+        first.cache.put(product);
+        second.cache.put(product);
+
+        ProductSnapshot updated = update(product, 2_500);
+        first.cache.update(updated);
+
+        await("second instance refreshed", () -> version(second, product.getId()) == updated.getVersion());
+        assertEquals(2_500, second.cache.peek(product.getId()).orElseThrow().getPrice());
+    }
+
+    @Test
+    void deleteOnOneInstanceEvictsOtherInstanceAndRejectsStaleReload() {
+        ProductSnapshot product = create();
+        first.cache.put(product);
+        second.cache.put(product);
+
+        repository.delete(product.getId(), new Event("admin", Action.REMOVE_PRODUCT, "integration test"));
+        first.cache.invalidateDeleted(product.getId());
+
+        await("second instance evicted", () -> !second.cache.contains(product.getId()));
+        assertFalse(second.cache.put(product), "a version read before the delete must not be cached again");
+    }
+
+    @Test
+    void changesMissedWhileDisconnectedAreAppliedAfterReconnect() {
+        ProductSnapshot product = create();
+        second.cache.put(product);
+
+        terminateListeners();
+        ProductSnapshot updated = update(product, 4_000);
+
+        await("second instance caught up", () -> version(second, product.getId()) == updated.getVersion());
+        assertEquals(4_000, second.cache.peek(product.getId()).orElseThrow().getPrice());
+    }
+
+    private static ProductSnapshot create() {
+        Product product = new Product("Товар", "Категория", "Бренд", 1_000, "Описание");
+        repository.save(product, new Event("admin", Action.ADD_PRODUCT, "integration test"));
+        return ProductSnapshot.from(product);
+    }
+
+    private static ProductSnapshot update(ProductSnapshot current, long price) {
+        Product product = new Product(current.getId(), current.getName(), current.getCategory(), current.getBrand(),
+                price, current.getDescription(), current.getVersion());
+        assertEquals(UpdateStatus.UPDATED,
+                repository.update(product, new Event("admin", Action.UPDATE_PRODUCT, "integration test")).getStatus());
+        return ProductSnapshot.from(product);
+    }
+
+    private static long version(Instance instance, long id) {
+        return instance.cache.peek(id).map(ProductSnapshot::getVersion).orElse(-1L);
+    }
+
+    private static int listeners() {
+        return count("SELECT count(*) FROM pg_stat_activity WHERE query = 'LISTEN "
+                + ProductChangeListener.CHANNEL + "'");
+    }
+
+    private static void terminateListeners() {
+        count("SELECT count(pg_terminate_backend(pid)) FROM pg_stat_activity WHERE query = 'LISTEN "
+                + ProductChangeListener.CHANNEL + "'");
+    }
+
+    private static int count(String sql) {
+        try (Connection connection = DriverManager.getConnection(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(String condition, BooleanSupplier check) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!check.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "timed out waiting for: " + condition);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("interrupted waiting for: " + condition, e);
+            }
+        }
+    }
+
+    /**
+     * Кэши и слушатель изменений одного экземпляра приложения.
+     */
+    private static final class Instance implements AutoCloseable {
+        private final ProductCache cache = new ProductCache();
+        private final ProductChangeListener listener = new ProductChangeListener(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword(), cache, new DescriptionCache(64 * 1024),
+                new FilterResultCache(16, Duration.ofMinutes(1)), repository, BATCH_INTERVAL_MS, RECONNECT_DELAY_MS);
+
+        private Instance() {
+            listener.start();
+        }
+
+        @Override
+        public void close() {
+            listener.close();
+            cache.close();
+        }
+    }
+}
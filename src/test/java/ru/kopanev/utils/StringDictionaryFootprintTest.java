@@ -0,0 +1,69 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kopanev.model.ProductSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Измеряет через JOL объём кучи, занимаемый списком товаров со строками категорий и брендов,
+ * прочитанными из БД как новые экземпляры и приведёнными к экземплярам словаря.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class StringDictionaryFootprintTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StringDictionaryFootprintTest.class);
+
+    private static final int PRODUCTS = 100_000;
+    private static final String[] CATEGORIES = {
+            "Электроника", "Бытовая техника", "Одежда", "Обувь", "Спорт и отдых",
+            "Книги", "Игрушки", "Красота и здоровье", "Товары для дома", "Автотовары"
+    };
+    private static final String[] BRANDS = {
+            "Самсунг", "Эппл", "Сяоми", "Бош", "Филипс", "Адидас", "Найк", "Лего", "Хендай", "Рубин",
+            "Горизонт", "Атлант", "Бирюса", "Витязь", "Заря", "Полёт", "Восток", "Ракета", "Слава", "Мир"
+    };
+
+    @Test
+    void internedCategoriesAndBrandsShrinkCatalogFootprint() {
+        StringDictionary categories = new StringDictionary("categories");
+        StringDictionary brands = new StringDictionary("brands");
+        List<ProductSummary> fresh = new ArrayList<>(PRODUCTS);
+        List<ProductSummary> interned = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            // Драйвер JDBC создаёт новую строку со своим массивом для каждого значения каждой строки.
+            String category = copyOf(CATEGORIES[(int) (id % CATEGORIES.length)]);
+            String brand = copyOf(BRANDS[(int) (id % BRANDS.length)]);
+            fresh.add(new ProductSummary(id, "Товар " + id, category, brand, id * 100, 1));
+            interned.add(new ProductSummary(id, "Товар " + id, categories.intern(category), brands.intern(brand),
+                    id * 100, 1));
+        }
+
+        long freshBytes = GraphLayout.parseInstance(fresh).totalSize();
+        long internedBytes = GraphLayout.parseInstance(interned).totalSize();
+        long measuredSavings = freshBytes - internedBytes;
+        long estimate = categories.savedBytes() + brands.savedBytes();
+        log.info("Footprint of {} products: fresh strings {} bytes, interned {} bytes, saved {} bytes, "
+                + "dictionary estimate {} bytes", PRODUCTS, freshBytes, internedBytes, measuredSavings, estimate);
+
+        assertEquals(CATEGORIES.length, categories.size());
+        assertEquals(BRANDS.length, brands.size());
+        assertTrue(internedBytes < freshBytes * 3 / 4,
+                "interning should save at least a quarter of the catalog heap");
+        assertTrue(Math.abs(estimate - measuredSavings) <= measuredSavings / 10,
+                "savedBytes() estimate should be within 10% of the measured savings");
+    }
+
+    private static String copyOf(String value) {
+        return new String(value.toCharArray());
+    }
+}
@@ -0,0 +1,191 @@
+package ru.kopanev.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.kopanev.enums.Action;
+import ru.kopanev.enums.UpdateStatus;
+import ru.kopanev.model.BufferedUpdate;
+import ru.kopanev.model.Event;
+import ru.kopanev.model.Product;
+import ru.kopanev.model.ProductSnapshot;
+import ru.kopanev.model.UpdateResult;
+import ru.kopanev.resilience.AdmissionController;
+import ru.kopanev.resilience.CircuitBreaker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверяет буфер отложенной записи: объединение изменений товара, проверку версий при приёме
+ * и записи, перенос изменений, пришедших во время записи, и запись оставшегося при закрытии.
+ *
+ * @author Artem Kopanev
+ * @since 1.0
+ */
+class WriteBehindBufferTest {
+
+    /**
+     * Фоновая запись в тестах не успевает сработать: буфер записывается явным вызовом {@code flush()}.
+     */
+    private static final long FLUSH_INTERVAL_MS = 60_000;
+
+    private final Map<Long, Long> lost = new LinkedHashMap<>();
+
+    @Test
+    void updatesOfOneProductAreWrittenAsOneEntry() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 16)) {
+            assertEquals(2, offer(buffer, change(1, 200, 1), repository.get(1)).getVersion());
+            assertEquals(3, offer(buffer, change(1, 300, 2), repository.get(1)).getVersion());
+            assertEquals(300, buffer.get(1).getPrice());
+
+            buffer.flush();
+
+            assertEquals(1, repository.batches());
+            assertEquals(3, repository.get(1).getVersion());
+            assertEquals(300, repository.get(1).getPrice());
+            assertEquals(List.of("Изменён товар (объединено изменений: 2)"),
+                    repository.events().stream().map(Event::getDetails).toList());
+            assertEquals(0, buffer.size());
+            assertEquals(2L, buffer.toMetrics().get("write-behind.accepted"));
+            assertEquals(1L, buffer.toMetrics().get("write-behind.coalesced"));
+            assertEquals(1L, buffer.toMetrics().get("write-behind.flushed"));
+        }
+    }
+
+    @Test
+    void offerWithOutdatedVersionConflictsWithBufferedVersion() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 16)) {
+            offer(buffer, change(1, 200, 1), repository.get(1));
+
+            UpdateResult result = offer(buffer, change(1, 300, 1), repository.get(1));
+
+            assertEquals(UpdateStatus.CONFLICT, result.getStatus());
+            assertEquals(2, result.getVersion());
+            assertEquals(200, buffer.get(1).getPrice());
+        }
+    }
+
+    @Test
+    void offerIsRejectedWithoutMatchingCachedVersionOrWhenBufferIsFull() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        repository.put(product(2, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 1)) {
+            assertNull(offer(buffer, change(1, 200, 1), null));
+            assertNull(offer(buffer, change(1, 200, 2), repository.get(1)));
+
+            offer(buffer, change(1, 200, 1), repository.get(1));
+
+            assertNull(offer(buffer, change(2, 200, 1), repository.get(2)));
+            assertEquals(1, buffer.size());
+        }
+    }
+
+    @Test
+    void updatesAreLostWhenProductChangedElsewhere() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 16)) {
+            offer(buffer, change(1, 200, 1), repository.get(1));
+            repository.put(product(1, 500, 2));
+
+            buffer.flush();
+
+            assertEquals(Map.of(1L, 1L), lost);
+            assertEquals(1L, buffer.toMetrics().get("write-behind.lost"));
+            assertEquals(0, buffer.size());
+            assertEquals(500, repository.get(1).getPrice());
+            assertEquals(2, repository.get(1).getVersion());
+        }
+    }
+
+    @Test
+    void updateOfferedDuringFlushIsRebasedOnWrittenVersion() {
+        List<WriteBehindBuffer> buffers = new ArrayList<>();
+        InMemoryProductRepository repository = new InMemoryProductRepository() {
+            @Override
+            public synchronized boolean[] updateBatch(List<BufferedUpdate> updates) {
+                if (batches() == 0) {
+                    // Изменение приходит, пока пакет с предыдущим изменением пишется в БД.
+                    offer(buffers.get(0), change(1, 300, 2), null);
+                }
+                return super.updateBatch(updates);
+            }
+        };
+        repository.put(product(1, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 16)) {
+            buffers.add(buffer);
+            offer(buffer, change(1, 200, 1), repository.get(1));
+
+            buffer.flush();
+
+            assertEquals(2, repository.get(1).getVersion());
+            assertEquals(200, repository.get(1).getPrice());
+            assertEquals(1, buffer.size());
+            assertEquals(3, buffer.get(1).getVersion());
+
+            buffer.flush();
+
+            assertEquals(3, repository.get(1).getVersion());
+            assertEquals(300, repository.get(1).getPrice());
+            assertEquals(List.of("Изменён товар", "Изменён товар"),
+                    repository.events().stream().map(Event::getDetails).toList());
+            assertEquals(0, buffer.size());
+            assertEquals(Map.of(), lost);
+        }
+    }
+
+    @Test
+    void discardedUpdatesAreNotWritten() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        try (WriteBehindBuffer buffer = newBuffer(repository, 16)) {
+            offer(buffer, change(1, 200, 1), repository.get(1));
+
+            buffer.discard(1);
+            buffer.flush();
+
+            assertEquals(0, repository.batches());
+            assertEquals(100, repository.get(1).getPrice());
+        }
+    }
+
+    @Test
+    void closeWritesRemainingUpdates() {
+        InMemoryProductRepository repository = new InMemoryProductRepository();
+        repository.put(product(1, 100, 1));
+        WriteBehindBuffer buffer = newBuffer(repository, 16);
+        offer(buffer, change(1, 200, 1), repository.get(1));
+
+        buffer.close();
+
+        assertEquals(2, repository.get(1).getVersion());
+        assertEquals(200, repository.get(1).getPrice());
+        assertEquals(0, buffer.size());
+    }
+
+    private WriteBehindBuffer newBuffer(InMemoryProductRepository repository, int maxPending) {
+        return new WriteBehindBuffer(repository, new AdmissionController(4, 1, 8, 0.5, 1_000, () -> 0),
+                new CircuitBreaker(5, 1_000, 1_000), lost::put, FLUSH_INTERVAL_MS, 16, maxPending);
+    }
+
+    private static UpdateResult offer(WriteBehindBuffer buffer, Product product, ProductSnapshot cached) {
+        return buffer.offer(product, new Event("admin", Action.UPDATE_PRODUCT, "Изменён товар"), cached);
+    }
+
+    private static Product change(long id, long price, long version) {
+        return new Product(id, "Товар " + id, "Категория", "Бренд", price, "Описание " + id, version);
+    }
+
+    private static ProductSnapshot product(long id, long price, long version) {
+        return new ProductSnapshot(id, "Товар " + id, "Категория", "Бренд", price, "Описание " + id, version);
+    }
+}